@@ -21,6 +21,8 @@ package edu.utdallas.capgen.plugin;
  */
 
 import edu.utdallas.prf.CoverageInfo;
+import edu.utdallas.prf.CoverageMatrix;
+import edu.utdallas.prf.CoverageMatrixAware;
 import edu.utdallas.prf.FaultLocalizationInfo;
 import edu.utdallas.prf.Patch;
 import edu.utdallas.prf.PatchGenerationPlugin;
@@ -46,7 +48,7 @@ import java.util.Objects;
 /**
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
-public class CapGenPatchGenerationPlugin implements PatchGenerationPlugin {
+public class CapGenPatchGenerationPlugin implements PatchGenerationPlugin, CoverageMatrixAware {
     private File projectBaseDirectory;
 
     private File launcherJDKHomeDirectory;
@@ -210,4 +212,7 @@ public class CapGenPatchGenerationPlugin implements PatchGenerationPlugin {
 
     @Override
     public void setCoverageInfo(CoverageInfo<? extends ProgramElement> coverageInfo) { }
+
+    @Override
+    public void setCoverageMatrix(CoverageMatrix<? extends ProgramElement> coverageMatrix) { }
 }
@@ -0,0 +1,331 @@
+package edu.utdallas.prf;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import edu.utdallas.prf.commons.collections.SparseBitmap;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A compact representation of per-test coverage information.
+ * Test names and program elements are interned as consecutive integers, and the
+ * coverage relation is stored as one sparse bitmap row per test (the elements covered
+ * by the test) and, built on demand, one sparse bitmap column per element (the tests
+ * covering the element).
+ *
+ * The hash table-based <code>CoverageInfo</code> view of the same information, which
+ * boxes every covered element of every test, is only materialized upon request.
+ *
+ * @param <E> Type of program elements, i.e., <code>Class</code>, <code>Method</code>,
+ *           or <code>SourceLine</code>
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class CoverageMatrix<E extends ProgramElement> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final List<String> tests;
+
+    private final List<E> elements;
+
+    private final List<SparseBitmap> rows;
+
+    private transient Map<String, Integer> testIndices;
+
+    private transient Map<E, Integer> elementIndices;
+
+    private transient volatile List<SparseBitmap> columns;
+
+    public CoverageMatrix() {
+        this.tests = new ArrayList<>();
+        this.elements = new ArrayList<>();
+        this.rows = new ArrayList<>();
+        this.testIndices = new HashMap<>();
+        this.elementIndices = new HashMap<>();
+    }
+
+    /**
+     * Builds a matrix out of the given hash table-based coverage information.
+     *
+     * @param coverageInfo Coverage information mapping test names to the elements
+     *                     they cover
+     * @param <E> Type of program elements
+     * @return The coverage matrix
+     */
+    public static <E extends ProgramElement> CoverageMatrix<E> of(final Map<String, ? extends Collection<E>> coverageInfo) {
+        final CoverageMatrix<E> matrix = new CoverageMatrix<>();
+        for (final Map.Entry<String, ? extends Collection<E>> entry : coverageInfo.entrySet()) {
+            final int testIndex = matrix.addTest(entry.getKey());
+            for (final E element : entry.getValue()) {
+                matrix.cover(testIndex, matrix.addElement(element));
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Interns the given test name.
+     *
+     * @param testName Test name
+     * @return Index of the test
+     */
+    public int addTest(final String testName) {
+        Integer index = this.testIndices.get(testName);
+        if (index == null) {
+            index = this.tests.size();
+            this.tests.add(testName);
+            this.rows.add(new SparseBitmap());
+            this.testIndices.put(testName, index);
+            this.columns = null;
+        }
+        return index;
+    }
+
+    /**
+     * Interns the given test name along with the indices of the elements it covers.
+     * The bitmap is adopted by the matrix, so it must not be modified afterwards.
+     *
+     * @param testName Test name
+     * @param coveredElements Indices of the elements covered by the test
+     * @return Index of the test
+     */
+    public int addTest(final String testName, final SparseBitmap coveredElements) {
+        final int index = addTest(testName);
+        this.rows.set(index, coveredElements);
+        this.columns = null;
+        return index;
+    }
+
+    /**
+     * Interns the given program element.
+     *
+     * @param element Program element
+     * @return Index of the element
+     */
+    public int addElement(final E element) {
+        Integer index = this.elementIndices.get(element);
+        if (index == null) {
+            index = this.elements.size();
+            this.elements.add(element);
+            this.elementIndices.put(element, index);
+            this.columns = null;
+        }
+        return index;
+    }
+
+    /**
+     * Records that the test with the given index covers the element with the given index.
+     *
+     * @param testIndex Index of the test
+     * @param elementIndex Index of the element
+     */
+    public void cover(final int testIndex, final int elementIndex) {
+        if (this.rows.get(testIndex).add(elementIndex)) {
+            this.columns = null;
+        }
+    }
+
+    /**
+     * Adds the coverage information of the given matrix to this matrix. Elements are
+     * matched by equality, and elements new to this matrix are numbered in the order of
+     * their indices in the given matrix, so merging the same matrices in the same order
+     * always yields the same numbering.
+     *
+     * @param that The matrix to be merged into this one
+     */
+    public void addAll(final CoverageMatrix<? extends E> that) {
+        final int[] elementIndices = new int[that.getElementsCount()];
+        for (int elementIndex = 0; elementIndex < elementIndices.length; elementIndex++) {
+            elementIndices[elementIndex] = addElement(that.getElement(elementIndex));
+        }
+        for (int thatTestIndex = 0; thatTestIndex < that.getTestsCount(); thatTestIndex++) {
+            final int testIndex = addTest(that.getTestName(thatTestIndex));
+            final SparseBitmap row = that.getCoveredElements(thatTestIndex);
+            for (int elementIndex = row.nextSetBit(0); elementIndex >= 0; elementIndex = row.nextSetBit(elementIndex + 1)) {
+                cover(testIndex, elementIndices[elementIndex]);
+            }
+        }
+    }
+
+    public int getTestsCount() {
+        return this.tests.size();
+    }
+
+    public int getElementsCount() {
+        return this.elements.size();
+    }
+
+    public String getTestName(final int testIndex) {
+        return this.tests.get(testIndex);
+    }
+
+    public E getElement(final int elementIndex) {
+        return this.elements.get(elementIndex);
+    }
+
+    public List<String> getTestNames() {
+        return Collections.unmodifiableList(this.tests);
+    }
+
+    /**
+     * Returns the index of the given test, or -1 if the matrix has no such test.
+     *
+     * @param testName Test name
+     * @return Index of the test, or -1
+     */
+    public int indexOfTest(final String testName) {
+        final Integer index = this.testIndices.get(testName);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the index of the given element, or -1 if the matrix has no such element.
+     *
+     * @param element Program element
+     * @return Index of the element, or -1
+     */
+    public int indexOfElement(final ProgramElement element) {
+        final Integer index = this.elementIndices.get(element);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Returns the indices of the elements covered by the given test.
+     * The returned bitmap is owned by the matrix and must not be modified.
+     *
+     * @param testIndex Index of the test
+     * @return Indices of the covered elements
+     */
+    public SparseBitmap getCoveredElements(final int testIndex) {
+        return this.rows.get(testIndex);
+    }
+
+    /**
+     * Returns the indices of the tests covering the given element.
+     * The returned bitmap is owned by the matrix and must not be modified.
+     *
+     * @param elementIndex Index of the element
+     * @return Indices of the covering tests
+     */
+    public SparseBitmap getCoveringTests(final int elementIndex) {
+        return getColumns().get(elementIndex);
+    }
+
+    /**
+     * Returns the names of the tests covering the given element.
+     *
+     * @param element Program element
+     * @return Names of the covering tests, which is empty if the element is covered by no
+     * test or is unknown to the matrix
+     */
+    public Set<String> getCoveringTestNames(final ProgramElement element) {
+        final Set<String> testNames = new HashSet<>();
+        final int elementIndex = indexOfElement(element);
+        if (elementIndex >= 0) {
+            final SparseBitmap column = getCoveringTests(elementIndex);
+            for (int testIndex = column.nextSetBit(0); testIndex >= 0; testIndex = column.nextSetBit(testIndex + 1)) {
+                testNames.add(this.tests.get(testIndex));
+            }
+        }
+        return testNames;
+    }
+
+    /**
+     * Returns the elements covered by the given test.
+     *
+     * @param testName Test name
+     * @return The covered elements, or <code>null</code> if the matrix has no such test,
+     * in keeping with <code>CoverageInfo.get</code>
+     */
+    public Set<E> getCoveredElements(final String testName) {
+        final int testIndex = indexOfTest(testName);
+        if (testIndex < 0) {
+            return null;
+        }
+        final SparseBitmap row = this.rows.get(testIndex);
+        final Set<E> covered = new HashSet<>(row.cardinality());
+        for (int elementIndex = row.nextSetBit(0); elementIndex >= 0; elementIndex = row.nextSetBit(elementIndex + 1)) {
+            covered.add(this.elements.get(elementIndex));
+        }
+        return covered;
+    }
+
+    /**
+     * Materializes the hash table-based view of the matrix into the given, presumably
+     * empty, coverage information object.
+     *
+     * @param coverageInfo The coverage information object to be populated
+     * @param <C> Type of coverage information object
+     * @return The populated coverage information object
+     */
+    public <C extends CoverageInfo<E>> C populate(final C coverageInfo) {
+        for (final String testName : this.tests) {
+            coverageInfo.put(testName, getCoveredElements(testName));
+        }
+        return coverageInfo;
+    }
+
+    // columns are read concurrently, e.g., by the spectrum engine, once they are built
+    private List<SparseBitmap> getColumns() {
+        List<SparseBitmap> columns = this.columns;
+        if (columns == null) {
+            synchronized (this) {
+                columns = this.columns;
+                if (columns == null) {
+                    columns = new ArrayList<>(this.elements.size());
+                    for (int elementIndex = 0; elementIndex < this.elements.size(); elementIndex++) {
+                        columns.add(new SparseBitmap());
+                    }
+                    for (int testIndex = 0; testIndex < this.rows.size(); testIndex++) {
+                        final SparseBitmap row = this.rows.get(testIndex);
+                        for (int elementIndex = row.nextSetBit(0); elementIndex >= 0; elementIndex = row.nextSetBit(elementIndex + 1)) {
+                            columns.get(elementIndex).add(testIndex);
+                        }
+                    }
+                    this.columns = columns;
+                }
+            }
+        }
+        return columns;
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.testIndices = new HashMap<>(this.tests.size());
+        for (int testIndex = 0; testIndex < this.tests.size(); testIndex++) {
+            this.testIndices.put(this.tests.get(testIndex), testIndex);
+        }
+        this.elementIndices = new HashMap<>(this.elements.size());
+        for (int elementIndex = 0; elementIndex < this.elements.size(); elementIndex++) {
+            this.elementIndices.put(this.elements.get(elementIndex), elementIndex);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package edu.utdallas.prf;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * An optional interface for plugins that are able to consume coverage information in
+ * the form of a <code>CoverageMatrix</code>.
+ * PRF hands such plugins the matrix and passes <code>null</code> to their
+ * <code>setCoverageInfo</code> method, so that the memory-hungry hash table-based view
+ * of the coverage information is never materialized on their behalf.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public interface CoverageMatrixAware {
+    // This is called instead of providing the hash table-based coverage info.; the matrix could be null
+    void setCoverageMatrix(CoverageMatrix<? extends ProgramElement> coverageMatrix);
+}
@@ -38,24 +38,45 @@ public class Patch implements Serializable {
 
     private final Collection<PatchLocation> locations;
 
+    private final Collection<String> coveringTests;
+
     private final TestUnitFilter coveringTestsFilter;
 
     public Patch(final Collection<PatchLocation> locations) {
         Validate.isInstanceOf(Serializable.class, locations);
         this.id = PatchId.alloc();
         this.locations = locations;
+        this.coveringTests = null;
         this.coveringTestsFilter = TestUnitFilter.all();
     }
 
     public Patch(final Collection<PatchLocation> locations,
                  final Collection<String> coveringTests) {
+        this(PatchId.alloc(), locations, coveringTests);
+    }
+
+    private Patch(final PatchId id,
+                  final Collection<PatchLocation> locations,
+                  final Collection<String> coveringTests) {
         Validate.isInstanceOf(Serializable.class, locations);
         Validate.isInstanceOf(Serializable.class, coveringTests);
-        this.id = PatchId.alloc();
+        this.id = id;
         this.locations = locations;
+        this.coveringTests = coveringTests;
         this.coveringTestsFilter = TestUnitFilter.some(coveringTests);
     }
 
+    /**
+     * Returns a copy of this patch, with the same id, that shall be validated only
+     * against the given test cases.
+     *
+     * @param coveringTests Names of the test cases covering the patch
+     * @return The restricted patch
+     */
+    public Patch withCoveringTests(final Collection<String> coveringTests) {
+        return new Patch(this.id, this.locations, coveringTests);
+    }
+
     public PatchId getId() {
         return this.id;
     }
@@ -64,6 +85,16 @@ public class Patch implements Serializable {
         return this.locations;
     }
 
+    /**
+     * Returns the names of the test cases against which this patch shall be validated.
+     *
+     * @return Test names, or <code>null</code> if the patch shall be validated
+     * against all the test cases
+     */
+    public Collection<String> getCoveringTests() {
+        return this.coveringTests;
+    }
+
     public TestUnitFilter getCoveringTestsFilter() {
         return this.coveringTestsFilter;
     }
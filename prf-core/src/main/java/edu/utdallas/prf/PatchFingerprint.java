@@ -0,0 +1,139 @@
+package edu.utdallas.prf;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A content-addressed identifier for a patch: two patches have the same fingerprint iff
+ * they patch the same classes with the same bytecode (modulo debug information, e.g.,
+ * source file name, line numbers, and local variable names) and they are to be
+ * validated against the same test cases. Unlike {@link PatchId}, computing a
+ * fingerprint does not involve any shared state, so it is safe to do so from many
+ * threads.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class PatchFingerprint implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final String digest;
+
+    private PatchFingerprint(final String digest) {
+        this.digest = digest;
+    }
+
+    public static PatchFingerprint of(final Patch patch) throws IOException {
+        final MessageDigest md = newMessageDigest();
+        final List<PatchLocation> locations = new ArrayList<>(patch.getLocations());
+        Collections.sort(locations, new Comparator<PatchLocation>() {
+            @Override
+            public int compare(PatchLocation l1, PatchLocation l2) {
+                return l1.getClassName().compareTo(l2.getClassName());
+            }
+        });
+        String lastClassName = null;
+        for (final PatchLocation location : locations) {
+            final String className = location.getClassName();
+            if (className.equals(lastClassName)) {
+                continue; // multiple locations in the same class
+            }
+            lastClassName = className;
+            md.update(className.getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(normalize(Files.readAllBytes(location.getClassFile().toPath())));
+        }
+        if (patch.getCoveringTests() != null) {
+            final List<String> coveringTests = new ArrayList<>(patch.getCoveringTests());
+            Collections.sort(coveringTests);
+            for (final String testName : coveringTests) {
+                md.update((byte) 0);
+                md.update(testName.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return new PatchFingerprint(toHexString(md.digest()));
+    }
+
+    // re-writing the class without debug information rebuilds the constant pool in a canonical order
+    private static byte[] normalize(final byte[] classBytes) {
+        final ClassReader reader = new ClassReader(classBytes);
+        final ClassWriter writer = new ClassWriter(0);
+        reader.accept(writer, ClassReader.SKIP_DEBUG);
+        return writer.toByteArray();
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHexString(final byte[] bytes) {
+        final char[] chars = new char[2 * bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[2 * i] = HEX_DIGITS[(bytes[i] >>> 4) & 0xF];
+            chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    public String getDigest() {
+        return this.digest;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PatchFingerprint)) {
+            return false;
+        }
+        final PatchFingerprint that = (PatchFingerprint) o;
+        return this.digest.equals(that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.digest.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.digest;
+    }
+}
@@ -21,6 +21,7 @@ package edu.utdallas.prf;
  */
 
 import java.io.Serializable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * An object to uniquely identify a patch. This class is most useful for
@@ -31,7 +32,7 @@ import java.io.Serializable;
 public class PatchId implements Serializable {
     private static final long serialVersionUID = 1L;
 
-    private static int idCounter = 0;
+    private static final AtomicInteger ID_COUNTER = new AtomicInteger(0);
 
     private final int id;
 
@@ -40,7 +41,7 @@ public class PatchId implements Serializable {
     }
 
     public static PatchId alloc() {
-        return new PatchId(idCounter++);
+        return new PatchId(ID_COUNTER.getAndIncrement());
     }
 
     @Override
@@ -28,14 +28,16 @@ import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
 /**
  * A comparator used for test reordering during patch validation phase.
- * (1) cheaper tests are preferred over longer ones;
- * (2) failing tests are prioritized over passing ones.
+ * (1) failing tests are prioritized over passing ones;
+ * (2) among those, tests that rejected more of the previously validated patches are preferred;
+ * (3) ties are broken by preferring cheaper tests over longer ones.
  *
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
@@ -46,12 +48,18 @@ public class PraPRTestComparator implements Comparator<TestUnit>, Serializable {
 
     private final Set<String> failingTests;
 
+    private final Map<String, Integer> killCounts; // test name -> number of patches rejected
+
+    private final Map<String, Long> testsCpuTiming; // empty means no CPU time measurements
+
     public PraPRTestComparator(final Map<String, Long> testsTiming,
                                final String[] failingTests) {
         Validate.isInstanceOf(Serializable.class, testsTiming);
         this.testsTiming = testsTiming;
         this.failingTests = new HashSet<>();
         Collections.addAll(this.failingTests, failingTests);
+        this.killCounts = new HashMap<>();
+        this.testsCpuTiming = new HashMap<>();
     }
 
     public PraPRTestComparator(final Map<String, Long> testsTiming,
@@ -59,6 +67,43 @@ public class PraPRTestComparator implements Comparator<TestUnit>, Serializable {
         Validate.isInstanceOf(Serializable.class, testsTiming);
         this.testsTiming = testsTiming;
         this.failingTests = new HashSet<>(failingTests);
+        this.killCounts = new HashMap<>();
+        this.testsCpuTiming = new HashMap<>();
+    }
+
+    private PraPRTestComparator(final Map<String, Long> testsTiming,
+                                final Set<String> failingTests,
+                                final Map<String, Integer> killCounts,
+                                final Map<String, Long> testsCpuTiming) {
+        this.testsTiming = testsTiming;
+        this.failingTests = failingTests;
+        this.killCounts = killCounts;
+        this.testsCpuTiming = testsCpuTiming;
+    }
+
+    /**
+     * Returns a comparator that, after the failing tests, prefers tests that rejected
+     * more patches so far.
+     *
+     * @param killCounts A map from test name to the number of patches it rejected
+     * @return A comparator taking the kill counts into account
+     */
+    public PraPRTestComparator withKillCounts(final Map<String, Integer> killCounts) {
+        Validate.isInstanceOf(Serializable.class, killCounts);
+        return new PraPRTestComparator(this.testsTiming, this.failingTests, killCounts, this.testsCpuTiming);
+    }
+
+    /**
+     * Returns a comparator that also carries the CPU time spent by each test case, which
+     * is used to tell apart test cases that are merely slowed down by contention from
+     * those that time out.
+     *
+     * @param testsCpuTiming A map from test name to its CPU time in milliseconds
+     * @return A comparator carrying the CPU time measurements
+     */
+    public PraPRTestComparator withTestsCpuTiming(final Map<String, Long> testsCpuTiming) {
+        Validate.isInstanceOf(Serializable.class, testsCpuTiming);
+        return new PraPRTestComparator(this.testsTiming, this.failingTests, this.killCounts, testsCpuTiming);
     }
 
     public Map<String, Long> getTestsTiming() {
@@ -69,6 +114,14 @@ public class PraPRTestComparator implements Comparator<TestUnit>, Serializable {
         return this.failingTests;
     }
 
+    public Map<String, Integer> getKillCounts() {
+        return this.killCounts;
+    }
+
+    public Map<String, Long> getTestsCpuTiming() {
+        return this.testsCpuTiming;
+    }
+
     @Override
     public int compare(TestUnit t1, TestUnit t2) {
         String n1 = t1.getDescription().getName();
@@ -80,6 +133,11 @@ public class PraPRTestComparator implements Comparator<TestUnit>, Serializable {
         if (f1 ^ f2) {
             return f1 ? -1 : 1;
         }
+        final int k1 = getKillCount(n1);
+        final int k2 = getKillCount(n2);
+        if (k1 != k2) {
+            return Integer.compare(k2, k1);
+        }
         Long time1 = this.testsTiming.get(n1);
         if (time1 == null) {
             System.out.printf("WARNING: Missing time measurement for '%s'. Long.MAX_VALUE is being used.%n", n1);
@@ -92,4 +150,9 @@ public class PraPRTestComparator implements Comparator<TestUnit>, Serializable {
         }
         return Long.compare(time1, time2);
     }
-}
\ No newline at end of file
+
+    private int getKillCount(final String testName) {
+        final Integer killCount = this.killCounts.get(testName);
+        return killCount == null ? 0 : killCount;
+    }
+}
@@ -0,0 +1,450 @@
+package edu.utdallas.prf.commons.collections;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * A growable, compressed set of non-negative integers in the spirit of Roaring bitmaps.
+ * The integer range is split into chunks of 2^16 values keyed by the high 16 bits of
+ * the integers; only the chunks that actually contain elements are materialized.
+ * A chunk stores its low 16 bits as a sorted array while it is sparse, and switches to
+ * a plain 8KB bitmap once it holds more than 4096 elements.
+ * Thus, the memory footprint is proportional to the number of elements rather than
+ * to the magnitude of the largest element.
+ *
+ * This class is not thread-safe.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class SparseBitmap implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final int CHUNK_BITS = 16;
+
+    private static final int ARRAY_CHUNK_MAX_SIZE = 4096;
+
+    private static final int BITMAP_CHUNK_WORDS = (1 << CHUNK_BITS) / Long.SIZE;
+
+    private int[] keys;
+
+    private Chunk[] chunks;
+
+    private int chunksCount;
+
+    // index of the most recently accessed chunk; coverage recording touches the
+    // same few chunks over and over again, so this saves most of the binary searches
+    private transient int lastChunkIndex;
+
+    public SparseBitmap() {
+        this.keys = new int[1];
+        this.chunks = new Chunk[1];
+        this.chunksCount = 0;
+    }
+
+    public SparseBitmap(final int... elements) {
+        this();
+        for (final int element : elements) {
+            add(element);
+        }
+    }
+
+    /**
+     * Adds the given element to the set.
+     *
+     * @param element A non-negative integer
+     * @return {@code true} iff the element was not already in the set
+     */
+    public boolean add(final int element) {
+        if (element < 0) {
+            throw new IllegalArgumentException("Non-negative integer argument is expected");
+        }
+        final int key = element >>> CHUNK_BITS;
+        int index = findChunk(key);
+        if (index < 0) {
+            index = -index - 1;
+            insertChunk(index, key);
+        }
+        this.lastChunkIndex = index;
+        return this.chunks[index].add((char) element);
+    }
+
+    public boolean contains(final int element) {
+        if (element < 0) {
+            return false;
+        }
+        final int index = findChunk(element >>> CHUNK_BITS);
+        return index >= 0 && this.chunks[index].contains((char) element);
+    }
+
+    /**
+     * Returns the smallest element of the set that is greater than or equal to the
+     * given integer, or -1 if there is no such element.
+     * Iterating over the set is done via {@code for (int i = s.nextSetBit(0); i >= 0; i = s.nextSetBit(i + 1))}.
+     * A negative argument yields -1, so that the iteration ends, rather than starting
+     * over, once {@code i + 1} overflows past {@link Integer#MAX_VALUE}.
+     *
+     * @param from The integer to start searching from
+     * @return The element found, or -1
+     */
+    public int nextSetBit(final int from) {
+        if (from < 0) {
+            return -1;
+        }
+        final int key = from >>> CHUNK_BITS;
+        int index = findChunk(key);
+        if (index >= 0) {
+            final int low = this.chunks[index].next(from & 0xFFFF);
+            if (low >= 0) {
+                return (key << CHUNK_BITS) | low;
+            }
+            index++;
+        } else {
+            index = -index - 1;
+        }
+        if (index < this.chunksCount) {
+            // chunks are never empty, so the next chunk, if any, holds the answer
+            return (this.keys[index] << CHUNK_BITS) | this.chunks[index].next(0);
+        }
+        return -1;
+    }
+
+    public int cardinality() {
+        int cardinality = 0;
+        for (int index = 0; index < this.chunksCount; index++) {
+            cardinality += this.chunks[index].cardinality;
+        }
+        return cardinality;
+    }
+
+    /**
+     * Adds all the elements of the given set to this set. The sorted chunk keys of the
+     * two sets are merged, and chunks sharing the same key are merged a whole chunk at a
+     * time; chunks present only in the other set are copied.
+     *
+     * @param that The other set
+     */
+    public void or(final SparseBitmap that) {
+        if (that == this || that.chunksCount == 0) {
+            return;
+        }
+        final int maxChunksCount = this.chunksCount + that.chunksCount;
+        final int[] keys = new int[maxChunksCount];
+        final Chunk[] chunks = new Chunk[maxChunksCount];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < this.chunksCount && j < that.chunksCount) {
+            final int thisKey = this.keys[i];
+            final int thatKey = that.keys[j];
+            if (thisKey < thatKey) {
+                keys[k] = thisKey;
+                chunks[k++] = this.chunks[i++];
+            } else if (thisKey > thatKey) {
+                keys[k] = thatKey;
+                chunks[k++] = that.chunks[j++].copy();
+            } else {
+                final Chunk chunk = this.chunks[i++];
+                chunk.or(that.chunks[j++]);
+                keys[k] = thisKey;
+                chunks[k++] = chunk;
+            }
+        }
+        while (i < this.chunksCount) {
+            keys[k] = this.keys[i];
+            chunks[k++] = this.chunks[i++];
+        }
+        while (j < that.chunksCount) {
+            keys[k] = that.keys[j];
+            chunks[k++] = that.chunks[j++].copy();
+        }
+        this.keys = keys;
+        this.chunks = chunks;
+        this.chunksCount = k;
+        this.lastChunkIndex = 0;
+    }
+
+    /**
+     * Returns the number of elements this set has in common with the given set, without
+     * materializing the intersection; dense chunks are intersected a word at a time.
+     *
+     * @param that The other set
+     * @return Cardinality of the intersection of the two sets
+     */
+    public int andCardinality(final SparseBitmap that) {
+        int cardinality = 0;
+        int i = 0;
+        int j = 0;
+        while (i < this.chunksCount && j < that.chunksCount) {
+            final int thisKey = this.keys[i];
+            final int thatKey = that.keys[j];
+            if (thisKey < thatKey) {
+                i++;
+            } else if (thisKey > thatKey) {
+                j++;
+            } else {
+                cardinality += this.chunks[i++].andCardinality(that.chunks[j++]);
+            }
+        }
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return this.chunksCount == 0;
+    }
+
+    public int[] toArray() {
+        final int[] elements = new int[cardinality()];
+        int i = 0;
+        for (int element = nextSetBit(0); element >= 0; element = nextSetBit(element + 1)) {
+            elements[i++] = element;
+        }
+        return elements;
+    }
+
+    private int findChunk(final int key) {
+        final int last = this.lastChunkIndex;
+        if (last < this.chunksCount && this.keys[last] == key) {
+            return last;
+        }
+        return Arrays.binarySearch(this.keys, 0, this.chunksCount, key);
+    }
+
+    private void insertChunk(final int index, final int key) {
+        if (this.chunksCount == this.keys.length) {
+            final int newLength = 2 * this.chunksCount;
+            this.keys = Arrays.copyOf(this.keys, newLength);
+            this.chunks = Arrays.copyOf(this.chunks, newLength);
+        }
+        final int tail = this.chunksCount - index;
+        System.arraycopy(this.keys, index, this.keys, index + 1, tail);
+        System.arraycopy(this.chunks, index, this.chunks, index + 1, tail);
+        this.keys[index] = key;
+        this.chunks[index] = new Chunk();
+        this.chunksCount++;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SparseBitmap)) {
+            return false;
+        }
+        final SparseBitmap that = (SparseBitmap) o;
+        if (this.chunksCount != that.chunksCount) {
+            return false;
+        }
+        int i = this.nextSetBit(0);
+        int j = that.nextSetBit(0);
+        while (i >= 0 && i == j) {
+            i = this.nextSetBit(i + 1);
+            j = that.nextSetBit(j + 1);
+        }
+        return i == j;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int element = nextSetBit(0); element >= 0; element = nextSetBit(element + 1)) {
+            hash = 31 * hash + element;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+
+    /**
+     * The low 16 bits of the elements sharing the same high 16 bits.
+     * A chunk is either a sorted array of {@code char}s, or a bitmap of 2^16 bits.
+     */
+    static final class Chunk implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private char[] values;
+
+        private long[] words;
+
+        private int cardinality;
+
+        Chunk() {
+            this.values = new char[4];
+            this.words = null;
+            this.cardinality = 0;
+        }
+
+        boolean add(final char low) {
+            if (this.words != null) {
+                final int wordIndex = low >>> 6;
+                final long mask = 1L << low;
+                final long word = this.words[wordIndex];
+                if ((word & mask) != 0L) {
+                    return false;
+                }
+                this.words[wordIndex] = word | mask;
+                this.cardinality++;
+                return true;
+            }
+            int index = Arrays.binarySearch(this.values, 0, this.cardinality, low);
+            if (index >= 0) {
+                return false;
+            }
+            if (this.cardinality == ARRAY_CHUNK_MAX_SIZE) {
+                toBitmap();
+                return add(low);
+            }
+            index = -index - 1;
+            if (this.cardinality == this.values.length) {
+                this.values = Arrays.copyOf(this.values, Math.min(2 * this.cardinality, ARRAY_CHUNK_MAX_SIZE));
+            }
+            System.arraycopy(this.values, index, this.values, index + 1, this.cardinality - index);
+            this.values[index] = low;
+            this.cardinality++;
+            return true;
+        }
+
+        boolean contains(final char low) {
+            if (this.words != null) {
+                return (this.words[low >>> 6] & (1L << low)) != 0L;
+            }
+            return Arrays.binarySearch(this.values, 0, this.cardinality, low) >= 0;
+        }
+
+        int andCardinality(final Chunk that) {
+            if (this.words != null && that.words != null) {
+                int cardinality = 0;
+                for (int wordIndex = 0; wordIndex < BITMAP_CHUNK_WORDS; wordIndex++) {
+                    cardinality += Long.bitCount(this.words[wordIndex] & that.words[wordIndex]);
+                }
+                return cardinality;
+            }
+            // probe the larger chunk with the elements of the smaller one; array chunks
+            // never outgrow bitmap chunks, so the smaller one is always an array chunk
+            final Chunk smaller = this.cardinality <= that.cardinality ? this : that;
+            final Chunk larger = smaller == this ? that : this;
+            int cardinality = 0;
+            for (int i = 0; i < smaller.cardinality; i++) {
+                if (larger.contains(smaller.values[i])) {
+                    cardinality++;
+                }
+            }
+            return cardinality;
+        }
+
+        void or(final Chunk that) {
+            if (this.words == null && that.words == null) {
+                // merge the two sorted arrays
+                final char[] merged = new char[this.cardinality + that.cardinality];
+                int i = 0;
+                int j = 0;
+                int k = 0;
+                while (i < this.cardinality && j < that.cardinality) {
+                    final char thisLow = this.values[i];
+                    final char thatLow = that.values[j];
+                    if (thisLow <= thatLow) {
+                        merged[k++] = thisLow;
+                        i++;
+                        if (thisLow == thatLow) {
+                            j++;
+                        }
+                    } else {
+                        merged[k++] = thatLow;
+                        j++;
+                    }
+                }
+                while (i < this.cardinality) {
+                    merged[k++] = this.values[i++];
+                }
+                while (j < that.cardinality) {
+                    merged[k++] = that.values[j++];
+                }
+                this.values = merged;
+                this.cardinality = k;
+                if (k > ARRAY_CHUNK_MAX_SIZE) {
+                    toBitmap();
+                }
+                return;
+            }
+            if (this.words == null) {
+                toBitmap();
+            }
+            if (that.words != null) {
+                for (int wordIndex = 0; wordIndex < BITMAP_CHUNK_WORDS; wordIndex++) {
+                    this.words[wordIndex] |= that.words[wordIndex];
+                }
+            } else {
+                for (int i = 0; i < that.cardinality; i++) {
+                    final char low = that.values[i];
+                    this.words[low >>> 6] |= 1L << low;
+                }
+            }
+            int cardinality = 0;
+            for (final long word : this.words) {
+                cardinality += Long.bitCount(word);
+            }
+            this.cardinality = cardinality;
+        }
+
+        Chunk copy() {
+            final Chunk copy = new Chunk();
+            copy.values = this.values == null ? null : Arrays.copyOf(this.values, this.cardinality);
+            copy.words = this.words == null ? null : this.words.clone();
+            copy.cardinality = this.cardinality;
+            return copy;
+        }
+
+        // returns the smallest low bits that are >= from, or -1
+        int next(final int from) {
+            if (this.words != null) {
+                int wordIndex = from >>> 6;
+                long word = this.words[wordIndex] & (-1L << from);
+                while (word == 0L) {
+                    if (++wordIndex == BITMAP_CHUNK_WORDS) {
+                        return -1;
+                    }
+                    word = this.words[wordIndex];
+                }
+                return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+            }
+            int index = Arrays.binarySearch(this.values, 0, this.cardinality, (char) from);
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index < this.cardinality ? this.values[index] : -1;
+        }
+
+        private void toBitmap() {
+            this.words = new long[BITMAP_CHUNK_WORDS];
+            for (int i = 0; i < this.cardinality; i++) {
+                final char low = this.values[i];
+                this.words[low >>> 6] |= 1L << low;
+            }
+            this.values = null;
+        }
+    }
+}
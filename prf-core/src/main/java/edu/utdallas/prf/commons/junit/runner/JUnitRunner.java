@@ -23,20 +23,30 @@ package edu.utdallas.prf.commons.junit.runner;
 import edu.utdallas.prf.PraPRTestComparator;
 import edu.utdallas.prf.commons.misc.MemberNameUtils;
 import org.pitest.functional.predicate.Predicate;
+import org.pitest.testapi.Description;
 import org.pitest.testapi.ResultCollector;
 import org.pitest.testapi.TestUnit;
 import org.pitest.testapi.execute.ExitingResultCollector;
 import org.pitest.util.IsolationUtils;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static edu.utdallas.prf.commons.junit.JUnitUtils.discoverTestUnits;
 
@@ -47,10 +57,38 @@ import static edu.utdallas.prf.commons.junit.JUnitUtils.discoverTestUnits;
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public class JUnitRunner {
-    private static final ExecutorService EXECUTOR_SERVICE;
+    private static ExecutorService executorService; // replaced when its thread hangs
+
+    private static final long POLL_INTERVAL = 10L; // in milliseconds
+
+    private static final double MIN_CPU_SHARE = 0.9D;
+
+    private static final long HUNG_THREAD_GRACE_PERIOD = 200L; // in milliseconds
+
+    // threads abandoned after running timed out test cases
+    private static final List<Thread> ABANDONED_THREADS = new ArrayList<>();
+
+    private static ExecutorService concurrentExecutorService; // created on demand
+
+    private static int concurrentExecutorThreads; // size of concurrentExecutorService
+
+    private static final ThreadMXBean THREAD_MX_BEAN;
+
+    private static final ThreadFactory DAEMON_THREAD_FACTORY = new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            final Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
 
     static {
-        EXECUTOR_SERVICE = Executors.newSingleThreadExecutor();
+        executorService = Executors.newSingleThreadExecutor(DAEMON_THREAD_FACTORY);
+        THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+        if (THREAD_MX_BEAN.isThreadCpuTimeSupported() && !THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+            THREAD_MX_BEAN.setThreadCpuTimeEnabled(true);
+        }
     }
 
     private final List<String> failingTestNames;
@@ -59,10 +97,15 @@ public class JUnitRunner {
 
     private final ResultCollector resultCollector;
 
+    private Map<String, Long> testsCpuTiming; // null means no CPU time measurements
+
+    private volatile String timedOutTestName;
+
     public JUnitRunner(final Collection<String> classNames,
                        final boolean earlyExit) {
         this.testUnits = discoverTestUnits(classNames);
-        this.failingTestNames = new ArrayList<>();
+        // synchronized, as test cases might be run concurrently
+        this.failingTestNames = Collections.synchronizedList(new ArrayList<String>());
         ResultCollector collector = new DefaultResultCollector(this.failingTestNames);
         if (earlyExit) {
             collector = new ExitingResultCollector(collector);
@@ -82,7 +125,20 @@ public class JUnitRunner {
                        final boolean earlyExit) {
         this.testUnits = discoverTestUnits(classNames, loader);
         Collections.sort(this.testUnits, comparator);
-        this.failingTestNames = new ArrayList<>();
+        // synchronized, as test cases might be run concurrently
+        this.failingTestNames = Collections.synchronizedList(new ArrayList<String>());
+        ResultCollector collector = new DefaultResultCollector(this.failingTestNames);
+        if (earlyExit) {
+            collector = new ExitingResultCollector(collector);
+        }
+        this.resultCollector = collector;
+    }
+
+    public JUnitRunner(final List<TestUnit> testUnits,
+                       final boolean earlyExit) {
+        this.testUnits = testUnits;
+        // synchronized, as test cases might be run concurrently
+        this.failingTestNames = Collections.synchronizedList(new ArrayList<String>());
         ResultCollector collector = new DefaultResultCollector(this.failingTestNames);
         if (earlyExit) {
             collector = new ExitingResultCollector(collector);
@@ -94,6 +150,14 @@ public class JUnitRunner {
         return this.failingTestNames;
     }
 
+    /**
+     * @return Name of the test case that timed out during the last run, or
+     * <code>null</code> if no test case timed out
+     */
+    public String getTimedOutTestName() {
+        return this.timedOutTestName;
+    }
+
     public List<TestUnit> getTestUnits() {
         return this.testUnits;
     }
@@ -102,6 +166,17 @@ public class JUnitRunner {
         this.testUnits = testUnits;
     }
 
+    /**
+     * When the CPU time of test cases is known, a test case exceeding its timeout is
+     * given a second chance, iff it has spent less CPU time than expected, i.e., it has
+     * been slowed down due to contention rather than being stuck in a loop.
+     *
+     * @param testsCpuTiming CPU time of each test case, in milliseconds
+     */
+    public void setTestsCpuTiming(final Map<String, Long> testsCpuTiming) {
+        this.testsCpuTiming = testsCpuTiming;
+    }
+
     public TestExecutionStatus run() {
         return run(TestUnitFilter.all());
     }
@@ -135,14 +210,77 @@ public class JUnitRunner {
                                    final Map<String, Long> testsTiming,
                                    final long timeoutConstant,
                                    final double timeoutPercent) {
+        return runSequentially(this.testUnits, loader, shouldRun, testsTiming, timeoutConstant, timeoutPercent);
+    }
+
+    /**
+     * Runs test classes concurrently on a bounded thread pool. Test cases of the same
+     * class are run one after the other, in the order they appear in the list of test
+     * units, and so are the test classes matched by <code>sequentialTestClasses</code>,
+     * which are run only after all the other test classes are finished. The first test
+     * failure cancels the remaining test cases.
+     *
+     * @param loader The class loader used to run the tests
+     * @param shouldRun Determines which test cases are run
+     * @param testsTiming Running time of each test case, in milliseconds
+     * @param timeoutConstant Timeout bias, in milliseconds
+     * @param timeoutPercent Timeout coefficient
+     * @param threads Maximum number of test classes run concurrently
+     * @param sequentialTestClasses Test classes that are not thread-safe
+     * @return Test execution status
+     */
+    public TestExecutionStatus run(final ClassLoader loader,
+                                   final Predicate<TestUnit> shouldRun,
+                                   final Map<String, Long> testsTiming,
+                                   final long timeoutConstant,
+                                   final double timeoutPercent,
+                                   final int threads,
+                                   final Predicate<String> sequentialTestClasses) {
+        if (threads <= 1) {
+            return run(loader, shouldRun, testsTiming, timeoutConstant, timeoutPercent);
+        }
+        final Map<String, List<TestUnit>> testClasses = new LinkedHashMap<>();
+        final List<TestUnit> sequentialTestUnits = new ArrayList<>();
         for (final TestUnit testUnit : this.testUnits) {
             if (!shouldRun.apply(testUnit)) {
                 continue;
             }
+            final String testClassName = testUnit.getDescription().getFirstTestClass();
+            if (testClassName == null || sequentialTestClasses.apply(testClassName)) {
+                sequentialTestUnits.add(testUnit);
+            } else {
+                List<TestUnit> testClass = testClasses.get(testClassName);
+                if (testClass == null) {
+                    testClass = new ArrayList<>();
+                    testClasses.put(testClassName, testClass);
+                }
+                testClass.add(testUnit);
+            }
+        }
+        final TestExecutionStatus status = runConcurrently(testClasses.values(), loader, testsTiming, timeoutConstant, timeoutPercent, threads);
+        if (status != TestExecutionStatus.OK) {
+            return status;
+        }
+        return runSequentially(sequentialTestUnits, loader, TestUnitFilter.all(), testsTiming, timeoutConstant, timeoutPercent);
+    }
+
+    private TestExecutionStatus runSequentially(final List<TestUnit> testUnits,
+                                                final ClassLoader loader,
+                                                final Predicate<TestUnit> shouldRun,
+                                                final Map<String, Long> testsTiming,
+                                                final long timeoutConstant,
+                                                final double timeoutPercent) {
+        final double loadFactor = loadFactor();
+        for (final TestUnit testUnit : testUnits) {
+            if (!shouldRun.apply(testUnit)) {
+                continue;
+            }
+            final CpuTimeProbe probe = new CpuTimeProbe();
             final Runnable task = new Runnable() {
                 @Override
                 public void run() {
                     try {
+                        probe.start();
                         Thread.currentThread().setContextClassLoader(loader);
                         testUnit.execute(JUnitRunner.this.resultCollector);
                     } catch (Throwable t) {
@@ -153,10 +291,23 @@ public class JUnitRunner {
             try {
                 String testName = testUnit.getDescription().getName();
                 testName = MemberNameUtils.sanitizeExtendedTestName(testName);
-                final double explodedTestTime = testsTiming.get(testName).doubleValue() * (1.D + timeoutPercent);
-                final long timeoutThreshold = timeoutConstant + (long) explodedTestTime;
+                final long timeoutThreshold = timeoutThreshold(testName, testsTiming, timeoutConstant, timeoutPercent, loadFactor);
                 Thread.currentThread().setContextClassLoader(loader);
-                EXECUTOR_SERVICE.submit(task).get(timeoutThreshold, TimeUnit.MILLISECONDS);
+                final Future<?> future = getExecutorService().submit(task);
+                try {
+                    future.get(timeoutThreshold, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    if (!shouldRecheck(testName, probe, timeoutConstant, timeoutPercent)) {
+                        abandon(future, probe.getThread(), testName);
+                        throw e;
+                    }
+                    try {
+                        future.get(timeoutThreshold, TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException te) {
+                        abandon(future, probe.getThread(), testName);
+                        throw te;
+                    }
+                }
             } catch (TimeoutException e) {
                 System.out.println("WARNING: Running test cases is terminated due to TIME_OUT.");
                 return TestExecutionStatus.TIMED_OUT;
@@ -171,4 +322,397 @@ public class JUnitRunner {
         }
         return TestExecutionStatus.OK;
     }
-}
\ No newline at end of file
+
+    private TestExecutionStatus runConcurrently(final Collection<List<TestUnit>> testClasses,
+                                                final ClassLoader loader,
+                                                final Map<String, Long> testsTiming,
+                                                final long timeoutConstant,
+                                                final double timeoutPercent,
+                                                final int threads) {
+        final ExecutorService executorService = getConcurrentExecutorService(threads);
+        // the result collector is shared by the threads running the test classes
+        final ResultCollector resultCollector = new SynchronizedResultCollector(this.resultCollector);
+        final double loadFactor = loadFactor();
+        final AtomicBoolean cancelled = new AtomicBoolean(false);
+        final List<TestClassTask> tasks = new ArrayList<>(testClasses.size());
+        final List<Future<TestExecutionStatus>> futures = new ArrayList<>(testClasses.size());
+        long timeoutThresholds = 0L;
+        for (final List<TestUnit> testClass : testClasses) {
+            final TestClassTask task = new TestClassTask(testClass, loader, resultCollector, testsTiming, timeoutConstant, timeoutPercent, loadFactor, cancelled);
+            tasks.add(task);
+            timeoutThresholds += task.getTimeoutThresholds();
+        }
+        // a test class still waiting for a thread once all the test cases of the run, re-checked
+        // or not, would have timed out is queued behind threads that are stuck
+        final long queueDeadline = System.currentTimeMillis() + 2L * timeoutThresholds;
+        for (final TestClassTask task : tasks) {
+            task.submitted(queueDeadline);
+            futures.add(executorService.submit(task));
+        }
+        boolean completed = false;
+        try {
+            while (true) {
+                boolean allDone = true;
+                for (int i = 0; i < futures.size(); i++) {
+                    final Future<TestExecutionStatus> future = futures.get(i);
+                    if (future.isDone()) {
+                        if (future.get() != TestExecutionStatus.OK) {
+                            System.out.println("WARNING: Running test cases is terminated.");
+                            return TestExecutionStatus.EARLY_EXIT;
+                        }
+                    } else {
+                        allDone = false;
+                        final TestClassTask task = tasks.get(i);
+                        if (task.hasTimedOut(System.currentTimeMillis())) {
+                            this.timedOutTestName = task.getTestName();
+                            System.out.println("WARNING: Running test cases is terminated due to TIME_OUT.");
+                            return TestExecutionStatus.TIMED_OUT;
+                        }
+                    }
+                }
+                if (allDone) {
+                    completed = true;
+                    return TestExecutionStatus.OK;
+                }
+                Thread.sleep(POLL_INTERVAL);
+            }
+        } catch (Exception e) {
+            System.out.println("WARNING: Running test cases is terminated.");
+            return TestExecutionStatus.EARLY_EXIT;
+        } finally {
+            cancelled.set(true);
+            if (!completed) {
+                abandon(futures, tasks);
+            }
+        }
+    }
+
+    private static long timeoutThreshold(final String testName,
+                                         final Map<String, Long> testsTiming,
+                                         final long timeoutConstant,
+                                         final double timeoutPercent,
+                                         final double loadFactor) {
+        final Long testTime = testsTiming.get(testName);
+        final double explodedTestTime = (testTime == null ? 0.D : testTime.doubleValue()) * (1.D + timeoutPercent);
+        return (long) ((timeoutConstant + explodedTestTime) * loadFactor);
+    }
+
+    /**
+     * Test times are measured by the profiler while it runs alone. When the machine is
+     * overloaded, e.g., by many validator JVMs running at once, test cases take
+     * proportionally longer, so timeouts are scaled by the number of runnable processes
+     * per available processor, if it is more than 1.
+     */
+    private static double loadFactor() {
+        final OperatingSystemMXBean osMXBean = ManagementFactory.getOperatingSystemMXBean();
+        final double loadAverage = osMXBean.getSystemLoadAverage(); // negative if not available
+        return Math.max(1.D, loadAverage / osMXBean.getAvailableProcessors());
+    }
+
+    /**
+     * A test case exceeding its timeout is re-checked, iff its thread was short of CPU,
+     * i.e., it got less than 90% of a processor during the test, and it has not spent
+     * more CPU time than the timeout computed from its profiled CPU time, if known. A
+     * test case is never re-checked if the CPU time of its thread cannot be measured.
+     */
+    private boolean shouldRecheck(final String testName,
+                                  final CpuTimeProbe probe,
+                                  final long timeoutConstant,
+                                  final double timeoutPercent) {
+        final long cpuTimeSpent = probe.getCpuTimeSpent();
+        if (cpuTimeSpent < 0L || cpuTimeSpent >= MIN_CPU_SHARE * probe.getWallTimeSpent()) {
+            return false;
+        }
+        final Long expectedCpuTime = this.testsCpuTiming == null ? null : this.testsCpuTiming.get(testName);
+        if (expectedCpuTime != null) {
+            final double explodedCpuTime = expectedCpuTime.doubleValue() * (1.D + timeoutPercent);
+            if (cpuTimeSpent >= timeoutConstant + (long) explodedCpuTime) {
+                return false;
+            }
+        }
+        System.out.println("INFO: Test case " + testName + " exceeded its timeout, but was short of CPU time; re-checking.");
+        return true;
+    }
+
+    private static String testNameOf(final TestUnit testUnit) {
+        return MemberNameUtils.sanitizeExtendedTestName(testUnit.getDescription().getName());
+    }
+
+    private static synchronized ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    private static synchronized ExecutorService getConcurrentExecutorService(final int threads) {
+        if (concurrentExecutorService != null && concurrentExecutorThreads != threads) {
+            concurrentExecutorService.shutdown(); // idle, as the previous run is over
+            concurrentExecutorService = null;
+        }
+        if (concurrentExecutorService == null) {
+            concurrentExecutorService = Executors.newFixedThreadPool(threads, DAEMON_THREAD_FACTORY);
+            concurrentExecutorThreads = threads;
+        }
+        return concurrentExecutorService;
+    }
+
+    /**
+     * Interrupts the thread running the timed out test case and replaces the executor
+     * owning the thread, so that subsequent runs do not queue up behind it.
+     */
+    private void abandon(final Future<?> future, final Thread thread, final String testName) {
+        this.timedOutTestName = testName;
+        future.cancel(true);
+        synchronized (JUnitRunner.class) {
+            if (thread != null) {
+                ABANDONED_THREADS.add(thread);
+            }
+            executorService.shutdownNow();
+            executorService = Executors.newSingleThreadExecutor(DAEMON_THREAD_FACTORY);
+        }
+    }
+
+    /**
+     * Interrupts all the test classes still running, e.g., after a timeout or a test
+     * failure, and replaces the executor owning their threads, as the threads might
+     * ignore the interruption, e.g., if the patch introduces an infinite loop.
+     */
+    private void abandon(final List<Future<TestExecutionStatus>> futures,
+                         final List<TestClassTask> tasks) {
+        synchronized (JUnitRunner.class) {
+            for (int i = 0; i < futures.size(); i++) {
+                final Thread thread = tasks.get(i).probe.getThread();
+                if (!futures.get(i).isDone() && thread != null) {
+                    ABANDONED_THREADS.add(thread);
+                }
+                futures.get(i).cancel(true);
+            }
+            if (concurrentExecutorService != null) {
+                concurrentExecutorService.shutdownNow();
+                concurrentExecutorService = null;
+            }
+        }
+    }
+
+    /**
+     * Tells if any of the threads abandoned due to timed out, or cancelled, test cases is still
+     * running, after giving each of them a short grace period to respond to the
+     * interruption. Such threads might keep on running application code, e.g., the
+     * patched classes, so the JVM shall not be used for further validation.
+     *
+     * @return <code>true</code> iff some test threads are hung
+     */
+    public static boolean hasHungThreads() {
+        synchronized (JUnitRunner.class) {
+            final Iterator<Thread> it = ABANDONED_THREADS.iterator();
+            while (it.hasNext()) {
+                final Thread thread = it.next();
+                try {
+                    thread.join(HUNG_THREAD_GRACE_PERIOD);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return true;
+                }
+                if (!thread.isAlive()) {
+                    it.remove();
+                }
+            }
+            return !ABANDONED_THREADS.isEmpty();
+        }
+    }
+
+    /**
+     * Measures the CPU time spent by the thread running a test case.
+     */
+    private static class CpuTimeProbe {
+        private volatile Thread thread;
+
+        private volatile long cpuTimeStart;
+
+        private volatile long wallTimeStart;
+
+        // called by the thread running the test case
+        void start() {
+            this.cpuTimeStart = THREAD_MX_BEAN.isThreadCpuTimeEnabled() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1L;
+            this.wallTimeStart = System.currentTimeMillis();
+            this.thread = Thread.currentThread();
+        }
+
+        Thread getThread() {
+            return this.thread;
+        }
+
+        /**
+         * @return CPU time, in milliseconds, spent since the last call to {@link #start()},
+         * or a negative value if it cannot be measured
+         */
+        long getCpuTimeSpent() {
+            final Thread thread = this.thread;
+            if (thread == null || this.cpuTimeStart < 0L) {
+                return -1L;
+            }
+            final long cpuTimeNow = THREAD_MX_BEAN.getThreadCpuTime(thread.getId());
+            if (cpuTimeNow < 0L) {
+                return -1L;
+            }
+            return TimeUnit.NANOSECONDS.toMillis(cpuTimeNow - this.cpuTimeStart);
+        }
+
+        long getWallTimeSpent() {
+            return System.currentTimeMillis() - this.wallTimeStart;
+        }
+    }
+
+    /**
+     * Runs the test cases of a test class one after the other, while publishing the
+     * point in time by which the running test case should finish.
+     */
+    private class TestClassTask implements Callable<TestExecutionStatus> {
+        final List<TestUnit> testUnits;
+
+        final ClassLoader loader;
+
+        final ResultCollector resultCollector;
+
+        final Map<String, Long> testsTiming;
+
+        final long timeoutConstant;
+
+        final double timeoutPercent;
+
+        final double loadFactor;
+
+        final AtomicBoolean cancelled;
+
+        final CpuTimeProbe probe;
+
+        String testName;
+
+        long timeoutThreshold;
+
+        long deadline;
+
+        boolean rechecked;
+
+        TestClassTask(final List<TestUnit> testUnits,
+                      final ClassLoader loader,
+                      final ResultCollector resultCollector,
+                      final Map<String, Long> testsTiming,
+                      final long timeoutConstant,
+                      final double timeoutPercent,
+                      final double loadFactor,
+                      final AtomicBoolean cancelled) {
+            this.testUnits = testUnits;
+            this.loader = loader;
+            this.resultCollector = resultCollector;
+            this.testsTiming = testsTiming;
+            this.timeoutConstant = timeoutConstant;
+            this.timeoutPercent = timeoutPercent;
+            this.loadFactor = loadFactor;
+            this.cancelled = cancelled;
+            this.probe = new CpuTimeProbe();
+            this.testName = testNameOf(testUnits.get(0));
+            this.deadline = Long.MAX_VALUE;
+        }
+
+        long getTimeoutThresholds() {
+            long sum = 0L;
+            for (final TestUnit testUnit : this.testUnits) {
+                sum += timeoutThreshold(testNameOf(testUnit), this.testsTiming, this.timeoutConstant, this.timeoutPercent, this.loadFactor);
+            }
+            return sum;
+        }
+
+        // the deadline of a test class waiting for a thread is set upon submission
+        synchronized void submitted(final long deadline) {
+            this.deadline = deadline;
+        }
+
+        synchronized String getTestName() {
+            return this.testName;
+        }
+
+        synchronized void beginTest(final String testName) {
+            this.probe.start();
+            this.testName = testName;
+            this.timeoutThreshold = timeoutThreshold(testName, this.testsTiming, this.timeoutConstant, this.timeoutPercent, this.loadFactor);
+            this.deadline = System.currentTimeMillis() + this.timeoutThreshold;
+            this.rechecked = false;
+        }
+
+        synchronized void endTest() {
+            this.deadline = Long.MAX_VALUE;
+        }
+
+        // a test case exceeding its timeout gets the same amount of time once more, if it is re-checked
+        synchronized boolean hasTimedOut(final long now) {
+            if (now <= this.deadline) {
+                return false;
+            }
+            // a test class that never got a thread is not re-checked
+            if (!this.rechecked && this.probe.getThread() != null
+                    && shouldRecheck(this.testName, this.probe, this.timeoutConstant, this.timeoutPercent)) {
+                this.rechecked = true;
+                this.deadline = now + this.timeoutThreshold;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public TestExecutionStatus call() {
+            Thread.currentThread().setContextClassLoader(this.loader);
+            for (final TestUnit testUnit : this.testUnits) {
+                if (this.cancelled.get()) {
+                    break;
+                }
+                beginTest(testNameOf(testUnit));
+                try {
+                    testUnit.execute(this.resultCollector);
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                }
+                endTest();
+                if (this.resultCollector.shouldExit()) {
+                    return TestExecutionStatus.EARLY_EXIT;
+                }
+            }
+            return TestExecutionStatus.OK;
+        }
+    }
+
+    /**
+     * Serializes the notifications sent to a result collector, e.g., an
+     * {@link ExitingResultCollector}, that is not thread-safe.
+     */
+    private static class SynchronizedResultCollector implements ResultCollector {
+        private final ResultCollector resultCollector;
+
+        SynchronizedResultCollector(final ResultCollector resultCollector) {
+            this.resultCollector = resultCollector;
+        }
+
+        @Override
+        public synchronized void notifyEnd(Description description, Throwable t) {
+            this.resultCollector.notifyEnd(description, t);
+        }
+
+        @Override
+        public synchronized void notifyEnd(Description description) {
+            this.resultCollector.notifyEnd(description);
+        }
+
+        @Override
+        public synchronized void notifyStart(Description description) {
+            this.resultCollector.notifyStart(description);
+        }
+
+        @Override
+        public synchronized void notifySkipped(Description description) {
+            this.resultCollector.notifySkipped(description);
+        }
+
+        @Override
+        public synchronized boolean shouldExit() {
+            return this.resultCollector.shouldExit();
+        }
+    }
+}
@@ -31,7 +31,7 @@ import java.util.List;
 /**
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
-public class DummyPatchGenerationPlugin implements PatchGenerationPlugin {
+public class DummyPatchGenerationPlugin implements PatchGenerationPlugin, CoverageMatrixAware {
     private File projectBaseDirectory;
 
     @Override
@@ -110,4 +110,7 @@ public class DummyPatchGenerationPlugin implements PatchGenerationPlugin {
 
     @Override
     public void setCoverageInfo(CoverageInfo<? extends ProgramElement> coverageInfo) { }
+
+    @Override
+    public void setCoverageMatrix(CoverageMatrix<? extends ProgramElement> coverageMatrix) { }
 }
@@ -29,7 +29,7 @@ import java.util.List;
 /**
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
-public class DummyPatchPrioritizationPlugin implements PatchPrioritizationPlugin {
+public class DummyPatchPrioritizationPlugin implements PatchPrioritizationPlugin, CoverageMatrixAware {
     @Override
     public void visitPluginParameter(String key, String value) { }
 
@@ -49,6 +49,9 @@ public class DummyPatchPrioritizationPlugin implements PatchPrioritizationPlugin
     @Override
     public void setCoverageInfo(CoverageInfo<? extends ProgramElement> coverageInfo) { }
 
+    @Override
+    public void setCoverageMatrix(CoverageMatrix<? extends ProgramElement> coverageMatrix) { }
+
     @Override
     public void setProjectBaseDirectory(File projectBaseDirectory) { }
 
@@ -26,10 +26,18 @@ import edu.utdallas.prf.maven.NamedPluginInfo;
 import edu.utdallas.prf.profiler.Profiler;
 import edu.utdallas.prf.profiler.ProfilerOptions;
 import edu.utdallas.prf.profiler.ProfilerResults;
+import edu.utdallas.prf.profiler.ProfilingCache;
+import edu.utdallas.prf.profiler.TimingHistory;
 import edu.utdallas.prf.profiler.cg.CGOptions;
 import edu.utdallas.prf.profiler.fl.FLOptions;
 import edu.utdallas.prf.profiler.fl.FLStrategy;
+import edu.utdallas.prf.validator.CoveringTestsSelector;
+import edu.utdallas.prf.validator.PatchDeduplicator;
+import edu.utdallas.prf.validator.PatchRanking;
 import edu.utdallas.prf.validator.PatchValidator;
+import edu.utdallas.prf.validator.TwoPhaseValidator;
+import edu.utdallas.prf.validator.ValidationListener;
+import edu.utdallas.prf.validator.ValidatorOptions;
 import edu.utdallas.prf.validator.WorkStealingValidator;
 import edu.utdallas.prf.validator.process.ValidationOutcome;
 import org.apache.commons.io.FileUtils;
@@ -69,6 +77,9 @@ import java.util.concurrent.ConcurrentHashMap;
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public class PRFEntryPoint {
+
+    private static final String PROFILING_CACHE_FILE_NAME = "profiling-cache.bin";
+
     private final ClassPath classPath;
 
     private final ClassByteArraySource byteArraySource;
@@ -107,6 +118,24 @@ public class PRFEntryPoint {
 
     private final NamedPluginInfo patchPrioritizationPluginInfo;
 
+    private final ValidatorOptions validatorOptions;
+
+    private final int profilingRepetitions;
+
+    private final ValidationListener validationListener;
+
+    private final boolean threadAwareCoverage;
+
+    private final int profilingThreads;
+
+    private final int profilingShards;
+
+    private final File profilingCacheDirectory; // null means no incremental profiling
+
+    private final boolean minimalProbes;
+
+    private final File timingHistoryFile; // null means no timing history
+
     private ProcessArgs defaultProcessArgs;
 
     private Collection<String> testClassNames;
@@ -133,7 +162,16 @@ public class PRFEntryPoint {
                           final PatchGenerationPlugin patchGenerationPlugin,
                           final NamedPluginInfo patchGenerationPluginInfo,
                           final PatchPrioritizationPlugin patchPrioritizationPlugin,
-                          final NamedPluginInfo patchPrioritizationPluginInfo) {
+                          final NamedPluginInfo patchPrioritizationPluginInfo,
+                          final ValidatorOptions validatorOptions,
+                          final int profilingRepetitions,
+                          final ValidationListener validationListener,
+                          final boolean threadAwareCoverage,
+                          final int profilingThreads,
+                          final int profilingShards,
+                          final File profilingCacheDirectory,
+                          final boolean minimalProbes,
+                          final File timingHistoryFile) {
         this.classPath = classPath;
         this.byteArraySource = byteArraySource;
         this.appClassFilter = appClassFilter;
@@ -153,86 +191,131 @@ public class PRFEntryPoint {
         this.patchGenerationPluginInfo = patchGenerationPluginInfo;
         this.patchPrioritizationPlugin = patchPrioritizationPlugin;
         this.patchPrioritizationPluginInfo = patchPrioritizationPluginInfo;
+        this.validatorOptions = validatorOptions;
+        this.profilingRepetitions = profilingRepetitions;
+        this.validationListener = validationListener;
+        this.threadAwareCoverage = threadAwareCoverage;
+        this.profilingThreads = profilingThreads;
+        this.profilingShards = profilingShards;
+        this.profilingCacheDirectory = profilingCacheDirectory;
+        this.minimalProbes = minimalProbes;
+        this.timingHistoryFile = timingHistoryFile;
     }
 
     public static PRFEntryPoint createEntryPoint() {
-        return new PRFEntryPoint(null, null, null, null, null, null, null, 0, 0L, 0D, false, null, null, null, null, null, null, null, null);
+        return new PRFEntryPoint(null, null, null, null, null, null, null, 0, 0L, 0D, false, null, null, null, null, null, null, null, null, null, 0, null, false, 1, 1, null, false, null);
     }
 
     public PRFEntryPoint withClassPath(final ClassPath classPath) {
-        return new PRFEntryPoint(classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withAppClassFilter(final Predicate<String> appClassFilter) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withTestClassFilter(final Predicate<String> testClassFilter) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withFailingTests(final Collection<String> failingTests) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withCompatibleJREHome(final File compatibleJREHome) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withChildProcessArguments(final List<String> childProcessArguments) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withByteArraySource(final ClassByteArraySource byteArraySource) {
-        return new PRFEntryPoint(this.classPath, byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withParallelismDegree(final int parallelism) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withTimeoutConstant(final long timeoutConstant) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withTimeoutPercent(final double timeoutPercent) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withSystemUnderRepair(final MavenProject mavenProject) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withFLOptions(final FLOptions flOptions) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withFLStrategy(final FLStrategy flStrategy) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withCGOptions(final CGOptions cgOptions) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withPatchGenerationPlugin(final PatchGenerationPlugin patchGenerationPlugin) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withPatchGenerationPluginInfo(final NamedPluginInfo patchGenerationPluginInfo) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withPatchPrioritizationPlugin(final PatchPrioritizationPlugin patchPrioritizationPlugin) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, patchGenerationPlugin, this.patchGenerationPluginInfo, patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, patchGenerationPlugin, this.patchGenerationPluginInfo, patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withPatchPrioritizationPluginInfo(final NamedPluginInfo patchPrioritizationPluginInfo) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
     }
 
     public PRFEntryPoint withCollectCoverage(final boolean collectCoverage) {
-        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo);
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
+    }
+
+    public PRFEntryPoint withValidatorOptions(final ValidatorOptions validatorOptions) {
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
+    }
+
+    public PRFEntryPoint withProfilingRepetitions(final int profilingRepetitions) {
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
+    }
+
+    public PRFEntryPoint withValidationListener(final ValidationListener validationListener) {
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
+    }
+
+    public PRFEntryPoint withThreadAwareCoverage(final boolean threadAwareCoverage) {
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
+    }
+
+    public PRFEntryPoint withProfilingThreads(final int profilingThreads) {
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
+    }
+
+    public PRFEntryPoint withProfilingShards(final int profilingShards) {
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, profilingShards, this.profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
+    }
+
+    public PRFEntryPoint withProfilingCacheDirectory(final File profilingCacheDirectory) {
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, profilingCacheDirectory, this.minimalProbes, this.timingHistoryFile);
+    }
+
+    public PRFEntryPoint withMinimalProbes(final boolean minimalProbes) {
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, minimalProbes, this.timingHistoryFile);
+    }
+
+    public PRFEntryPoint withTimingHistoryFile(final File timingHistoryFile) {
+        return new PRFEntryPoint(this.classPath, this.byteArraySource, this.appClassFilter, this.testClassFilter, this.failingTests, this.compatibleJREHome, this.childProcessArguments, this.parallelism, this.timeoutConstant, this.timeoutPercent, this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions, this.mavenProject, this.patchGenerationPlugin, this.patchGenerationPluginInfo, this.patchPrioritizationPlugin, this.patchPrioritizationPluginInfo, this.validatorOptions, this.profilingRepetitions, this.validationListener, this.threadAwareCoverage, this.profilingThreads, this.profilingShards, this.profilingCacheDirectory, this.minimalProbes, timingHistoryFile);
     }
 
     public void run() throws NotFoundException, MojoFailureException {
@@ -246,7 +329,7 @@ public class PRFEntryPoint {
         final ProfilerResults profilerResults = runProfiler();
 
         // run patch generator
-        this.patches = runPatchGenerator(profilerResults.getFLInfo(), profilerResults.getCoverageInfo());
+        this.patches = runPatchGenerator(profilerResults);
 
         if (this.failingTests.isEmpty()) {
             Collections.addAll(this.failingTests, profilerResults.getFailingTestNames());
@@ -256,29 +339,70 @@ public class PRFEntryPoint {
                 System.out.println("\t" + testName);
             }
         }
-        this.testComparator = new PraPRTestComparator(profilerResults.getTestsTiming(), this.failingTests);
+        this.testComparator = new PraPRTestComparator(profilerResults.getTestsTiming(), this.failingTests)
+                .withTestsCpuTiming(profilerResults.getTestsCpuTiming());
+
+        if (this.validatorOptions.isTestSelectionEnabled()) {
+            this.patches = selectCoveringTests(profilerResults.getCoverageMatrix());
+        }
+
+        // patches are prioritized once, and the plausible ones are reported in the same order
+        final boolean pluginOrder = this.validatorOptions.getPatchRanking() == PatchRanking.PLUGIN_ORDER;
+        if (pluginOrder) {
+            this.patches = prioritizePatches(new ArrayList<>(this.patches), profilerResults);
+        }
+
+        final Collection<Patch> allPatches = this.patches;
+
+        // set aside bytecode-identical patches; representatives keep the order of the patches
+        final PatchDeduplicator deduplicator = new PatchDeduplicator(this.patches);
+        this.patches = deduplicator.getRepresentatives();
 
         // run patch validator
         final Map<Patch, ValidationOutcome> validationStatusMap = new ConcurrentHashMap<>();
-        final PatchValidator patchValidator = runPatchValidator(validationStatusMap);
+        final PatchValidator patchValidator = runPatchValidator(profilerResults.getCoverageMatrix(), validationStatusMap);
+        deduplicator.copyOutcomes(validationStatusMap);
         // classify patches
         List<Patch> plausiblePatches = new LinkedList<>();
-        for (final Map.Entry<Patch, ValidationOutcome> entry : validationStatusMap.entrySet()) {
-            if (entry.getValue() == ValidationOutcome.PLAUSIBLE) {
-                plausiblePatches.add(entry.getKey());
+        for (final Patch patch : allPatches) {
+            if (validationStatusMap.get(patch) == ValidationOutcome.PLAUSIBLE) {
+                plausiblePatches.add(patch);
+            }
+        }
+        // patches left out due to early termination of the validation
+        final List<Patch> unvalidatedPatches = new LinkedList<>();
+        for (final Patch patch : allPatches) {
+            if (!validationStatusMap.containsKey(patch)) {
+                unvalidatedPatches.add(patch);
             }
         }
 //        if (plausiblePatches.isEmpty()) {
 //            throw new NotFoundException("0 plausible patches found");
 //        }
         // run patch fix report generator
-        fixReportGenerator(plausiblePatches, profilerResults.getFLInfo(), profilerResults.getCoverageInfo());
+        if (!pluginOrder) {
+            plausiblePatches = prioritizePatches(plausiblePatches, profilerResults);
+        }
+        fixReportGenerator(plausiblePatches);
+        unvalidatedPatchesReport(unvalidatedPatches);
     }
 
-    private void fixReportGenerator(List<Patch> plausiblePatches,
-                                    final FaultLocalizationInfo<? extends ProgramElement> flInfo,
-                                    final CoverageInfo<? extends ProgramElement> covInfo) throws MojoFailureException {
-        plausiblePatches = prioritizePatches(plausiblePatches, flInfo, covInfo);
+    private void unvalidatedPatchesReport(final List<Patch> unvalidatedPatches) {
+        if (unvalidatedPatches.isEmpty()) {
+            return;
+        }
+        System.out.println();
+        System.out.println(Ansi.construct(unvalidatedPatches.size() + " patches were never validated:", Ansi.ColorCode.BOLD_FACE, Ansi.ColorCode.YELLOW));
+        for (final Patch patch : unvalidatedPatches) {
+            final StringBuilder sb = new StringBuilder("\t" + patch.getId() + ":");
+            for (final PatchLocation location : patch.getLocations()) {
+                sb.append(' ').append(location.getClassName()).append(':').append(location.getLineNumber());
+            }
+            System.out.println(sb.toString());
+        }
+    }
+
+    private void fixReportGenerator(final List<Patch> plausiblePatches) {
         System.out.println("\n=====================================");
         System.out.println("    PRF Fix Report");
         System.out.println("=====================================");
@@ -311,12 +435,11 @@ public class PRFEntryPoint {
         }
     }
 
-    private List<Patch> runPatchGenerator(final FaultLocalizationInfo<? extends ProgramElement> flInfo,
-                                          final CoverageInfo<? extends ProgramElement> covInfo) throws MojoFailureException {
+    private List<Patch> runPatchGenerator(final ProfilerResults profilerResults) throws MojoFailureException {
         final PatchGenerationPlugin plugin = this.patchGenerationPlugin;
         plugin.init();
-        plugin.setFaultLocalizationInfo(flInfo);
-        plugin.setCoverageInfo(covInfo);
+        plugin.setFaultLocalizationInfo(profilerResults.getFLInfo());
+        setCoverageInfo(plugin, profilerResults);
         plugin.setProjectBaseDirectory(this.mavenProject.getBasedir());
         final Build build = this.mavenProject.getBuild();
         plugin.setProjectSourceDirectory(new File(build.getSourceDirectory()));
@@ -338,12 +461,11 @@ public class PRFEntryPoint {
     }
 
     private List<Patch> prioritizePatches(List<Patch> plausiblePatches,
-                                          final FaultLocalizationInfo<? extends ProgramElement> flInfo,
-                                          final CoverageInfo<? extends ProgramElement> covInfo) throws MojoFailureException {
+                                          final ProfilerResults profilerResults) throws MojoFailureException {
         final PatchPrioritizationPlugin plugin = this.patchPrioritizationPlugin;
         plugin.init();
-        plugin.setFaultLocalizationInfo(flInfo);
-        plugin.setCoverageInfo(covInfo);
+        plugin.setFaultLocalizationInfo(profilerResults.getFLInfo());
+        setCoverageInfo(plugin, profilerResults);
         plugin.setProjectBaseDirectory(this.mavenProject.getBasedir());
         final Build build = this.mavenProject.getBuild();
         plugin.setProjectSourceDirectory(new File(build.getSourceDirectory()));
@@ -363,21 +485,108 @@ public class PRFEntryPoint {
         return patches;
     }
 
-    private PatchValidator runPatchValidator(final Map<Patch, ValidationOutcome> validationStatusMap) {
-        final PatchValidator validator = new WorkStealingValidator(this.defaultProcessArgs,
-                this.appClassFilter,
-                this.testClassNames,
-                this.testComparator,
-                this.timeoutConstant,
-                this.timeoutPercent,
-                this.patches,
-                validationStatusMap);
+    // plugins that can consume the coverage matrix are spared materializing its hash table-based view
+    private static void setCoverageInfo(final PRFPluginBase plugin, final ProfilerResults profilerResults) {
+        if (plugin instanceof CoverageMatrixAware) {
+            ((CoverageMatrixAware) plugin).setCoverageMatrix(profilerResults.getCoverageMatrix());
+            plugin.setCoverageInfo(null);
+        } else {
+            plugin.setCoverageInfo(profilerResults.getCoverageInfo());
+        }
+    }
+
+    private List<Patch> selectCoveringTests(final CoverageMatrix<? extends ProgramElement> covMatrix) {
+        final CoveringTestsSelector selector = new CoveringTestsSelector(this.byteArraySource,
+                covMatrix,
+                this.failingTests);
+        return selector.select(this.patches);
+    }
+
+    private PatchValidator runPatchValidator(final CoverageMatrix<? extends ProgramElement> covMatrix,
+                                             final Map<Patch, ValidationOutcome> validationStatusMap) {
+        final ValidatorOptions validatorOptions = this.validatorOptions.withValidationListener(this.validationListener);
+        final PatchValidator validator;
+        if (this.validatorOptions.isTwoPhaseValidationEnabled() || this.validatorOptions.isRegressionPrescreenEnabled()) {
+            final Map<Patch, List<String>> minimizedSuites;
+            if (this.validatorOptions.isRegressionPrescreenEnabled()) {
+                final CoveringTestsSelector selector = new CoveringTestsSelector(this.byteArraySource,
+                        covMatrix,
+                        this.failingTests);
+                minimizedSuites = selector.minimize(this.patches, this.testComparator.getTestsTiming());
+            } else {
+                minimizedSuites = Collections.emptyMap();
+            }
+            validator = new TwoPhaseValidator(this.defaultProcessArgs,
+                    this.appClassFilter,
+                    this.testClassNames,
+                    this.testComparator,
+                    this.timeoutConstant,
+                    this.timeoutPercent,
+                    validatorOptions,
+                    this.byteArraySource,
+                    this.patches,
+                    minimizedSuites,
+                    validationStatusMap);
+        } else {
+            validator = new WorkStealingValidator(this.defaultProcessArgs,
+                    this.appClassFilter,
+                    this.testClassNames,
+                    this.testComparator,
+                    this.timeoutConstant,
+                    this.timeoutPercent,
+                    validatorOptions,
+                    this.byteArraySource,
+                    this.patches,
+                    validationStatusMap);
+        }
         validator.run(this.parallelism);
         return validator;
     }
 
     private ProfilerResults runProfiler() {
-        return Profiler.runProfiler(this.defaultProcessArgs, this.appClassFilter, this.testClassNames, new ProfilerOptions(this.collectCoverage, this.flOptions, this.flStrategy, this.cgOptions));
+        // test selection and regression pre-screening need per-test coverage
+        final boolean collectCoverage = this.collectCoverage
+                || this.validatorOptions.isTestSelectionEnabled()
+                || this.validatorOptions.isRegressionPrescreenEnabled();
+        final ProfilerOptions options = new ProfilerOptions(collectCoverage,
+                this.flOptions,
+                this.flStrategy,
+                this.cgOptions,
+                this.profilingRepetitions,
+                this.threadAwareCoverage,
+                this.profilingThreads,
+                this.validatorOptions.getSequentialTestClassFilter(),
+                this.minimalProbes);
+        // running times observed in the previous session
+        final Map<String, Long> timingHistory = TimingHistory.load(this.timingHistoryFile);
+        final ProfilerResults profilerResults;
+        if (this.profilingCacheDirectory != null) {
+            final ProfilingCache cache = ProfilingCache.load(new File(this.profilingCacheDirectory, PROFILING_CACHE_FILE_NAME),
+                    this.classPath.getComponent(Prelude.not(new DefaultDependencyPathPredicate())),
+                    this.appClassFilter,
+                    this.testClassNames,
+                    this.defaultProcessArgs.getLaunchClassPath(),
+                    options);
+            profilerResults = Profiler.runProfiler(this.defaultProcessArgs,
+                    this.appClassFilter,
+                    this.testClassNames,
+                    options,
+                    this.profilingShards,
+                    timingHistory,
+                    cache);
+            cache.save();
+        } else {
+            profilerResults = Profiler.runProfiler(this.defaultProcessArgs,
+                    this.appClassFilter,
+                    this.testClassNames,
+                    options,
+                    this.profilingShards,
+                    timingHistory);
+        }
+        if (this.timingHistoryFile != null && !profilerResults.getTestsTiming().isEmpty()) {
+            TimingHistory.save(this.timingHistoryFile, profilerResults.getTestsTiming());
+        }
+        return profilerResults;
     }
 
     private List<String> retrieveTestClassNames() {
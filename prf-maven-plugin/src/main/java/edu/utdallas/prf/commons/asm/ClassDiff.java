@@ -0,0 +1,311 @@
+package edu.utdallas.prf.commons.asm;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compares the original version of a class against its patched version.
+ * Two versions of a class are said to have the same <i>shape</i> if they have the
+ * same access flags, super class, interfaces, fields (along with their constant values),
+ * and method signatures.
+ * Method bodies are compared modulo debug information and stack map frames.
+ * Methods are identified by their name followed by their descriptor, e.g.,
+ * <code>foo(I)V</code>.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class ClassDiff {
+    private final byte[] originalBytes;
+
+    private final ClassSummary original;
+
+    private final ClassSummary patched;
+
+    private ClassDiff(final byte[] originalBytes, final ClassSummary original, final ClassSummary patched) {
+        this.originalBytes = originalBytes;
+        this.original = original;
+        this.patched = patched;
+    }
+
+    public static ClassDiff diff(final byte[] originalBytes, final byte[] patchedBytes) {
+        return new ClassDiff(originalBytes, ClassSummary.of(originalBytes), ClassSummary.of(patchedBytes));
+    }
+
+    public boolean isShapePreserving() {
+        return this.original.shape.equals(this.patched.shape);
+    }
+
+    /**
+     * Returns the methods that are added, removed, or whose body is altered.
+     *
+     * @return The set of method names (appended with descriptors)
+     */
+    public Set<String> getChangedMethods() {
+        final Set<String> changed = new HashSet<>();
+        for (final Map.Entry<String, String> entry : this.original.methodBodies.entrySet()) {
+            final String patchedBody = this.patched.methodBodies.get(entry.getKey());
+            if (!entry.getValue().equals(patchedBody)) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (final String method : this.patched.methodBodies.keySet()) {
+            if (!this.original.methodBodies.containsKey(method)) {
+                changed.add(method);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Returns the line numbers, in the original class, spanned by the given methods.
+     *
+     * @param methods The set of method names (appended with descriptors)
+     * @return For each method, the set of line numbers; methods without line number
+     * information are mapped to empty sets
+     */
+    public Map<String, Set<Integer>> getOriginalLineNumbers(final Set<String> methods) {
+        final Map<String, Set<Integer>> lineNumbers = new HashMap<>();
+        for (final String method : methods) {
+            lineNumbers.put(method, new HashSet<Integer>());
+        }
+        final ClassVisitor visitor = new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                final Set<Integer> lines = lineNumbers.get(name + descriptor);
+                if (lines == null) {
+                    return null;
+                }
+                return new MethodVisitor(Opcodes.ASM7) {
+                    @Override
+                    public void visitLineNumber(int line, Label start) {
+                        lines.add(line);
+                    }
+                };
+            }
+        };
+        (new ClassReader(this.originalBytes)).accept(visitor, ClassReader.SKIP_FRAMES);
+        return lineNumbers;
+    }
+
+    /**
+     * Returns the name of the source file from which the original class is compiled.
+     *
+     * @return Source file name, or <code>null</code> if the class does not have
+     * such information
+     */
+    public String getOriginalSourceFile() {
+        final String[] sourceFile = {null};
+        final ClassVisitor visitor = new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public void visitSource(String source, String debug) {
+                sourceFile[0] = source;
+            }
+        };
+        (new ClassReader(this.originalBytes)).accept(visitor, ClassReader.SKIP_CODE);
+        return sourceFile[0];
+    }
+
+    private static class ClassSummary extends ClassVisitor {
+        private final Set<String> shape;
+
+        private final Map<String, String> methodBodies;
+
+        ClassSummary() {
+            super(Opcodes.ASM7);
+            this.shape = new HashSet<>();
+            this.methodBodies = new HashMap<>();
+        }
+
+        static ClassSummary of(final byte[] bytes) {
+            final ClassSummary summary = new ClassSummary();
+            (new ClassReader(bytes)).accept(summary, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+            return summary;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            this.shape.add("C " + access + " " + name + " " + superName + " " + Arrays.toString(interfaces));
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+            // changing the constant value of a field changes the code that reads it
+            this.shape.add("F " + access + " " + name + " " + descriptor + " " + value);
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            final String method = name + descriptor;
+            this.shape.add("M " + access + " " + method);
+            return new MethodCanonicalizer(method, this.methodBodies);
+        }
+    }
+
+    private static class MethodCanonicalizer extends MethodVisitor {
+        private final String method;
+
+        private final Map<String, String> methodBodies;
+
+        private final Map<Label, Integer> labels;
+
+        private final StringBuilder body;
+
+        MethodCanonicalizer(final String method, final Map<String, String> methodBodies) {
+            super(Opcodes.ASM7);
+            this.method = method;
+            this.methodBodies = methodBodies;
+            this.labels = new IdentityHashMap<>();
+            this.body = new StringBuilder();
+        }
+
+        private int labelId(final Label label) {
+            Integer id = this.labels.get(label);
+            if (id == null) {
+                id = this.labels.size();
+                this.labels.put(label, id);
+            }
+            return id;
+        }
+
+        private String labelIds(final Label[] labels) {
+            final StringBuilder sb = new StringBuilder("[");
+            for (final Label label : labels) {
+                sb.append(labelId(label)).append(',');
+            }
+            return sb.append(']').toString();
+        }
+
+        private static String constant(final Object value) {
+            if (value instanceof Handle) {
+                final Handle handle = (Handle) value;
+                return "H" + handle.getTag() + handle.getOwner() + "." + handle.getName() + handle.getDesc();
+            }
+            return value.getClass().getSimpleName() + ":" + value;
+        }
+
+        private MethodCanonicalizer append(final Object... items) {
+            for (final Object item : items) {
+                this.body.append(item).append(' ');
+            }
+            this.body.append('\n');
+            return this;
+        }
+
+        @Override
+        public void visitInsn(int opcode) {
+            append(opcode);
+        }
+
+        @Override
+        public void visitIntInsn(int opcode, int operand) {
+            append(opcode, operand);
+        }
+
+        @Override
+        public void visitVarInsn(int opcode, int var) {
+            append(opcode, var);
+        }
+
+        @Override
+        public void visitTypeInsn(int opcode, String type) {
+            append(opcode, type);
+        }
+
+        @Override
+        public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
+            append(opcode, owner, name, descriptor);
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+            append(opcode, owner, name, descriptor, isInterface);
+        }
+
+        @Override
+        public void visitInvokeDynamicInsn(String name, String descriptor, Handle bootstrapMethodHandle, Object... bootstrapMethodArguments) {
+            final StringBuilder args = new StringBuilder();
+            for (final Object arg : bootstrapMethodArguments) {
+                args.append(constant(arg)).append(',');
+            }
+            append(Opcodes.INVOKEDYNAMIC, name, descriptor, constant(bootstrapMethodHandle), args);
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            append(opcode, "L" + labelId(label));
+        }
+
+        @Override
+        public void visitLabel(Label label) {
+            append("L" + labelId(label) + ":");
+        }
+
+        @Override
+        public void visitLdcInsn(Object value) {
+            append(Opcodes.LDC, constant(value));
+        }
+
+        @Override
+        public void visitIincInsn(int var, int increment) {
+            append(Opcodes.IINC, var, increment);
+        }
+
+        @Override
+        public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+            append(Opcodes.TABLESWITCH, min, max, "L" + labelId(dflt), labelIds(labels));
+        }
+
+        @Override
+        public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+            append(Opcodes.LOOKUPSWITCH, "L" + labelId(dflt), Arrays.toString(keys), labelIds(labels));
+        }
+
+        @Override
+        public void visitMultiANewArrayInsn(String descriptor, int numDimensions) {
+            append(Opcodes.MULTIANEWARRAY, descriptor, numDimensions);
+        }
+
+        @Override
+        public void visitTryCatchBlock(Label start, Label end, Label handler, String type) {
+            append("TRY", "L" + labelId(start), "L" + labelId(end), "L" + labelId(handler), type);
+        }
+
+        @Override
+        public void visitEnd() {
+            this.methodBodies.put(this.method, this.body.toString());
+        }
+    }
+}
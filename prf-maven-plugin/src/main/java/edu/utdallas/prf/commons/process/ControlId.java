@@ -32,6 +32,8 @@ public class ControlId {
 
     public static final byte REPORT_FAILING_TEST_NAMES = 2;
 
+    public static final byte REPORT_TEST_CPU_TIME = 3;
+
     public static final byte REPORT_CLASS_LEVEL_FL = 4;
 
     public static final byte REPORT_CLASS_LEVEL_COV = 5;
@@ -44,7 +46,23 @@ public class ControlId {
 
     public static final byte REPORT_LINE_LEVEL_COV = 17;
 
+    // per-test events streamed from a validator process while it validates a patch
+
+    public static final byte REPORT_TEST_STARTED = 48;
+
+    public static final byte REPORT_TEST_PASSED = 49;
+
+    public static final byte REPORT_TEST_FAILED = 50;
+
     public static final byte DONE = Id.DONE;
 
+    // the following are sent from the parent process to a pooled validator process
+
+    public static final byte VALIDATE_PATCH = 32;
+
+    public static final byte TERMINATE = 33;
+
+    public static final byte VALIDATE_SCHEMA = 34;
+
     private ControlId() { }
 }
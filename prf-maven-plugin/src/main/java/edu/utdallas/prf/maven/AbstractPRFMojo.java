@@ -33,6 +33,9 @@ import edu.utdallas.prf.profiler.cg.CGOptions;
 import edu.utdallas.prf.profiler.fl.FLOptions;
 import edu.utdallas.prf.profiler.fl.FLStrategy;
 import edu.utdallas.prf.profiler.fl.FLStrategyImpl;
+import edu.utdallas.prf.validator.PatchRanking;
+import edu.utdallas.prf.validator.ValidationMode;
+import edu.utdallas.prf.validator.ValidatorOptions;
 import org.apache.maven.artifact.Artifact;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
 import org.apache.maven.plugin.AbstractMojo;
@@ -80,6 +83,8 @@ public class AbstractPRFMojo extends AbstractMojo {
 
     protected FLStrategy flStrategyImpl;
 
+    protected ValidatorOptions validatorOptions;
+
     @Parameter(property = "project", readonly = true, required = true)
     protected MavenProject project;
 
@@ -165,6 +170,252 @@ public class AbstractPRFMojo extends AbstractMojo {
     @Parameter(property = "parallelism", defaultValue = "0")
     protected int parallelism;
 
+    /**
+     * Validator JVMs are reused across patches. A value n, where n > 0, means that a
+     * validator JVM shall be recycled, i.e. terminated and replaced by a fresh one, after
+     * validating n patches; this bounds the amount of state (e.g. static fields and
+     * loaded classes) that might leak from one patch to the next. For n <= 0, a validator
+     * JVM shall be recycled only if it times out, runs out of memory, or crashes.
+     * By default, this value is 50.
+     */
+    @Parameter(property = "patchesPerValidator", defaultValue = "50")
+    protected int patchesPerValidator;
+
+    /**
+     * Determines how patched classes are brought into a validator JVM.
+     * CLASS_LOADER (default): each patch is loaded, along with all the application classes,
+     * by a fresh class loader.
+     * HOT_SWAP: the original program is loaded once per validator JVM, and for each patch,
+     * patched classes are redefined in-place and then restored after running the tests.
+     * This avoids re-loading and re-JIT-ing the program, but static state is shared among
+     * patches. Patches that add/remove fields or methods, or change class hierarchy, are
+     * validated as in CLASS_LOADER mode.
+     * SCHEMATA: patches that only alter the body of the same method are merged into a
+     * single class that switches between patch variants based on a runtime selector; the
+     * merged class is loaded once and the patches are validated in a batch by changing the
+     * selector between test runs. Other patches are validated as in CLASS_LOADER mode.
+     * The maximum number of patches per batch is controlled by the system property
+     * prf.def.schema.size (32 by default).
+     */
+    @Parameter(property = "validationMode", defaultValue = "CLASS_LOADER")
+    protected ValidationMode validationMode;
+
+    /**
+     * Coverage-based regression test selection. When enabled, patched classes are diffed
+     * against the original classes, and each patch is validated only against the
+     * originally failing test cases plus the test cases that cover the methods altered
+     * by the patch. This forces PRF to collect test coverage during profiling, which
+     * instruments the application classes even if fault localization is turned off.
+     * Patches that add/remove class members, alter constructors or static initializers,
+     * or alter methods that get no coverage probes, e.g., interface methods, are still
+     * validated against all the test cases.
+     * By default, this is disabled, and each patch runs against the whole test suite.
+     */
+    @Parameter(property = "testSelection", defaultValue = "false")
+    protected boolean testSelection;
+
+    /**
+     * Enables/disables caching validation outcomes across runs. When enabled (default),
+     * the outcome of validating a patch is stored under outcomeCacheDirectory, keyed by
+     * the patched bytecode, the test cases to be run, and the contents of the classpath,
+     * so that re-running PRF on the same bug, e.g. after tuning fault localization or
+     * prioritization settings, does not re-validate the same patches. Any change to the
+     * application or test classes automatically invalidates the cached outcomes.
+     * Only deterministic outcomes are cached, i.e., plausible patches and patches on
+     * which a test case failed; crashes, timeouts, and memory errors are not cached.
+     */
+    @Parameter(property = "outcomeCache", defaultValue = "true")
+    protected boolean outcomeCache;
+
+    /**
+     * The directory in which validation outcomes are cached.
+     * By default, this is prf-cache under the build directory of the project.
+     */
+    @Parameter(property = "outcomeCacheDirectory", defaultValue = "${project.build.directory}/prf-cache")
+    protected File outcomeCacheDirectory;
+
+    /**
+     * Stops patch validation once this many plausible patches are found. Patches that
+     * are being validated at that moment are abandoned, and the patches that are never
+     * validated are listed in the report.
+     * By default, this value is 0, meaning that all the patches are validated.
+     */
+    @Parameter(property = "maxPlausiblePatches", defaultValue = "0")
+    protected int maxPlausiblePatches;
+
+    /**
+     * When set to true, a patch is not validated if all the locations it touches already
+     * have a plausible patch, i.e., only the first plausible patch per location is sought.
+     * By default, this is false.
+     */
+    @Parameter(property = "firstPlausiblePerLocation", defaultValue = "false")
+    protected boolean firstPlausiblePerLocation;
+
+    /**
+     * Wall-clock time budget, in seconds, for patch validation. Once the budget is
+     * exhausted, validation stops and the patches being validated are abandoned.
+     * By default, this value is 0, meaning that there is no time budget.
+     */
+    @Parameter(property = "validationTimeBudget", defaultValue = "0")
+    protected long validationTimeBudget;
+
+    /**
+     * Determines the order in which patches are validated, so as to minimize the time
+     * to the first plausible patch.
+     * SUSPICIOUSNESS (default): patches touching more suspicious locations first.
+     * PLUGIN_ORDER: the order imposed by the patch prioritization plugin (or the order in
+     * which the patch generation plugin returned the patches, if no prioritization plugin
+     * is specified).
+     * EXPECTED_COST: shortest expected job first, to maximize the number of patches
+     * validated per minute. The expected cost of a patch is estimated using the running
+     * time of its test cases measured during profiling. Toward the end of the run,
+     * expensive patches are started early enough that they do not keep a single validator
+     * busy while the others sit idle.
+     */
+    @Parameter(property = "patchRanking", defaultValue = "SUSPICIOUSNESS")
+    protected PatchRanking patchRanking;
+
+    /**
+     * Number of test classes that each validator JVM runs concurrently while validating
+     * a patch. Test cases of the same class are always run one after the other, and the
+     * first test failure cancels the remaining test cases.
+     * By default, this value is 1, meaning that test cases are run sequentially.
+     */
+    @Parameter(property = "testThreads", defaultValue = "1")
+    protected int testThreads;
+
+    /**
+     * A set of regular expressions matching test classes that are not thread-safe.
+     * When testThreads is greater than 1, such test classes are run only after all the
+     * other test classes are finished, and one at a time.
+     */
+    @Parameter(property = "sequentialTestClasses")
+    protected Set<String> sequentialTestClasses;
+
+    /**
+     * Maximum number of validator JVMs among which the test cases of a single patch are
+     * split. Sharding kicks in only toward the end of the run, when there are no more
+     * patches to hand out and some of the validator JVMs would otherwise sit idle; the
+     * test cases are then distributed among the shards so that shards take roughly the
+     * same time, based on the profiled running time of the test cases. A failure in any
+     * of the shards cancels the others.
+     * By default, this value is 1, meaning that sharding is disabled.
+     */
+    @Parameter(property = "maxShardsPerPatch", defaultValue = "1")
+    protected int maxShardsPerPatch;
+
+    /**
+     * Number of extra times each test case is run during profiling, while warm, so as to
+     * measure its running time more robustly. The 90th percentiles of the wall-clock and
+     * CPU times of the warm runs are used for computing timeouts. During validation, the
+     * timeouts are further scaled up by the load of the machine, and a test case
+     * exceeding its timeout, without having spent more CPU time than expected, is given
+     * a second chance before the patch is deemed timed out, if the JVM can measure the
+     * CPU time of threads.
+     * By default, this value is 0, meaning that each test case is run only once.
+     */
+    @Parameter(property = "profilingRepetitions", defaultValue = "0")
+    protected int profilingRepetitions;
+
+    /**
+     * Number of test classes that the profiler runs concurrently. Test classes matched by
+     * sequentialTestClasses are run only after all the other test classes are finished,
+     * and one at a time. Since concurrently running test cases slow each other down,
+     * their profiled running time, and hence the timeouts derived from it, are larger.
+     * A value greater than 1 implies threadAwareCoverage.
+     * By default, this value is 1, meaning that test cases are profiled sequentially.
+     */
+    @Parameter(property = "profilingThreads", defaultValue = "1")
+    protected int profilingThreads;
+
+    /**
+     * Attribute the code executed by threads that test cases spawn, and by concurrently
+     * running test cases, to the test case they work for. Each thread records coverage
+     * into a buffer of its own, which is merged into the coverage of the test case when
+     * the test case ends. This makes coverage recording somewhat slower.
+     * By default, this is disabled, and all the code executed during a test case is
+     * attributed to the test case.
+     */
+    @Parameter(property = "threadAwareCoverage", defaultValue = "false")
+    protected boolean threadAwareCoverage;
+
+    /**
+     * Number of JVMs among which test classes are distributed during profiling. Test
+     * classes are assigned to the JVMs so that they take roughly the same time to run,
+     * according to the running times observed in the previous session (kept in
+     * timingHistoryFile), or so that they get roughly the same number of test
+     * classes if no such history exists. Coverage and timing information of all the JVMs
+     * are merged, and fault localization is performed on the merged coverage.
+     * Each JVM takes its own share of memory, and test cases that interact with test
+     * cases of other test classes through static state might behave differently.
+     * By default, this value is 1, meaning that the test suite is profiled in a single JVM.
+     */
+    @Parameter(property = "profilingShards", defaultValue = "1")
+    protected int profilingShards;
+
+    /**
+     * The file in which the running times of the test cases observed during profiling
+     * are kept for the next session, so as to balance the profiling JVMs.
+     * By default, this is prf-cache/tests-timing.txt under the build directory of the
+     * project.
+     */
+    @Parameter(property = "timingHistoryFile", defaultValue = "${project.build.directory}/prf-cache/tests-timing.txt")
+    protected File timingHistoryFile;
+
+    /**
+     * Reuse the coverage, running times, and outcomes of the test cases of a test class
+     * obtained in a previous session, unless the test class, or the source files of the
+     * application classes covered by its test cases, have changed since then. Changing
+     * the dependencies of the project, or its classes that are neither application nor
+     * test classes, invalidates all the previous results. Fault localization is always
+     * performed on the coverage of the entire test suite.
+     * The results are stored under profilingCacheDirectory.
+     * By default, this is disabled, and the entire test suite is profiled in each session.
+     */
+    @Parameter(property = "incrementalProfiling", defaultValue = "false")
+    protected boolean incrementalProfiling;
+
+    /**
+     * The directory in which the results of profiling test classes are cached.
+     * By default, this is prf-cache under the build directory of the project.
+     */
+    @Parameter(property = "profilingCacheDirectory", defaultValue = "${project.build.directory}/prf-cache")
+    protected File profilingCacheDirectory;
+
+    /**
+     * Omit the probes of the lines whose coverage is implied by the coverage of other
+     * lines, as found by analyzing the control flow of each method, e.g., the conditions
+     * of loops. Coverage remains exact, while fewer probes are hit. This only
+     * affects line level coverage, as class and method level coverage already use a
+     * single probe for each method.
+     * By default, this is disabled, and a probe is placed at the beginning of each line.
+     */
+    @Parameter(property = "minimalProbes", defaultValue = "false")
+    protected boolean minimalProbes;
+
+    /**
+     * Validate patches in two phases: first, all the patches are screened against the
+     * originally failing test cases, in validator JVMs that load only the test classes
+     * containing those test cases; then, only the patches surviving the screening are
+     * validated against the entire test suite. Statistics for each phase are printed
+     * at the end of validation.
+     * By default, this is disabled.
+     */
+    @Parameter(property = "twoPhaseValidation", defaultValue = "false")
+    protected boolean twoPhaseValidation;
+
+    /**
+     * Before validating a patch against the entire test suite, validate it against a
+     * minimized set of passing test cases that cover the code altered by the patch. The
+     * set is chosen via greedy set cover over the per-test coverage gathered by the
+     * profiler, so enabling this option makes the profiler collect coverage. Patches
+     * failing any of these test cases are rejected without running the rest of the test
+     * suite; the others are validated against the entire test suite, as usual.
+     * By default, this is disabled.
+     */
+    @Parameter(property = "regressionPrescreen", defaultValue = "false")
+    protected boolean regressionPrescreen;
+
     /**
      * The name of patch generation plugin.
      * Example:
@@ -230,6 +481,14 @@ public class AbstractPRFMojo extends AbstractMojo {
                     .withSystemUnderRepair(this.project)
                     .withPatchPrioritizationPlugin(this.patchPrioritizationPluginImpl)
                     .withPatchPrioritizationPluginInfo(this.patchPrioritizationPlugin)
+                    .withValidatorOptions(this.validatorOptions)
+                    .withProfilingRepetitions(this.profilingRepetitions)
+                    .withProfilingThreads(this.profilingThreads)
+                    .withThreadAwareCoverage(this.threadAwareCoverage)
+                    .withProfilingShards(this.profilingShards)
+                    .withTimingHistoryFile(this.timingHistoryFile)
+                    .withProfilingCacheDirectory(this.incrementalProfiling ? this.profilingCacheDirectory : null)
+                    .withMinimalProbes(this.minimalProbes)
                     .run();
         } catch (Exception e) {
             e.printStackTrace();
@@ -290,6 +549,34 @@ public class AbstractPRFMojo extends AbstractMojo {
             throw new MojoFailureException("Invalid timeout coefficient");
         }
 
+        if (this.maxPlausiblePatches < 0 || this.validationTimeBudget < 0L) {
+            throw new MojoFailureException("Invalid validation stop policy");
+        }
+
+        if (this.testThreads < 1) {
+            throw new MojoFailureException("Invalid number of test threads");
+        }
+
+        if (this.profilingRepetitions < 0) {
+            throw new MojoFailureException("Invalid number of profiling repetitions");
+        }
+
+        if (this.profilingThreads < 1) {
+            throw new MojoFailureException("Invalid number of profiling threads");
+        }
+
+        if (this.profilingShards < 1) {
+            throw new MojoFailureException("Invalid number of profiling shards");
+        }
+
+        if (this.maxShardsPerPatch < 1) {
+            throw new MojoFailureException("Invalid number of shards per patch");
+        }
+
+        if (this.sequentialTestClasses == null) {
+            this.sequentialTestClasses = Collections.emptySet();
+        }
+
         if (this.failingTests == null || this.failingTests.isEmpty()) {
             this.failingTests = new HashSet<>();
         } else {
@@ -342,6 +629,20 @@ public class AbstractPRFMojo extends AbstractMojo {
         if (this.flOptions != FLOptions.OFF) {
             this.flStrategyImpl = FLStrategyImpl.valueOf(this.flStrategy);
         }
+
+        this.validatorOptions = new ValidatorOptions(this.patchesPerValidator,
+                this.validationMode,
+                this.testSelection,
+                this.outcomeCache ? this.outcomeCacheDirectory : null,
+                this.maxPlausiblePatches,
+                this.firstPlausiblePerLocation,
+                1000L * this.validationTimeBudget,
+                this.patchRanking,
+                this.testThreads,
+                PredicateFactory.orGlobs(this.sequentialTestClasses),
+                this.maxShardsPerPatch,
+                this.twoPhaseValidation,
+                this.regressionPrescreen);
     }
 
     private <T extends PRFPluginBase> T findPRFPlugin(Class<T> type) {
@@ -0,0 +1,176 @@
+package edu.utdallas.prf.profiler;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Class;
+import edu.utdallas.prf.ClassLevelCoverage;
+import edu.utdallas.prf.ClassLevelFL;
+import edu.utdallas.prf.CoverageInfo;
+import edu.utdallas.prf.CoverageMatrix;
+import edu.utdallas.prf.FaultLocalizationInfo;
+import edu.utdallas.prf.LineLevelCoverage;
+import edu.utdallas.prf.LineLevelFL;
+import edu.utdallas.prf.Method;
+import edu.utdallas.prf.MethodLevelCoverage;
+import edu.utdallas.prf.MethodLevelFL;
+import edu.utdallas.prf.ProgramElement;
+import edu.utdallas.prf.SourceLine;
+import edu.utdallas.prf.profiler.fl.FLOptions;
+import edu.utdallas.prf.profiler.fl.SpectrumEngine;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Profiler results merged out of the results of profiling disjoint parts of the test
+ * suite, e.g., the results of the profiler processes each of which ran a shard of the
+ * test suite, or cached results of the test classes that did not need to be profiled
+ * again. Coverage matrices are merged in the given order, so the numbering of program
+ * elements is the same across runs with the same parts, and suspiciousness values are
+ * computed out of the merged coverage, exactly as a single profiler process would do.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class MergedProfilerResults implements ProfilerResults {
+    private final Map<String, Long> testsTiming;
+
+    private final Map<String, Long> testsCpuTiming;
+
+    private final String[] failingTestNames;
+
+    private final FaultLocalizationInfo<? extends ProgramElement> flInfo;
+
+    private final CoverageMatrix<ProgramElement> coverageMatrix;
+
+    private final FLOptions coverageLevel;
+
+    private CoverageInfo<? extends ProgramElement> coverageInfo;
+
+    MergedProfilerResults(final List<? extends ProfilerResults> parts,
+                          final ProfilerOptions options) {
+        this(Collections.<ProfilingCache.Entry>emptyList(), parts, options);
+    }
+
+    /**
+     * @param cachedParts Cached results of the test classes that were not run; these are
+     *                    merged before the other parts
+     * @param parts Results of the profiler processes
+     * @param options Profiler options
+     */
+    MergedProfilerResults(final Collection<ProfilingCache.Entry> cachedParts,
+                          final List<? extends ProfilerResults> parts,
+                          final ProfilerOptions options) {
+        this.testsTiming = new HashMap<>();
+        this.testsCpuTiming = new HashMap<>();
+        final Set<String> failingTestNames = new LinkedHashSet<>();
+        final CoverageMatrix<ProgramElement> coverageMatrix = new CoverageMatrix<>();
+        for (final ProfilingCache.Entry cachedPart : cachedParts) {
+            this.testsTiming.putAll(cachedPart.testsTiming);
+            this.testsCpuTiming.putAll(cachedPart.testsCpuTiming);
+            failingTestNames.addAll(cachedPart.failingTestNames);
+            coverageMatrix.addAll(cachedPart.coverageMatrix);
+        }
+        for (final ProfilerResults part : parts) {
+            this.testsTiming.putAll(part.getTestsTiming());
+            this.testsCpuTiming.putAll(part.getTestsCpuTiming());
+            final String[] partFailingTestNames = part.getFailingTestNames();
+            if (partFailingTestNames != null) {
+                Collections.addAll(failingTestNames, partFailingTestNames);
+            }
+            final CoverageMatrix<? extends ProgramElement> partCoverageMatrix = part.getCoverageMatrix();
+            if (partCoverageMatrix != null) {
+                coverageMatrix.addAll(partCoverageMatrix);
+            }
+        }
+        this.failingTestNames = failingTestNames.toArray(new String[0]);
+        this.coverageLevel = options.flOptions == FLOptions.OFF ? FLOptions.LINE_LEVEL : options.flOptions;
+        this.flInfo = options.flOptions == FLOptions.OFF ? null : computeFLInfo(coverageMatrix, options);
+        this.coverageMatrix = options.collectCoverage ? coverageMatrix : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private FaultLocalizationInfo<? extends ProgramElement> computeFLInfo(final CoverageMatrix<? extends ProgramElement> coverageMatrix,
+                                                                          final ProfilerOptions options) {
+        final List<String> failingTestNames = Arrays.asList(this.failingTestNames);
+        switch (options.flOptions) {
+            case CLASS_LEVEL:
+                return new SpectrumEngine<>((CoverageMatrix<Class>) coverageMatrix, failingTestNames)
+                        .computeSusp(options.flStrategy, new ClassLevelFL());
+            case METHOD_LEVEL:
+                return new SpectrumEngine<>((CoverageMatrix<Method>) coverageMatrix, failingTestNames)
+                        .computeSusp(options.flStrategy, new MethodLevelFL());
+            case LINE_LEVEL:
+                return new SpectrumEngine<>((CoverageMatrix<SourceLine>) coverageMatrix, failingTestNames)
+                        .computeSusp(options.flStrategy, new LineLevelFL());
+            default:
+                throw new UnsupportedOperationException();
+        }
+    }
+
+    @Override
+    public Map<String, Long> getTestsTiming() {
+        return this.testsTiming;
+    }
+
+    @Override
+    public Map<String, Long> getTestsCpuTiming() {
+        return this.testsCpuTiming;
+    }
+
+    @Override
+    public String[] getFailingTestNames() {
+        return this.failingTestNames;
+    }
+
+    @Override
+    public FaultLocalizationInfo<? extends ProgramElement> getFLInfo() {
+        return this.flInfo;
+    }
+
+    @Override
+    public CoverageMatrix<? extends ProgramElement> getCoverageMatrix() {
+        return this.coverageMatrix;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public synchronized CoverageInfo<? extends ProgramElement> getCoverageInfo() {
+        if (this.coverageInfo == null && this.coverageMatrix != null) {
+            switch (this.coverageLevel) {
+                case CLASS_LEVEL:
+                    this.coverageInfo = ((CoverageMatrix<Class>) (CoverageMatrix<?>) this.coverageMatrix).populate(new ClassLevelCoverage());
+                    break;
+                case METHOD_LEVEL:
+                    this.coverageInfo = ((CoverageMatrix<Method>) (CoverageMatrix<?>) this.coverageMatrix).populate(new MethodLevelCoverage());
+                    break;
+                default:
+                    this.coverageInfo = ((CoverageMatrix<SourceLine>) (CoverageMatrix<?>) this.coverageMatrix).populate(new LineLevelCoverage());
+            }
+        }
+        return this.coverageInfo;
+    }
+}
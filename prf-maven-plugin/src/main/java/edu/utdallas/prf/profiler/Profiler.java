@@ -21,9 +21,11 @@ package edu.utdallas.prf.profiler;
  */
 
 import edu.utdallas.prf.CoverageInfo;
+import edu.utdallas.prf.CoverageMatrix;
 import edu.utdallas.prf.FaultLocalizationInfo;
 import edu.utdallas.prf.ProgramElement;
 import edu.utdallas.prf.commons.junit.runner.JUnitRunner;
+import edu.utdallas.prf.commons.junit.runner.TestUnitFilter;
 import edu.utdallas.prf.commons.misc.MemberNameUtils;
 import edu.utdallas.prf.profiler.fl.CoverageRecorder;
 import edu.utdallas.prf.profiler.fl.FLOptions;
@@ -38,18 +40,63 @@ import org.pitest.testapi.Description;
 import org.pitest.testapi.ResultCollector;
 import org.pitest.testapi.TestUnit;
 import org.pitest.util.ExitCode;
+import org.pitest.util.IsolationUtils;
 import org.pitest.util.SafeDataInputStream;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public class Profiler {
+    private static final double TIMING_PERCENTILE = 0.9D;
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    // test cases are not timed out during profiling, as their running time is yet unknown
+    private static final long NO_TIMEOUT = TimeUnit.DAYS.toMillis(1L);
+
+    // results of the repeated runs are already recorded by the first run
+    private static final ResultCollector IGNORING_RESULT_COLLECTOR = new ResultCollector() {
+        @Override
+        public void notifyEnd(Description description, Throwable t) {
+            // nothing
+        }
+
+        @Override
+        public void notifyEnd(Description description) {
+            // nothing
+        }
+
+        @Override
+        public void notifyStart(Description description) {
+            // nothing
+        }
+
+        @Override
+        public void notifySkipped(Description description) {
+            // nothing
+        }
+
+        @Override
+        public boolean shouldExit() {
+            return false;
+        }
+    };
+
     public static void main(String[] args) throws Exception {
         System.out.println("Profiler is HERE!");
         final int port = Integer.parseInt(args[0]);
@@ -61,22 +108,38 @@ public class Profiler {
 
             final FLOptions flOptions = options.flOptions;
             CoverageRecorder.setFLOptions(flOptions);
-            CovRecTransformer transformer = installFLTransformer(flOptions, arguments.appClassFilter);
+            CoverageRecorder.setThreadAware(options.threadAwareCoverage);
+            // probe arrays are shared by all the threads, so they cannot tell test cases apart
+            final boolean probeArrays = !options.threadAwareCoverage;
+            CovRecTransformer transformer = installFLTransformer(flOptions, arguments.appClassFilter, probeArrays, options.minimalProbes);
             if (transformer == null && options.collectCoverage) {
                 CoverageRecorder.setFLOptions(FLOptions.LINE_LEVEL);
-                transformer = new LineLevelCovRecTransformer(arguments.appClassFilter);
+                transformer = new LineLevelCovRecTransformer(arguments.appClassFilter, probeArrays, options.minimalProbes);
                 HotSwapAgent.addTransformer(transformer);
             }
 
             final ProfilerReporter reporter = new ProfilerReporter(socket.getOutputStream());
 
             final JUnitRunner runner = new JUnitRunner(arguments.testClassNames, false);
-            runner.setTestUnits(decorateTestUnits(runner.getTestUnits(), reporter));
-            runner.run();
+            runner.setTestUnits(decorateTestUnits(runner.getTestUnits(), reporter, options.timingRepetitions));
+            if (options.testThreads > 1) {
+                System.out.println("INFO: Running up to " + options.testThreads + " test classes concurrently");
+                runner.run(IsolationUtils.getContextClassLoader(),
+                        TestUnitFilter.all(),
+                        Collections.<String, Long>emptyMap(),
+                        NO_TIMEOUT,
+                        0.D,
+                        options.testThreads,
+                        options.sequentialTestClassFilter);
+            } else {
+                runner.run();
+            }
 
             reporter.reportFailingTestNames(runner.getFailingTestNames());
             if (transformer != null) {
-                CoverageRecorder.reportFLInfo(reporter, transformer.getDomain(), runner.getFailingTestNames(), options.flStrategy);
+                if (options.flStrategy != null) { // shards leave fault localization to the parent
+                    CoverageRecorder.reportFLInfo(reporter, transformer.getDomain(), runner.getFailingTestNames(), options.flStrategy);
+                }
                 if (options.collectCoverage) {
                     CoverageRecorder.reportCoverageInfo(reporter, transformer.getDomain());
                 }
@@ -88,20 +151,22 @@ public class Profiler {
     }
 
     private static CovRecTransformer installFLTransformer(final FLOptions flOptions,
-                                                          final Predicate<String> appClassFilter) {
+                                                          final Predicate<String> appClassFilter,
+                                                          final boolean probeArrays,
+                                                          final boolean minimalProbes) {
         CovRecTransformer transformer = null;
         switch (flOptions) {
             case CLASS_LEVEL:
                 System.out.println("INFO: Class level fault localization activated");
-                transformer = new ClassLevelCovRecTransformer(appClassFilter);
+                transformer = new ClassLevelCovRecTransformer(appClassFilter, probeArrays);
                 break;
             case METHOD_LEVEL:
                 System.out.println("INFO: Method level fault localization activated");
-                transformer = new MethodLevelCovRecTransformer(appClassFilter);
+                transformer = new MethodLevelCovRecTransformer(appClassFilter, probeArrays);
                 break;
             case LINE_LEVEL:
                 System.out.println("INFO: Line level fault localization activated");
-                transformer = new LineLevelCovRecTransformer(appClassFilter);
+                transformer = new LineLevelCovRecTransformer(appClassFilter, probeArrays, minimalProbes);
         }
         if (transformer != null) {
             HotSwapAgent.addTransformer(transformer);
@@ -109,8 +174,20 @@ public class Profiler {
         return transformer;
     }
 
+    /**
+     * Decorates test units so that they report their running time. Each test case is run
+     * once, with its results recorded, and then <code>timingRepetitions</code> more times,
+     * while warm, with its results ignored. Both wall-clock and CPU times of the runs are
+     * measured, and the 90th percentile of each is reported; the first run, which loads
+     * and initializes classes, is excluded from the percentile if there are warm runs.
+     */
     private static List<TestUnit> decorateTestUnits(final List<TestUnit> testUnits,
-                                                    final ProfilerReporter reporter) {
+                                                    final ProfilerReporter reporter,
+                                                    final int timingRepetitions) {
+        if (THREAD_MX_BEAN.isThreadCpuTimeSupported() && !THREAD_MX_BEAN.isThreadCpuTimeEnabled()) {
+            THREAD_MX_BEAN.setThreadCpuTimeEnabled(true);
+        }
+        final boolean measureCpuTime = THREAD_MX_BEAN.isThreadCpuTimeEnabled();
         final List<TestUnit> decoratedTests = new LinkedList<>();
         for (final TestUnit testUnit : testUnits) {
             decoratedTests.add(new TestUnit() {
@@ -119,11 +196,24 @@ public class Profiler {
                     String testName = testUnit.getDescription().getName();
                     testName = MemberNameUtils.sanitizeExtendedTestName(testName);
                     CoverageRecorder.setCurrentTest(testName);
-                    final long start = System.currentTimeMillis();
-                    testUnit.execute(rc);
-                    final long elapsed = System.currentTimeMillis() - start;
-                    reporter.reportTestTime(testName, elapsed);
-
+                    final long[] wallTimes = new long[1 + timingRepetitions];
+                    final long[] cpuTimes = new long[1 + timingRepetitions];
+                    try {
+                        for (int i = 0; i <= timingRepetitions; i++) {
+                            final long start = System.currentTimeMillis();
+                            final long cpuStart = measureCpuTime ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+                            testUnit.execute(i == 0 ? rc : IGNORING_RESULT_COLLECTOR);
+                            cpuTimes[i] = measureCpuTime ? TimeUnit.NANOSECONDS.toMillis(THREAD_MX_BEAN.getCurrentThreadCpuTime() - cpuStart) : 0L;
+                            wallTimes[i] = System.currentTimeMillis() - start;
+                        }
+                    } finally {
+                        CoverageRecorder.endCurrentTest();
+                    }
+                    final int firstSample = timingRepetitions > 0 ? 1 : 0;
+                    reporter.reportTestTime(testName, percentile(wallTimes, firstSample, TIMING_PERCENTILE));
+                    if (measureCpuTime) {
+                        reporter.reportTestCpuTime(testName, percentile(cpuTimes, firstSample, TIMING_PERCENTILE));
+                    }
                 }
 
                 @Override
@@ -135,6 +225,183 @@ public class Profiler {
         return decoratedTests;
     }
 
+    // nearest-rank percentile of the samples from index from onwards
+    private static long percentile(final long[] samples, final int from, final double p) {
+        final long[] sorted = Arrays.copyOfRange(samples, from, samples.length);
+        Arrays.sort(sorted);
+        final int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Runs the profiler in <code>shards</code> processes in parallel, each of which runs
+     * a subset of the test classes, and merges their results. Test classes are assigned
+     * to the shards so that the shards take roughly the same time to run, according to
+     * the running times of the test cases observed previously; without such history,
+     * shards get roughly the same number of test classes. Should any of the profiler
+     * processes crash, the whole test suite is profiled again in a single process, as the
+     * coverage of the crashed shard is missing.
+     *
+     * @param shards Number of profiler processes
+     * @param timingHistory Previously observed running times of test cases; can be empty
+     * @return Results of profiling the whole test suite
+     */
+    public static ProfilerResults runProfiler(final ProcessArgs defaultProcessArgs,
+                                              final Predicate<String> appClassFilter,
+                                              final Collection<String> testClassNames,
+                                              final ProfilerOptions options,
+                                              final int shards,
+                                              final Map<String, Long> timingHistory) {
+        final List<List<String>> partition = partition(testClassNames, shards, timingHistory);
+        if (partition.size() <= 1) {
+            return runProfiler(defaultProcessArgs, appClassFilter, testClassNames, options);
+        }
+        System.out.println("INFO: Profiling in " + partition.size() + " shards");
+        final List<ProfilerProcess> processes = runShards(defaultProcessArgs, appClassFilter, partition, options.forShard(false));
+        if (processes == null) {
+            System.out.println("WARNING: Profiling the test suite again in a single process");
+            return runProfiler(defaultProcessArgs, appClassFilter, testClassNames, options);
+        }
+        return new MergedProfilerResults(processes, options);
+    }
+
+    /**
+     * Same as {@link Profiler#runProfiler(ProcessArgs, Predicate, Collection, ProfilerOptions, int, Map)},
+     * except that the test classes whose results are found in the cache are not run.
+     * The results of the test classes that are run are added to the cache, and fault
+     * localization is performed on the coverage of all the test classes. Should any of
+     * the profiler processes crash, the test classes that are not found in the cache are
+     * profiled again in a single process.
+     *
+     * @param cache Cache of profiling results
+     * @return Results of profiling the whole test suite
+     */
+    public static ProfilerResults runProfiler(final ProcessArgs defaultProcessArgs,
+                                              final Predicate<String> appClassFilter,
+                                              final Collection<String> testClassNames,
+                                              final ProfilerOptions options,
+                                              final int shards,
+                                              final Map<String, Long> timingHistory,
+                                              final ProfilingCache cache) {
+        final Map<String, ProfilingCache.Entry> cachedResults = cache.lookUp(testClassNames);
+        final List<String> staleTestClassNames = new ArrayList<>();
+        for (final String testClassName : testClassNames) {
+            if (!cachedResults.containsKey(testClassName)) {
+                staleTestClassNames.add(testClassName);
+            }
+        }
+        System.out.println("INFO: Reusing cached profiling results of " + cachedResults.size()
+                + " out of " + testClassNames.size() + " test classes");
+        final List<ProfilerResults> parts = new ArrayList<>();
+        if (!staleTestClassNames.isEmpty()) {
+            final List<List<String>> partition = partition(staleTestClassNames, shards, timingHistory);
+            final List<ProfilerProcess> processes = runShards(defaultProcessArgs, appClassFilter, partition, options.forShard(true));
+            if (processes == null) {
+                System.out.println("WARNING: Profiling " + staleTestClassNames.size() + " test classes again in a single process");
+                final ProfilerResults results = runProfiler(defaultProcessArgs, appClassFilter, staleTestClassNames, options.forShard(true));
+                cache.update(staleTestClassNames, results);
+                parts.add(results);
+            } else {
+                for (int shardIndex = 0; shardIndex < partition.size(); shardIndex++) {
+                    cache.update(partition.get(shardIndex), processes.get(shardIndex));
+                }
+                parts.addAll(processes);
+            }
+        }
+        return new MergedProfilerResults(cachedResults.values(), parts, options);
+    }
+
+    // returns null if any of the profiler processes did not finish normally
+    private static List<ProfilerProcess> runShards(final ProcessArgs defaultProcessArgs,
+                                                   final Predicate<String> appClassFilter,
+                                                   final List<List<String>> partition,
+                                                   final ProfilerOptions shardOptions) {
+        final List<ProfilerProcess> processes = new ArrayList<>(partition.size());
+        for (final List<String> shard : partition) {
+            final ProfilerArguments arguments = new ProfilerArguments(appClassFilter, shard, shardOptions);
+            final ProfilerProcess process = new ProfilerProcess(defaultProcessArgs, arguments);
+            try {
+                process.start();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            processes.add(process);
+        }
+        boolean crashed = false;
+        for (int shardIndex = 0; shardIndex < processes.size(); shardIndex++) {
+            final ExitCode exitCode = processes.get(shardIndex).waitToDie();
+            if (!exitCode.isOk()) {
+                System.out.println("WARNING: Profiler process of shard " + shardIndex + " exited with " + exitCode);
+                crashed = true;
+            }
+        }
+        return crashed ? null : processes;
+    }
+
+    /**
+     * Partitions the test classes into at most <code>shards</code> non-empty shards using
+     * longest-processing-time-first scheduling: test classes are considered in descending
+     * order of their cost and each is assigned to the shard with the least total cost.
+     * The cost of a test class is the sum of the running times of its test cases in
+     * <code>timingHistory</code>, while test classes absent from the history cost as
+     * much as an average test class. Ties are broken by names and shard indices, so the
+     * same inputs always give the same partition.
+     */
+    static List<List<String>> partition(final Collection<String> testClassNames,
+                                        final int shards,
+                                        final Map<String, Long> timingHistory) {
+        final Map<String, Long> historicalCosts = new HashMap<>();
+        for (final Map.Entry<String, Long> entry : timingHistory.entrySet()) {
+            final String testName = entry.getKey();
+            final int lastDotIndex = testName.lastIndexOf('.');
+            if (lastDotIndex > 0) {
+                final String testClassName = testName.substring(0, lastDotIndex);
+                final Long cost = historicalCosts.get(testClassName);
+                historicalCosts.put(testClassName, (cost == null ? 0L : cost) + Math.max(1L, entry.getValue()));
+            }
+        }
+        final List<String> sortedTestClassNames = new ArrayList<>(new TreeSet<>(testClassNames));
+        long knownCosts = 0L;
+        int knownCount = 0;
+        for (final String testClassName : sortedTestClassNames) {
+            final Long cost = historicalCosts.get(testClassName);
+            if (cost != null) {
+                knownCosts += cost;
+                knownCount++;
+            }
+        }
+        final long defaultCost = knownCount == 0 ? 1L : Math.max(1L, knownCosts / knownCount);
+        final Map<String, Long> costs = new HashMap<>();
+        for (final String testClassName : sortedTestClassNames) {
+            final Long cost = historicalCosts.get(testClassName);
+            costs.put(testClassName, cost == null ? defaultCost : cost);
+        }
+        Collections.sort(sortedTestClassNames, new Comparator<String>() {
+            @Override
+            public int compare(String c1, String c2) {
+                final int cmp = Long.compare(costs.get(c2), costs.get(c1));
+                return cmp != 0 ? cmp : c1.compareTo(c2);
+            }
+        });
+        final int shardsCount = Math.max(1, Math.min(shards, sortedTestClassNames.size()));
+        final List<List<String>> partition = new ArrayList<>(shardsCount);
+        final long[] loads = new long[shardsCount];
+        for (int shardIndex = 0; shardIndex < shardsCount; shardIndex++) {
+            partition.add(new ArrayList<String>());
+        }
+        for (final String testClassName : sortedTestClassNames) {
+            int leastLoaded = 0;
+            for (int shardIndex = 1; shardIndex < shardsCount; shardIndex++) {
+                if (loads[shardIndex] < loads[leastLoaded]) {
+                    leastLoaded = shardIndex;
+                }
+            }
+            partition.get(leastLoaded).add(testClassName);
+            loads[leastLoaded] += costs.get(testClassName);
+        }
+        return partition;
+    }
+
     public static ProfilerResults runProfiler(final ProcessArgs defaultProcessArgs,
                                               final Predicate<String> appClassFilter,
                                               final Collection<String> testClassNames,
@@ -153,6 +420,11 @@ public class Profiler {
                 return process.getTestsTiming();
             }
 
+            @Override
+            public Map<String, Long> getTestsCpuTiming() {
+                return process.getTestsCpuTiming();
+            }
+
             @Override
             public String[] getFailingTestNames() {
                 return process.getFailingTestNames();
@@ -163,6 +435,11 @@ public class Profiler {
                 return process.getFLInfo();
             }
 
+            @Override
+            public CoverageMatrix<? extends ProgramElement> getCoverageMatrix() {
+                return process.getCoverageMatrix();
+            }
+
             @Override
             public CoverageInfo<? extends ProgramElement> getCoverageInfo() {
                 return process.getCoverageInfo();
@@ -20,15 +20,19 @@ package edu.utdallas.prf.profiler;
  * #L%
  */
 
+import edu.utdallas.prf.Class;
 import edu.utdallas.prf.ClassLevelCoverage;
 import edu.utdallas.prf.CoverageInfo;
+import edu.utdallas.prf.CoverageMatrix;
 import edu.utdallas.prf.FaultLocalizationInfo;
 import edu.utdallas.prf.ClassLevelFL;
 import edu.utdallas.prf.LineLevelCoverage;
 import edu.utdallas.prf.LineLevelFL;
+import edu.utdallas.prf.Method;
 import edu.utdallas.prf.MethodLevelCoverage;
 import edu.utdallas.prf.MethodLevelFL;
 import edu.utdallas.prf.ProgramElement;
+import edu.utdallas.prf.SourceLine;
 import edu.utdallas.prf.commons.process.ControlId;
 import org.pitest.functional.SideEffect1;
 import org.pitest.util.CommunicationThread;
@@ -62,6 +66,10 @@ class ProfilerCommunicationThread extends CommunicationThread {
         return this.receiver.testsTiming;
     }
 
+    public Map<String, Long> getTestsCpuTiming() {
+        return this.receiver.testsCpuTiming;
+    }
+
     public String[] getFailingTestNames() {
         return this.receiver.failingTestNames;
     }
@@ -70,8 +78,12 @@ class ProfilerCommunicationThread extends CommunicationThread {
         return this.receiver.flInfo;
     }
 
+    public CoverageMatrix<? extends ProgramElement> getCoverageMatrix() {
+        return this.receiver.getCoverageMatrix();
+    }
+
     public CoverageInfo<? extends ProgramElement> getCoverageInfo() {
-        return this.receiver.coverageInfo;
+        return this.receiver.getCoverageInfo();
     }
 
     private static class DataSender implements SideEffect1<SafeDataOutputStream> {
@@ -90,14 +102,24 @@ class ProfilerCommunicationThread extends CommunicationThread {
     private static class DataReceiver implements ReceiveStrategy {
         final Map<String, Long> testsTiming;
 
+        final Map<String, Long> testsCpuTiming;
+
         String[] failingTestNames;
 
         FaultLocalizationInfo<? extends ProgramElement> flInfo;
 
+        CoverageMatrix<Class> classLevelCov;
+
+        CoverageMatrix<Method> methodLevelCov;
+
+        CoverageMatrix<SourceLine> lineLevelCov;
+
+        // the hash table-based view is materialized only if somebody asks for it
         CoverageInfo<? extends ProgramElement> coverageInfo;
 
         public DataReceiver() {
             this.testsTiming = new HashMap<>();
+            this.testsCpuTiming = new HashMap<>();
         }
 
         @Override
@@ -108,6 +130,9 @@ class ProfilerCommunicationThread extends CommunicationThread {
                     final Long timeElapsed = dis.readLong();
                     this.testsTiming.put(testName, timeElapsed);
                     break;
+                case ControlId.REPORT_TEST_CPU_TIME:
+                    this.testsCpuTiming.put(dis.readString(), dis.readLong());
+                    break;
                 case ControlId.REPORT_FAILING_TEST_NAMES:
                     this.failingTestNames = dis.read(String[].class);
                     break;
@@ -121,14 +146,42 @@ class ProfilerCommunicationThread extends CommunicationThread {
                     this.flInfo = dis.read(LineLevelFL.class);
                     break;
                 case ControlId.REPORT_CLASS_LEVEL_COV:
-                    this.coverageInfo = dis.read(ClassLevelCoverage.class);
+                    this.classLevelCov = readCoverageMatrix(dis);
                     break;
                 case ControlId.REPORT_METHOD_LEVEL_COV:
-                    this.coverageInfo = dis.read(MethodLevelCoverage.class);
+                    this.methodLevelCov = readCoverageMatrix(dis);
                     break;
                 case ControlId.REPORT_LINE_LEVEL_COV:
-                    this.coverageInfo = dis.read(LineLevelCoverage.class);
+                    this.lineLevelCov = readCoverageMatrix(dis);
+            }
+        }
+
+        // the element type of the matrix is determined by the control id
+        @SuppressWarnings("unchecked")
+        private <T extends ProgramElement> CoverageMatrix<T> readCoverageMatrix(final SafeDataInputStream dis) {
+            return dis.read(CoverageMatrix.class);
+        }
+
+        CoverageMatrix<? extends ProgramElement> getCoverageMatrix() {
+            if (this.classLevelCov != null) {
+                return this.classLevelCov;
+            } else if (this.methodLevelCov != null) {
+                return this.methodLevelCov;
+            }
+            return this.lineLevelCov;
+        }
+
+        synchronized CoverageInfo<? extends ProgramElement> getCoverageInfo() {
+            if (this.coverageInfo == null) {
+                if (this.classLevelCov != null) {
+                    this.coverageInfo = this.classLevelCov.populate(new ClassLevelCoverage());
+                } else if (this.methodLevelCov != null) {
+                    this.coverageInfo = this.methodLevelCov.populate(new MethodLevelCoverage());
+                } else if (this.lineLevelCov != null) {
+                    this.coverageInfo = this.lineLevelCov.populate(new LineLevelCoverage());
+                }
             }
+            return this.coverageInfo;
         }
     }
 }
\ No newline at end of file
@@ -20,10 +20,12 @@ package edu.utdallas.prf.profiler;
  * #L%
  */
 
+import edu.utdallas.prf.commons.functional.PredicateFactory;
 import edu.utdallas.prf.profiler.cg.CGOptions;
 import edu.utdallas.prf.profiler.fl.FLOptions;
 import edu.utdallas.prf.profiler.fl.FLStrategy;
 import org.apache.commons.lang3.Validate;
+import org.pitest.functional.predicate.Predicate;
 
 import java.io.Serializable;
 
@@ -41,14 +43,69 @@ public class ProfilerOptions implements Serializable {
 
     final CGOptions cgOptions;
 
+    final int timingRepetitions; // extra, warm runs of each test case used only for timing
+
+    final boolean threadAwareCoverage; // attribute code run by worker threads to the test case spawning them
+
+    final int testThreads; // 1 means running test cases sequentially
+
+    final Predicate<String> sequentialTestClassFilter;
+
+    final boolean minimalProbes; // omit line probes whose coverage is implied by other probes
+
+    public ProfilerOptions(final boolean collectCoverage,
+                           final FLOptions flOptions,
+                           final FLStrategy flStrategy,
+                           final CGOptions cgOptions,
+                           final int timingRepetitions) {
+        this(collectCoverage, flOptions, flStrategy, cgOptions, timingRepetitions, false, 1, PredicateFactory.<String>alwaysFalse(), false);
+    }
+
+    /**
+     * @param testThreads Number of test classes run concurrently; when greater than 1,
+     *                    coverage is always recorded in thread-aware mode
+     * @param sequentialTestClassFilter Test classes that are not thread-safe
+     * @param minimalProbes Place line probes based on the control flow of methods
+     */
     public ProfilerOptions(final boolean collectCoverage,
                            final FLOptions flOptions,
                            final FLStrategy flStrategy,
-                           final CGOptions cgOptions) {
+                           final CGOptions cgOptions,
+                           final int timingRepetitions,
+                           final boolean threadAwareCoverage,
+                           final int testThreads,
+                           final Predicate<String> sequentialTestClassFilter,
+                           final boolean minimalProbes) {
         Validate.isTrue(flStrategy == null || flStrategy instanceof Serializable);
+        Validate.isInstanceOf(Serializable.class, sequentialTestClassFilter);
         this.collectCoverage = collectCoverage;
         this.flOptions = flOptions;
         this.flStrategy = flStrategy;
         this.cgOptions = cgOptions;
+        this.timingRepetitions = timingRepetitions;
+        this.threadAwareCoverage = threadAwareCoverage || testThreads > 1;
+        this.testThreads = testThreads;
+        this.sequentialTestClassFilter = sequentialTestClassFilter;
+        this.minimalProbes = minimalProbes;
+    }
+
+    /**
+     * Options for a profiler process running a shard of the test suite: the process only
+     * collects coverage, at the level of fault localization if it is enabled, as the
+     * suspiciousness values are computed once the coverage of all the shards is merged.
+     *
+     * @param collectCoverage Collect coverage even if neither fault localization nor
+     *                        coverage is requested, e.g., to cache it
+     */
+    ProfilerOptions forShard(final boolean collectCoverage) {
+        return new ProfilerOptions(collectCoverage || this.collectCoverage || this.flOptions != FLOptions.OFF,
+                this.flOptions,
+                null,
+                this.cgOptions,
+                this.timingRepetitions,
+                this.threadAwareCoverage,
+                this.testThreads,
+                this.sequentialTestClassFilter,
+                this.minimalProbes);
     }
 }
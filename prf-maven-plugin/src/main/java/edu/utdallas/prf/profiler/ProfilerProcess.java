@@ -21,6 +21,7 @@ package edu.utdallas.prf.profiler;
  */
 
 import edu.utdallas.prf.CoverageInfo;
+import edu.utdallas.prf.CoverageMatrix;
 import edu.utdallas.prf.FaultLocalizationInfo;
 import edu.utdallas.prf.ProgramElement;
 import org.pitest.process.ProcessArgs;
@@ -35,7 +36,7 @@ import java.util.Map;
 /**
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
-class ProfilerProcess {
+class ProfilerProcess implements ProfilerResults {
     private final WrappingProcess process;
 
     private final ProfilerCommunicationThread communicationThread;
@@ -65,18 +66,32 @@ class ProfilerProcess {
         }
     }
 
+    @Override
     public Map<String, Long> getTestsTiming() {
         return this.communicationThread.getTestsTiming();
     }
 
+    @Override
+    public Map<String, Long> getTestsCpuTiming() {
+        return this.communicationThread.getTestsCpuTiming();
+    }
+
+    @Override
     public String[] getFailingTestNames() {
         return this.communicationThread.getFailingTestNames();
     }
 
+    @Override
     public FaultLocalizationInfo<? extends ProgramElement> getFLInfo() {
         return this.communicationThread.getFLInfo();
     }
 
+    @Override
+    public CoverageMatrix<? extends ProgramElement> getCoverageMatrix() {
+        return this.communicationThread.getCoverageMatrix();
+    }
+
+    @Override
     public CoverageInfo<? extends ProgramElement> getCoverageInfo() {
         return this.communicationThread.getCoverageInfo();
     }
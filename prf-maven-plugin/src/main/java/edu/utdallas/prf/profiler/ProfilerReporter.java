@@ -20,12 +20,13 @@ package edu.utdallas.prf.profiler;
  * #L%
  */
 
-import edu.utdallas.prf.ClassLevelCoverage;
+import edu.utdallas.prf.Class;
 import edu.utdallas.prf.ClassLevelFL;
-import edu.utdallas.prf.LineLevelCoverage;
+import edu.utdallas.prf.CoverageMatrix;
 import edu.utdallas.prf.LineLevelFL;
-import edu.utdallas.prf.MethodLevelCoverage;
+import edu.utdallas.prf.Method;
 import edu.utdallas.prf.MethodLevelFL;
+import edu.utdallas.prf.SourceLine;
 import edu.utdallas.prf.commons.process.AbstractReporter;
 import edu.utdallas.prf.commons.process.ControlId;
 
@@ -48,6 +49,14 @@ public class ProfilerReporter extends AbstractReporter {
         this.dos.flush();
     }
 
+    public synchronized void reportTestCpuTime(final String testName,
+                                               final long cpuTime) {
+        this.dos.writeByte(ControlId.REPORT_TEST_CPU_TIME);
+        this.dos.writeString(testName);
+        this.dos.writeLong(cpuTime);
+        this.dos.flush();
+    }
+
     public synchronized void reportFailingTestNames(final Collection<String> failingTestNames) {
         this.dos.writeByte(ControlId.REPORT_FAILING_TEST_NAMES);
         this.dos.write(failingTestNames.toArray(new String[0]));
@@ -68,17 +77,17 @@ public class ProfilerReporter extends AbstractReporter {
         this.dos.write(lineLevelFL);
     }
 
-    public synchronized void reportClassLevelCov(final ClassLevelCoverage classLevelCov) {
+    public synchronized void reportClassLevelCov(final CoverageMatrix<Class> classLevelCov) {
         this.dos.writeByte(ControlId.REPORT_CLASS_LEVEL_COV);
         this.dos.write(classLevelCov);
     }
 
-    public synchronized void reportMethodLevelCov(final MethodLevelCoverage methodLevelCov) {
+    public synchronized void reportMethodLevelCov(final CoverageMatrix<Method> methodLevelCov) {
         this.dos.writeByte(ControlId.REPORT_METHOD_LEVEL_COV);
         this.dos.write(methodLevelCov);
     }
 
-    public synchronized void reportLineLevelCov(final LineLevelCoverage lineLevelCov) {
+    public synchronized void reportLineLevelCov(final CoverageMatrix<SourceLine> lineLevelCov) {
         this.dos.writeByte(ControlId.REPORT_LINE_LEVEL_COV);
         this.dos.write(lineLevelCov);
     }
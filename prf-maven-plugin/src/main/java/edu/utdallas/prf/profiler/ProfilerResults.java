@@ -21,6 +21,7 @@ package edu.utdallas.prf.profiler;
  */
 
 import edu.utdallas.prf.CoverageInfo;
+import edu.utdallas.prf.CoverageMatrix;
 import edu.utdallas.prf.FaultLocalizationInfo;
 import edu.utdallas.prf.ProgramElement;
 
@@ -38,6 +39,15 @@ public interface ProfilerResults {
      */
     Map<String, Long> getTestsTiming();
 
+    /**
+     * Returns a hash table mapping each test case name to the CPU time its thread spent
+     * executing it in milliseconds. Test cases whose CPU time could not be measured are
+     * absent.
+     *
+     * @return A hash table mapping test case names to their CPU time
+     */
+    Map<String, Long> getTestsCpuTiming();
+
     /**
      * Returns an array of failing test case names.
      *
@@ -47,5 +57,20 @@ public interface ProfilerResults {
 
     FaultLocalizationInfo<? extends ProgramElement> getFLInfo();
 
+    /**
+     * Returns per-test coverage information in its compact form, or <code>null</code> if
+     * no coverage information was collected.
+     *
+     * @return Coverage matrix
+     */
+    CoverageMatrix<? extends ProgramElement> getCoverageMatrix();
+
+    /**
+     * Returns the hash table-based view of per-test coverage information, or
+     * <code>null</code> if no coverage information was collected.
+     * The view is built out of the coverage matrix upon the first call.
+     *
+     * @return Coverage information
+     */
     CoverageInfo<? extends ProgramElement> getCoverageInfo();
 }
@@ -0,0 +1,471 @@
+package edu.utdallas.prf.profiler;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Class;
+import edu.utdallas.prf.CoverageMatrix;
+import edu.utdallas.prf.Method;
+import edu.utdallas.prf.ProgramElement;
+import edu.utdallas.prf.SourceLine;
+import edu.utdallas.prf.commons.collections.SparseBitmap;
+import edu.utdallas.prf.profiler.fl.CovRecTransformer;
+import edu.utdallas.prf.profiler.fl.FLOptions;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.pitest.classpath.ClassPath;
+import org.pitest.functional.predicate.Predicate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A persistent cache of per-test profiling results, i.e., coverage, running times, and
+ * outcomes, stored per test class. The results of a test class are reused as long as
+ * neither the test class, nor the source files of the application classes covered by
+ * any of its test cases have changed since they were cached. Changing anything else that
+ * might affect all the test cases, e.g., the dependencies of the project, its classes
+ * that are neither application nor test classes, or the level at which coverage is
+ * recorded, invalidates the entire cache.
+ * A test case depends only on the source files whose code it is recorded to cover, so
+ * the parts of the application classes that get no coverage probes, i.e., their
+ * members, interface methods, and, at line level, constructors and static
+ * initializers, count as something that might affect all the test cases.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class ProfilingCache {
+    private final File cacheFile;
+
+    private final String contextDigest;
+
+    private final Map<String, String> testClassDigests;
+
+    // application class name -> name of its source file, as used in source lines
+    private final Map<String, String> sourceFileNames;
+
+    private final Map<String, String> sourceFileDigests;
+
+    private final Map<String, Entry> entries;
+
+    private ProfilingCache(final File cacheFile,
+                           final String contextDigest,
+                           final Map<String, String> testClassDigests,
+                           final Map<String, String> sourceFileNames,
+                           final Map<String, String> sourceFileDigests,
+                           final Map<String, Entry> entries) {
+        this.cacheFile = cacheFile;
+        this.contextDigest = contextDigest;
+        this.testClassDigests = testClassDigests;
+        this.sourceFileNames = sourceFileNames;
+        this.sourceFileDigests = sourceFileDigests;
+        this.entries = entries;
+    }
+
+    /**
+     * Digests the classes of the project and loads the previously cached results that
+     * are obtained in the same context.
+     *
+     * @param cacheFile The file the cache is stored in; it need not exist
+     * @param projectClassPath Class path of the directories containing application
+     *                         and test classes
+     * @param appClassFilter Application classes
+     * @param testClassNames Names of test classes
+     * @param launchClassPath Class path with which the profiler is launched
+     * @param options Profiler options
+     * @return The cache
+     */
+    public static ProfilingCache load(final File cacheFile,
+                                      final ClassPath projectClassPath,
+                                      final Predicate<String> appClassFilter,
+                                      final Collection<String> testClassNames,
+                                      final String launchClassPath,
+                                      final ProfilerOptions options) {
+        final MessageDigest contextMD = newMessageDigest();
+        contextMD.update(getCoverageLevel(options).name().getBytes(StandardCharsets.UTF_8));
+        contextMD.update(Boolean.toString(options.threadAwareCoverage).getBytes(StandardCharsets.UTF_8));
+        for (final String element : launchClassPath.split(File.pathSeparator)) {
+            final File file = new File(element);
+            if (file.isFile()) { // directories are digested class by class
+                contextMD.update(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+                contextMD.update(Long.toString(file.length()).getBytes(StandardCharsets.UTF_8));
+                contextMD.update(Long.toString(file.lastModified()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        final Set<String> testClassNamesSet = new HashSet<>(testClassNames);
+        final Map<String, String> testClassDigests = new HashMap<>();
+        final Map<String, String> sourceFileNames = new HashMap<>();
+        final Map<String, MessageDigest> sourceFileMDs = new TreeMap<>();
+        final FLOptions coverageLevel = getCoverageLevel(options);
+        for (final String className : new TreeSet<>(projectClassPath.classNames())) {
+            final byte[] bytes;
+            try {
+                bytes = projectClassPath.getClassData(className);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            if (bytes == null) {
+                continue;
+            }
+            final boolean isTestClass = testClassNamesSet.contains(className);
+            if (isTestClass) {
+                final MessageDigest md = newMessageDigest();
+                md.update(bytes);
+                testClassDigests.put(className, toHexString(md.digest()));
+            }
+            if (appClassFilter.apply(className)) {
+                final String sourceFileName = getSourceFileName(className, bytes);
+                sourceFileNames.put(className, sourceFileName);
+                MessageDigest md = sourceFileMDs.get(sourceFileName);
+                if (md == null) {
+                    md = newMessageDigest();
+                    sourceFileMDs.put(sourceFileName, md);
+                }
+                final byte[][] parts = splitClass(bytes, coverageLevel);
+                md.update(className.getBytes(StandardCharsets.UTF_8));
+                md.update(parts[0]);
+                // a test case that only runs code with no probes is not recorded to depend on the class
+                contextMD.update(className.getBytes(StandardCharsets.UTF_8));
+                contextMD.update(parts[1]);
+            } else if (!isTestClass) { // test utilities might affect any test case
+                contextMD.update(className.getBytes(StandardCharsets.UTF_8));
+                contextMD.update(bytes);
+            }
+        }
+        final Map<String, String> sourceFileDigests = new HashMap<>();
+        for (final Map.Entry<String, MessageDigest> entry : sourceFileMDs.entrySet()) {
+            sourceFileDigests.put(entry.getKey(), toHexString(entry.getValue().digest()));
+        }
+        final String contextDigest = toHexString(contextMD.digest());
+        return new ProfilingCache(cacheFile,
+                contextDigest,
+                testClassDigests,
+                sourceFileNames,
+                sourceFileDigests,
+                readEntries(cacheFile, contextDigest));
+    }
+
+    private static FLOptions getCoverageLevel(final ProfilerOptions options) {
+        return options.flOptions == FLOptions.OFF ? FLOptions.LINE_LEVEL : options.flOptions;
+    }
+
+    /**
+     * Splits an application class into the code of its methods that get coverage probes,
+     * and the rest of the class. An unreadable class is taken as a whole to be the rest.
+     *
+     * @return The two parts of the class, in that order
+     */
+    private static byte[][] splitClass(final byte[] bytes, final FLOptions coverageLevel) {
+        final ClassWriter probedWriter = new ClassWriter(0);
+        final ClassWriter restWriter = new ClassWriter(0);
+        final ClassVisitor splitter = new ClassVisitor(Opcodes.ASM7, restWriter) {
+            private int classAccess;
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                this.classAccess = access;
+                probedWriter.visit(version, access, name, signature, superName, interfaces);
+                super.visit(version, access, name, signature, superName, interfaces);
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (CovRecTransformer.isProbed(coverageLevel, this.classAccess, access, name)) {
+                    return probedWriter.visitMethod(access, name, descriptor, signature, exceptions);
+                }
+                return super.visitMethod(access, name, descriptor, signature, exceptions);
+            }
+
+            @Override
+            public void visitEnd() {
+                probedWriter.visitEnd();
+                super.visitEnd();
+            }
+        };
+        try {
+            (new ClassReader(bytes)).accept(splitter, 0);
+            return new byte[][] {probedWriter.toByteArray(), restWriter.toByteArray()};
+        } catch (RuntimeException e) {
+            return new byte[][] {new byte[0], bytes};
+        }
+    }
+
+    // the same as the names of source files recorded by line-level coverage recorder
+    private static String getSourceFileName(final String className, final byte[] bytes) {
+        final String[] sourceFileName = {null};
+        final ClassVisitor visitor = new ClassVisitor(Opcodes.ASM7) {
+            @Override
+            public void visitSource(String source, String debug) {
+                sourceFileName[0] = source;
+            }
+        };
+        try {
+            (new ClassReader(bytes)).accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+        } catch (RuntimeException e) {
+            // unreadable classes are tracked by their own names, so lines in them are never up-to-date
+            sourceFileName[0] = null;
+        }
+        final int lastDotIndex = className.lastIndexOf('.');
+        final String source = sourceFileName[0] == null ? className.substring(1 + lastDotIndex) + ".class" : sourceFileName[0];
+        if (lastDotIndex < 0) {
+            return source;
+        }
+        return StringUtils.join(className.substring(0, lastDotIndex).split("\\."), File.separator) + File.separator + source;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Entry> readEntries(final File cacheFile, final String contextDigest) {
+        if (cacheFile.isFile()) {
+            try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+                if (contextDigest.equals(ois.readUTF())) {
+                    return (Map<String, Entry>) ois.readObject();
+                }
+                System.out.println("INFO: Cached profiling results are obsolete");
+            } catch (Exception e) {
+                System.out.println("WARNING: Unable to read cached profiling results (" + e.getMessage() + ")");
+            }
+        }
+        return new HashMap<>();
+    }
+
+    /**
+     * Returns the cached results of those of the given test classes that need not be
+     * profiled again.
+     *
+     * @param testClassNames Names of test classes
+     * @return A hash table mapping test class names to their cached results, in the
+     *         order of the given test classes
+     */
+    Map<String, Entry> lookUp(final Collection<String> testClassNames) {
+        final Map<String, Entry> results = new LinkedHashMap<>();
+        for (final String testClassName : testClassNames) {
+            final Entry entry = this.entries.get(testClassName);
+            if (entry != null && isUpToDate(testClassName, entry)) {
+                results.put(testClassName, entry);
+            }
+        }
+        return results;
+    }
+
+    private boolean isUpToDate(final String testClassName, final Entry entry) {
+        if (!entry.testClassDigest.equals(this.testClassDigests.get(testClassName))) {
+            return false;
+        }
+        for (final Map.Entry<String, String> dependency : entry.dependencies.entrySet()) {
+            if (!dependency.getValue().equals(this.sourceFileDigests.get(dependency.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Caches the results of profiling the given test classes. The results are ignored if
+     * they lack coverage information, e.g., because the profiler process crashed, or if
+     * some of their test cases cannot be attributed to any of the test classes.
+     *
+     * @param testClassNames Names of the profiled test classes
+     * @param results Results of profiling the test classes, with coverage information
+     */
+    public void update(final Collection<String> testClassNames, final ProfilerResults results) {
+        final CoverageMatrix<? extends ProgramElement> coverageMatrix = results.getCoverageMatrix();
+        if (coverageMatrix == null) {
+            return;
+        }
+        final Set<String> testClassNamesSet = new HashSet<>(testClassNames);
+        final Set<String> testNames = new HashSet<>(results.getTestsTiming().keySet());
+        testNames.addAll(coverageMatrix.getTestNames());
+        final Map<String, Entry> entries = new HashMap<>();
+        for (final String testClassName : testClassNamesSet) {
+            final String testClassDigest = this.testClassDigests.get(testClassName);
+            if (testClassDigest != null) {
+                entries.put(testClassName, new Entry(testClassDigest));
+            }
+        }
+        for (final String testName : testNames) {
+            final String testClassName = getTestClassName(testName, testClassNamesSet);
+            if (testClassName == null) {
+                System.out.println("WARNING: Profiling results are not cached as " + testName + " belongs to no test class");
+                return;
+            }
+            final Entry entry = entries.get(testClassName);
+            if (entry != null) {
+                entry.add(testName, results, this);
+            }
+        }
+        for (final String failingTestName : results.getFailingTestNames()) {
+            final Entry entry = entries.get(getTestClassName(failingTestName, testClassNamesSet));
+            if (entry != null) {
+                entry.failingTestNames.add(failingTestName);
+            }
+        }
+        this.entries.putAll(entries);
+    }
+
+    // the longest prefix of the test name that is a test class name
+    private static String getTestClassName(final String testName, final Set<String> testClassNames) {
+        String testClassName = null;
+        for (int dotIndex = testName.indexOf('.'); dotIndex > 0; dotIndex = testName.indexOf('.', dotIndex + 1)) {
+            final String prefix = testName.substring(0, dotIndex);
+            if (testClassNames.contains(prefix)) {
+                testClassName = prefix;
+            }
+        }
+        return testClassName;
+    }
+
+    private String getDependency(final ProgramElement element) {
+        final String className;
+        if (element instanceof SourceLine) {
+            return ((SourceLine) element).getFileName();
+        } else if (element instanceof Method) {
+            final String methodFullName = ((Method) element).getMethodFullName();
+            final String methodName = methodFullName.substring(0, methodFullName.indexOf('('));
+            className = methodName.substring(0, methodName.lastIndexOf('.'));
+        } else {
+            className = ((Class) element).getClassName();
+        }
+        final String sourceFileName = this.sourceFileNames.get(className);
+        // classes out of the project directories are never considered up-to-date
+        return sourceFileName == null ? className : sourceFileName;
+    }
+
+    /**
+     * Stores the results of the test classes that are still part of the test suite.
+     */
+    public void save() {
+        final Map<String, Entry> entries = new HashMap<>();
+        for (final Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+            if (this.testClassDigests.containsKey(entry.getKey())) {
+                entries.put(entry.getKey(), entry.getValue());
+            }
+        }
+        try {
+            final File parent = this.cacheFile.getAbsoluteFile().getParentFile();
+            FileUtils.forceMkdir(parent);
+            // write-then-rename so that a concurrent session never reads a partially written file
+            final File tempFile = File.createTempFile(this.cacheFile.getName(), ".tmp", parent);
+            try (ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+                oos.writeUTF(this.contextDigest);
+                oos.writeObject(entries);
+            }
+            Files.move(tempFile.toPath(), this.cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.out.println("WARNING: Unable to cache profiling results (" + e.getMessage() + ")");
+        }
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHexString(final byte[] digest) {
+        return String.format("%040x", new BigInteger(1, digest));
+    }
+
+    /**
+     * Cached results of a test class. Entries are only ever merged with the results of
+     * other test classes, so they only hold the raw data, i.e., running times, failing
+     * test cases, and coverage matrix, out of which {@link MergedProfilerResults} computes
+     * fault localization and coverage information.
+     */
+    static final class Entry implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        final String testClassDigest;
+
+        // source file name -> digest
+        final HashMap<String, String> dependencies;
+
+        final HashMap<String, Long> testsTiming;
+
+        final HashMap<String, Long> testsCpuTiming;
+
+        final ArrayList<String> failingTestNames;
+
+        final CoverageMatrix<ProgramElement> coverageMatrix;
+
+        Entry(final String testClassDigest) {
+            this.testClassDigest = testClassDigest;
+            this.dependencies = new HashMap<>();
+            this.testsTiming = new HashMap<>();
+            this.testsCpuTiming = new HashMap<>();
+            this.failingTestNames = new ArrayList<>();
+            this.coverageMatrix = new CoverageMatrix<>();
+        }
+
+        void add(final String testName, final ProfilerResults results, final ProfilingCache cache) {
+            final Long time = results.getTestsTiming().get(testName);
+            if (time != null) {
+                this.testsTiming.put(testName, time);
+            }
+            final Long cpuTime = results.getTestsCpuTiming().get(testName);
+            if (cpuTime != null) {
+                this.testsCpuTiming.put(testName, cpuTime);
+            }
+            final CoverageMatrix<? extends ProgramElement> coverageMatrix = results.getCoverageMatrix();
+            final int testIndex = this.coverageMatrix.addTest(testName);
+            final int resultsTestIndex = coverageMatrix.indexOfTest(testName);
+            if (resultsTestIndex < 0) {
+                return;
+            }
+            final SparseBitmap row = coverageMatrix.getCoveredElements(resultsTestIndex);
+            for (int elementIndex = row.nextSetBit(0); elementIndex >= 0; elementIndex = row.nextSetBit(elementIndex + 1)) {
+                final ProgramElement element = coverageMatrix.getElement(elementIndex);
+                this.coverageMatrix.cover(testIndex, this.coverageMatrix.addElement(element));
+                final String dependency = cache.getDependency(element);
+                final String digest = cache.sourceFileDigests.get(dependency);
+                this.dependencies.put(dependency, digest == null ? "" : digest);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package edu.utdallas.prf.profiler;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Running times of the test cases observed by the previous profiling session, used to
+ * balance the shards of the test suite. The history is stored as a text file with one
+ * <code>testName&lt;TAB&gt;milliseconds</code> line per test case.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class TimingHistory {
+    private TimingHistory() {
+
+    }
+
+    /**
+     * Returns the running times stored in the file, or an empty map if the file does not
+     * exist or cannot be read.
+     */
+    public static Map<String, Long> load(final File file) {
+        final Map<String, Long> testsTiming = new HashMap<>();
+        if (file == null || !file.isFile()) {
+            return testsTiming;
+        }
+        try {
+            final List<String> lines = FileUtils.readLines(file, StandardCharsets.UTF_8);
+            for (final String line : lines) {
+                final int tabIndex = line.lastIndexOf('\t');
+                if (tabIndex > 0) {
+                    testsTiming.put(line.substring(0, tabIndex), Long.valueOf(line.substring(tabIndex + 1).trim()));
+                }
+            }
+        } catch (Exception e) {
+            System.out.println("WARNING: Unable to read test timing history (" + e.getMessage() + ")");
+            testsTiming.clear();
+        }
+        return testsTiming;
+    }
+
+    public static void save(final File file, final Map<String, Long> testsTiming) {
+        final StringBuilder content = new StringBuilder();
+        for (final Map.Entry<String, Long> entry : new TreeMap<>(testsTiming).entrySet()) {
+            content.append(entry.getKey()).append('\t').append(entry.getValue()).append('\n');
+        }
+        try {
+            final File parent = file.getAbsoluteFile().getParentFile();
+            FileUtils.forceMkdir(parent);
+            // write-then-rename so that a concurrent session never reads a partially written file
+            final File tempFile = File.createTempFile(file.getName(), ".tmp", parent);
+            FileUtils.writeStringToFile(tempFile, content.toString(), StandardCharsets.UTF_8);
+            Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.out.println("WARNING: Unable to save test timing history (" + e.getMessage() + ")");
+        }
+    }
+}
@@ -25,14 +25,11 @@ import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.AdviceAdapter;
 import org.objectweb.asm.commons.Method;
 import org.pitest.bytecode.FrameOptions;
 import org.pitest.functional.predicate.Predicate;
 
-import java.lang.reflect.Modifier;
-
 import static org.objectweb.asm.Opcodes.ASM7;
 
 /**
@@ -40,12 +37,15 @@ import static org.objectweb.asm.Opcodes.ASM7;
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public class ClassLevelCovRecTransformer extends CovRecTransformer {
-    private static final Type COVERAGE_RECORDER = Type.getType(CoverageRecorder.class);
-
     private final StringDomain classesDom;
 
     public ClassLevelCovRecTransformer(final Predicate<String> appClassFilter) {
-        super(appClassFilter);
+        this(appClassFilter, false);
+    }
+
+    public ClassLevelCovRecTransformer(final Predicate<String> appClassFilter,
+                                       final boolean probeArrays) {
+        super(appClassFilter, probeArrays);
         this.classesDom = new StringDomain("C");
     }
 
@@ -66,7 +66,11 @@ public class ClassLevelCovRecTransformer extends CovRecTransformer {
     class CLCovRecClassVisitor extends ClassVisitor {
         private int classIndex;
 
-        private boolean isInterface;
+        private String className;
+
+        private int classAccess;
+
+        private boolean hasProbes;
 
         public CLCovRecClassVisitor(final ClassVisitor classVisitor) {
             super(ASM7, classVisitor);
@@ -75,19 +79,30 @@ public class ClassLevelCovRecTransformer extends CovRecTransformer {
         @Override
         public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
             this.classIndex = classesDom.getOrAdd(name.replace('/', '.'));
-            this.isInterface = Modifier.isInterface(access);
+            this.className = name;
+            this.classAccess = access;
             super.visit(version, access, name, signature, superName, interfaces);
         }
 
         @Override
         public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
             final MethodVisitor defaultMethodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
-            if (this.isInterface || Modifier.isAbstract(access) || Modifier.isNative(access)) {
+            if (!isProbed(FLOptions.CLASS_LEVEL, this.classAccess, access, name)) {
                 return defaultMethodVisitor;
             }
+            this.hasProbes = true;
             return new CLCovRecMethodVisitor(defaultMethodVisitor, access, name, descriptor);
         }
 
+        @Override
+        public void visitEnd() {
+            if (probeArrays && this.hasProbes) {
+                // the class has a single probe, which also marks the probe array as touched
+                addProbesInit(this.cv, this.className, CoverageRecorder.registerProbes(-1, new int[] {this.classIndex}));
+            }
+            super.visitEnd();
+        }
+
         class CLCovRecMethodVisitor extends AdviceAdapter {
             public CLCovRecMethodVisitor(final MethodVisitor mv,
                                          final int access,
@@ -98,6 +113,11 @@ public class ClassLevelCovRecTransformer extends CovRecTransformer {
 
             @Override
             protected void onMethodEnter() {
+                if (probeArrays) {
+                    pushProbes(this, className);
+                    setProbe(this, 0);
+                    return;
+                }
                 push(classIndex);
                 invokeStatic(COVERAGE_RECORDER, Method.getMethod("void markClass(int)"));
             }
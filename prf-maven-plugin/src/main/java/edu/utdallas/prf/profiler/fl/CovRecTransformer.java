@@ -21,6 +21,13 @@ package edu.utdallas.prf.profiler.fl;
  */
 
 import edu.utdallas.prf.commons.relational.StringDomain;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
 import org.pitest.functional.predicate.Predicate;
 
 import java.lang.instrument.ClassFileTransformer;
@@ -31,14 +38,66 @@ import java.security.ProtectionDomain;
  * The base class for all fault localization transformers.
  * Subclasses of this class file transformer can transform all non-native, concrete methods
  * of all application classes.
+ * Probes either call a static method of {@link CoverageRecorder} each time they are hit,
+ * or, if probe arrays are used, set an element of a <code>boolean</code> array owned by
+ * the class: each instrumented class gets a synthetic static field holding its probe
+ * array, and a synthetic static method that initializes the field, upon its first call,
+ * with the array registered for the class in <code>CoverageRecorder</code>. Methods
+ * fetch the array once per invocation and set the element at index 0 to mark the array
+ * as touched. The recorder harvests, and resets, touched arrays at test boundaries.
  *
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public abstract class CovRecTransformer implements ClassFileTransformer {
+    protected static final Type COVERAGE_RECORDER = Type.getType(CoverageRecorder.class);
+
+    protected static final Type PROBES_TYPE = Type.getType(boolean[].class);
+
+    private static final String PROBES_FIELD_NAME = "$prfProbes";
+
+    private static final String PROBES_INIT_NAME = "$prfInit";
+
+    private static final String PROBES_INIT_DESCRIPTOR = Type.getMethodDescriptor(PROBES_TYPE);
+
     protected final Predicate<String> appClassFilter;
 
+    protected final boolean probeArrays;
+
     public CovRecTransformer(final Predicate<String> appClassFilter) {
+        this(appClassFilter, false);
+    }
+
+    /**
+     * @param probeArrays Record coverage using per-class probe arrays; this cannot
+     *                    be used in thread-aware mode
+     */
+    public CovRecTransformer(final Predicate<String> appClassFilter,
+                             final boolean probeArrays) {
         this.appClassFilter = appClassFilter;
+        this.probeArrays = probeArrays;
+    }
+
+    /**
+     * Tells whether the transformer of the given coverage level places probes in a method.
+     * Methods of interfaces, as well as abstract and native methods, get no probes at any
+     * level; constructors and static initializers get no probes at line level. Executing
+     * such methods is never recorded as coverage.
+     *
+     * @param coverageLevel Level at which coverage is recorded
+     * @param classAccess Access flags of the class declaring the method
+     * @param methodAccess Access flags of the method
+     * @param methodName Name of the method
+     * @return <code>true</code> iff executing the method is recorded as coverage
+     */
+    public static boolean isProbed(final FLOptions coverageLevel,
+                                   final int classAccess,
+                                   final int methodAccess,
+                                   final String methodName) {
+        if ((classAccess & Opcodes.ACC_INTERFACE) != 0
+                || (methodAccess & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+            return false;
+        }
+        return coverageLevel != FLOptions.LINE_LEVEL || !methodName.matches("<clinit>|<init>");
     }
 
     private boolean isAppClass(final String className) {
@@ -65,4 +124,56 @@ public abstract class CovRecTransformer implements ClassFileTransformer {
      * @return The <code>StringDomain</code> used during FL transformation
      */
     public abstract StringDomain getDomain();
+
+    /**
+     * Pushes the probe array of the class onto the operand stack.
+     */
+    protected static void pushProbes(final GeneratorAdapter methodVisitor, final String classInternalName) {
+        methodVisitor.visitMethodInsn(Opcodes.INVOKESTATIC, classInternalName, PROBES_INIT_NAME, PROBES_INIT_DESCRIPTOR, false);
+    }
+
+    /**
+     * Pops the probe array off the operand stack and sets its element at the given index.
+     */
+    protected static void setProbe(final GeneratorAdapter methodVisitor, final int probeIndex) {
+        methodVisitor.push(probeIndex);
+        methodVisitor.push(true);
+        methodVisitor.arrayStore(Type.BOOLEAN_TYPE);
+    }
+
+    /**
+     * Adds the field holding the probe array of the class, along with the method that
+     * initializes it, to the class.
+     *
+     * @param classVisitor Visitor of the class, which is visiting its end
+     * @param classInternalName Internal name of the class
+     * @param classId Identifier of the class returned by {@link CoverageRecorder#registerProbes(int, int[])}
+     */
+    protected static void addProbesInit(final ClassVisitor classVisitor,
+                                        final String classInternalName,
+                                        final int classId) {
+        // private static fields and methods do not affect default serial version UIDs
+        classVisitor.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_TRANSIENT | Opcodes.ACC_SYNTHETIC,
+                PROBES_FIELD_NAME,
+                PROBES_TYPE.getDescriptor(),
+                null,
+                null).visitEnd();
+        final int access = Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_SYNTHETIC;
+        final MethodVisitor methodVisitor = classVisitor.visitMethod(access, PROBES_INIT_NAME, PROBES_INIT_DESCRIPTOR, null, null);
+        final GeneratorAdapter generator = new GeneratorAdapter(methodVisitor, access, PROBES_INIT_NAME, PROBES_INIT_DESCRIPTOR);
+        final Type owner = Type.getObjectType(classInternalName);
+        final Label initialized = generator.newLabel();
+        generator.visitCode();
+        generator.getStatic(owner, PROBES_FIELD_NAME, PROBES_TYPE);
+        generator.dup();
+        generator.ifNonNull(initialized);
+        generator.pop();
+        generator.push(classId);
+        generator.invokeStatic(COVERAGE_RECORDER, Method.getMethod("boolean[] getProbes(int)"));
+        generator.dup();
+        generator.putStatic(owner, PROBES_FIELD_NAME, PROBES_TYPE);
+        generator.mark(initialized);
+        generator.returnValue();
+        generator.endMethod();
+    }
 }
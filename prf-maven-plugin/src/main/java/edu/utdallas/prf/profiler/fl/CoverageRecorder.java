@@ -21,58 +21,73 @@ package edu.utdallas.prf.profiler.fl;
  */
 
 import edu.utdallas.prf.Class;
-import edu.utdallas.prf.ClassLevelCoverage;
 import edu.utdallas.prf.ClassLevelFL;
-import edu.utdallas.prf.LineLevelCoverage;
+import edu.utdallas.prf.CoverageMatrix;
 import edu.utdallas.prf.LineLevelFL;
 import edu.utdallas.prf.Method;
-import edu.utdallas.prf.MethodLevelCoverage;
 import edu.utdallas.prf.MethodLevelFL;
 import edu.utdallas.prf.SourceLine;
-import edu.utdallas.prf.commons.misc.PropertyUtils;
+import edu.utdallas.prf.commons.collections.SparseBitmap;
 import edu.utdallas.prf.commons.relational.StringDomain;
 import edu.utdallas.prf.profiler.ProfilerReporter;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public class CoverageRecorder {
-    private static final int UNIT_SIZE;
+    private static final Map<String, SparseBitmap> CLASS_COV;
 
-    private static final byte[] BYTE_UNIT;
+    private static final Map<String, SparseBitmap> METHOD_COV;
 
-    private static final long[] LONG_UNIT;
+    private static final Map<String, SparseBitmap[]> LINE_COV;
 
-    private static final byte[][] UNIT_SIZED_2D_BYTE_ARRAY;
+    // the test case each thread is working for; threads spawned by a test case inherit it
+    private static final InheritableThreadLocal<TestContext> CURRENT_TEST;
 
-    private static final Map<String, Object> CLASS_COV;
+    private static final ThreadLocal<ThreadBuffer> THREAD_BUFFER;
 
-    private static final Map<String, Object> METHOD_COV;
+    // probe arrays of the classes instrumented with probe arrays, indexed by class id
+    private static final List<ClassProbes> CLASS_PROBES;
 
-    private static final Map<String, Object> LINE_COV;
+    // lines covered by each probe that covers several lines, indexed by group id;
+    // the array grows by doubling, so only its first lineGroupsCount slots are in use
+    private static volatile LineGroup[] lineGroups;
+
+    private static int lineGroupsCount; // guarded by the class lock
 
     private static FLOptions options;
 
-    private static byte[][] currentLineCovUnits;
+    private static boolean threadAware;
+
+    private static String currentTestName;
+
+    private static SparseBitmap[] currentLineCov;
+
+    // for line level coverage, the ids of the line groups hit
+    private static SparseBitmap currentCov;
 
-    private static byte[] currentByteUnit;
+    private static CoverageMatrix<Class> classLevelCov;
 
-    private static long[] currentLongUnit;
+    private static CoverageMatrix<Method> methodLevelCov;
+
+    private static CoverageMatrix<SourceLine> lineLevelCov;
 
     static {
-        UNIT_SIZE = PropertyUtils.getIntProperty("prf.def.unit.sz", 1024);
-        BYTE_UNIT = new byte[UNIT_SIZE];
-        LONG_UNIT = new long[UNIT_SIZE];
-        UNIT_SIZED_2D_BYTE_ARRAY = new byte[UNIT_SIZE][];
-        CLASS_COV = new HashMap<>();
-        METHOD_COV = new HashMap<>();
-        LINE_COV = new HashMap<>();
+        CLASS_COV = new ConcurrentHashMap<>();
+        METHOD_COV = new ConcurrentHashMap<>();
+        LINE_COV = new ConcurrentHashMap<>();
+        CURRENT_TEST = new InheritableThreadLocal<>();
+        THREAD_BUFFER = new ThreadLocal<>();
+        CLASS_PROBES = new ArrayList<>();
+        lineGroups = new LineGroup[16];
+        lineGroupsCount = 0;
     }
 
     private CoverageRecorder() { }
@@ -81,286 +96,490 @@ public class CoverageRecorder {
         CoverageRecorder.options = options;
     }
 
+    /**
+     * In thread-aware mode, probes are attributed to the test case that the executing
+     * thread, or the thread that spawned it, is running, rather than to the last test
+     * case started. Each thread records into its own buffer, and the buffers are merged
+     * when the test case ends. This allows running test cases concurrently and
+     * attributes the code run by worker threads of a test case to the test case.
+     * Probes hit by a thread after its test case has ended are dropped.
+     * Threads that outlive a test case, e.g., pooled threads created by the test case,
+     * keep working for that test case.
+     *
+     * @param threadAware Whether thread-aware mode is on; this must be set before
+     *                    running any test case
+     */
+    public static void setThreadAware(final boolean threadAware) {
+        CoverageRecorder.threadAware = threadAware;
+    }
+
     public static void setCurrentTest(final String testName) {
+        if (threadAware) {
+            CURRENT_TEST.set(new TestContext(testName));
+            return;
+        }
+        harvestProbes(); // probes hit so far belong to the previous test case
+        currentTestName = testName;
         switch (CoverageRecorder.options) {
             case CLASS_LEVEL:
-                currentByteUnit = BYTE_UNIT.clone();
-                CLASS_COV.put(testName, currentByteUnit);
+                currentCov = new SparseBitmap();
+                CLASS_COV.put(testName, currentCov);
                 break;
             case METHOD_LEVEL:
-                currentLongUnit = LONG_UNIT.clone();
-                METHOD_COV.put(testName, currentLongUnit);
+                currentCov = new SparseBitmap();
+                METHOD_COV.put(testName, currentCov);
                 break;
             case LINE_LEVEL:
-                currentLineCovUnits = UNIT_SIZED_2D_BYTE_ARRAY.clone();
-                LINE_COV.put(testName, currentLineCovUnits);
+                currentCov = new SparseBitmap();
+                currentLineCov = new SparseBitmap[0];
+                LINE_COV.put(testName, currentLineCov);
+        }
+    }
+
+    /**
+     * Marks the end of the test case that the current thread is running.
+     * In thread-aware mode, this merges the buffers of the threads that worked for the
+     * test case; otherwise, this does nothing.
+     */
+    public static void endCurrentTest() {
+        if (!threadAware) {
+            return;
+        }
+        final TestContext context = CURRENT_TEST.get();
+        if (context == null) {
+            return;
+        }
+        CURRENT_TEST.remove();
+        final List<ThreadBuffer> buffers = context.end();
+        switch (CoverageRecorder.options) {
+            case CLASS_LEVEL:
+                CLASS_COV.put(context.testName, mergeCov(buffers));
+                break;
+            case METHOD_LEVEL:
+                METHOD_COV.put(context.testName, mergeCov(buffers));
+                break;
+            case LINE_LEVEL:
+                LINE_COV.put(context.testName, mergeLineCov(buffers));
         }
     }
 
     // this is called only when class level FL is active
     public static void markClass(final int classIndex) {
-        currentByteUnit[classIndex / Byte.SIZE] |= 1 << (classIndex % Byte.SIZE);
+        if (threadAware) {
+            final ThreadBuffer buffer = getThreadBuffer();
+            if (buffer != null) {
+                buffer.mark(classIndex);
+            }
+            return;
+        }
+        currentCov.add(classIndex);
     }
 
     // this is called only when method level FL is active
     public static void markMethod(final int methodIndex) {
-        currentLongUnit[methodIndex / Long.SIZE] |= 1 << (methodIndex % Long.SIZE);
+        if (threadAware) {
+            final ThreadBuffer buffer = getThreadBuffer();
+            if (buffer != null) {
+                buffer.mark(methodIndex);
+            }
+            return;
+        }
+        currentCov.add(methodIndex);
     }
 
     // this is called only when line level FL is active
     public static void markSourceLine(final int sourceFileIndex, final int lineNumber) {
-        byte[] unit = currentLineCovUnits[sourceFileIndex];
-        if (unit == null) {
-            unit = BYTE_UNIT.clone();
-            currentLineCovUnits[sourceFileIndex] = unit;
+        if (threadAware) {
+            final ThreadBuffer buffer = getThreadBuffer();
+            if (buffer != null) {
+                buffer.markSourceLine(sourceFileIndex, lineNumber);
+            }
+            return;
+        }
+        final SparseBitmap[] lineCov = markSourceLine(currentLineCov, sourceFileIndex, lineNumber);
+        if (lineCov != currentLineCov) {
+            currentLineCov = lineCov;
+            LINE_COV.put(currentTestName, lineCov);
         }
-        unit[lineNumber / Byte.SIZE] |= 1 << (lineNumber % Byte.SIZE);
     }
 
-    private static ClassLevelFL makeClassLevelFLInfo(final StringDomain classesDom,
-                                                     final Collection<String> failingTestNames,
-                                                     final FLStrategy flStrategy) {
-        final Map<String, CoverageInfo> coverageInfoMap = new HashMap<>();
-        final Set<String> failingTests = new HashSet<>(failingTestNames);
-        for (Map.Entry<String, Object> entry : CLASS_COV.entrySet()) {
-            final String testName = entry.getKey();
-            final boolean isFailing = failingTests.contains(testName);
-            final byte[] unit = (byte[]) entry.getValue();
-            int classIndex = 0;
-            for (int chunk : unit) {
-                chunk = chunk & 0b11111111;
-                if (chunk == 0) {
-                    classIndex += Byte.SIZE;
-                } else {
-                    while (chunk != 0) {
-                        if ((chunk & 1) != 0) {
-                            final String className = classesDom.get(classIndex);
-                            CoverageInfo info = coverageInfoMap.get(className);
-                            if (info == null) {
-                                info = new CoverageInfo();
-                                coverageInfoMap.put(className, info);
-                            }
-                            (isFailing ? info.ef : info.ep).add(testName);
-                        }
-                        chunk >>>= 1;
-                        classIndex++;
-                    }
-                }
+    /**
+     * Registers a group of lines that are covered by a single probe.
+     *
+     * @param sourceFileIndex Index of the source file of the lines
+     * @param lineNumbers Line numbers
+     * @return Identifier of the group
+     */
+    public static synchronized int registerLineGroup(final int sourceFileIndex, final int[] lineNumbers) {
+        LineGroup[] groups = lineGroups;
+        if (lineGroupsCount == groups.length) {
+            groups = Arrays.copyOf(groups, 2 * groups.length);
+        }
+        groups[lineGroupsCount] = new LineGroup(sourceFileIndex, lineNumbers);
+        lineGroups = groups; // the volatile write publishes the new group, even if the array is the same
+        return lineGroupsCount++;
+    }
+
+    // this is called only when line level FL is active and probes cover several lines;
+    // groups are expanded into lines once the test case ends, so each hit costs a single mark
+    public static void markLineGroup(final int groupId) {
+        if (threadAware) {
+            final ThreadBuffer buffer = getThreadBuffer();
+            if (buffer != null) {
+                buffer.mark(groupId);
             }
+            return;
         }
-        final ClassLevelFL result = new ClassLevelFL();
-        final Set<String> allPassing = new HashSet<>(CLASS_COV.keySet());
-        allPassing.removeAll(failingTests);
-        for (final Map.Entry<String, CoverageInfo> entry : coverageInfoMap.entrySet()) {
-            final String className = entry.getKey();
-            final int ep = entry.getValue().ep.size();
-            final int ef = entry.getValue().ef.size();
-            final int np = allPassing.size() - ep;
-            final int nf = failingTests.size() - ef;
-            result.put(new Class(className), flStrategy.computeSusp(ef, ep, nf, np));
-        }
-        return result;
+        currentCov.add(groupId);
     }
 
-    private static ClassLevelCoverage makeClassLevelCoverageInfo(final StringDomain classesDom) {
-        final ClassLevelCoverage res = new ClassLevelCoverage();
-        for (Map.Entry<String, Object> entry : CLASS_COV.entrySet()) {
-            final String testName = entry.getKey();
-            final Set<Class> coveredClasses = new HashSet<>();
-            res.put(testName, coveredClasses);
-            final byte[] unit = (byte[]) entry.getValue();
-            int classIndex = 0;
-            for (int chunk : unit) {
-                chunk = chunk & 0b11111111;
-                if (chunk == 0) {
-                    classIndex += Byte.SIZE;
-                } else {
-                    while (chunk != 0) {
-                        if ((chunk & 1) != 0) {
-                            final String className = classesDom.get(classIndex);
-                            coveredClasses.add(new Class(className));
-                        }
-                        chunk >>>= 1;
-                        classIndex++;
-                    }
-                }
+    // returns the given array, or a larger copy of it, with the lines of the groups marked
+    private static SparseBitmap[] markLineGroups(SparseBitmap[] lineCov, final SparseBitmap groupIds) {
+        final LineGroup[] groups = lineGroups;
+        for (int groupId = groupIds.nextSetBit(0); groupId >= 0; groupId = groupIds.nextSetBit(groupId + 1)) {
+            final LineGroup group = groups[groupId];
+            for (final int lineNumber : group.lineNumbers) {
+                lineCov = markSourceLine(lineCov, group.sourceFileIndex, lineNumber);
             }
         }
-        return res;
+        return lineCov;
+    }
+
+    // returns the given array, or a larger copy of it, if the source file does not fit in
+    private static SparseBitmap[] markSourceLine(SparseBitmap[] lineCov,
+                                                 final int sourceFileIndex,
+                                                 final int lineNumber) {
+        if (sourceFileIndex >= lineCov.length) {
+            // source files are indexed in the order they are loaded, so the
+            // array grows only a handful of times for each test
+            lineCov = Arrays.copyOf(lineCov, Math.max(sourceFileIndex + 1, 2 * lineCov.length));
+        }
+        SparseBitmap lines = lineCov[sourceFileIndex];
+        if (lines == null) {
+            lines = new SparseBitmap();
+            lineCov[sourceFileIndex] = lines;
+        }
+        lines.add(lineNumber);
+        return lineCov;
+    }
+
+    /**
+     * Registers the probe array of a class instrumented with probe arrays. Element 0 of
+     * the array marks it as touched; for line level coverage, it is never mapped to
+     * any line.
+     *
+     * @param sourceFileIndex Index of the source file of the class, for line level
+     *                        coverage; otherwise, -1
+     * @param elementIndices For each probe, the index of the class or method it
+     *                       covers, or, for line level coverage, its line number;
+     *                       -1 for probes that cover nothing
+     * @return Identifier of the class
+     */
+    public static int registerProbes(final int sourceFileIndex, final int[] elementIndices) {
+        final int[][] elementsIndices = new int[elementIndices.length][];
+        for (int probeIndex = 0; probeIndex < elementIndices.length; probeIndex++) {
+            final int elementIndex = elementIndices[probeIndex];
+            elementsIndices[probeIndex] = elementIndex < 0 ? new int[0] : new int[] {elementIndex};
+        }
+        return registerProbes(sourceFileIndex, elementsIndices);
+    }
+
+    /**
+     * Registers the probe array of a class instrumented with probe arrays, where each
+     * probe might cover several elements.
+     *
+     * @param sourceFileIndex Index of the source file of the class, for line level
+     *                        coverage; otherwise, -1
+     * @param elementIndices For each probe, the indices of the classes or methods it
+     *                       covers, or, for line level coverage, its line numbers
+     * @return Identifier of the class
+     */
+    public static int registerProbes(final int sourceFileIndex, final int[][] elementIndices) {
+        synchronized (CLASS_PROBES) {
+            CLASS_PROBES.add(new ClassProbes(sourceFileIndex, elementIndices));
+            return CLASS_PROBES.size() - 1;
+        }
+    }
+
+    // this is called by an instrumented class only until its probe array is cached in the class
+    public static boolean[] getProbes(final int classId) {
+        synchronized (CLASS_PROBES) {
+            return CLASS_PROBES.get(classId).probes;
+        }
     }
 
-    private static MethodLevelFL makeMethodLevelFLInfo(final StringDomain methodsDom,
-                                                       final Collection<String> failingTestNames,
-                                                       final FLStrategy flStrategy) {
-        final Map<String, CoverageInfo> coverageInfoMap = new HashMap<>();
-        final Set<String> failingTests = new HashSet<>(failingTestNames);
-        for (Map.Entry<String, Object> entry : METHOD_COV.entrySet()) {
-            final String testName = entry.getKey();
-            final boolean isFailing = failingTests.contains(testName);
-            final long[] unit = (long[]) entry.getValue();
-            int methodIndex = 0;
-            for (long chunk : unit) {
-                if (chunk == 0) {
-                    methodIndex += Long.SIZE;
-                } else {
-                    while (chunk != 0L) {
-                        if ((chunk & 1L) != 0L) {
-                            final String methodsName = methodsDom.get(methodIndex);
-                            CoverageInfo info = coverageInfoMap.get(methodsName);
-                            if (info == null) {
-                                info = new CoverageInfo();
-                                coverageInfoMap.put(methodsName, info);
-                            }
-                            (isFailing ? info.ef : info.ep).add(testName);
+    // records the probes and line groups hit since the last call in the current test case, and
+    // resets them; this is only done when not in thread-aware mode, as probe arrays are shared among threads
+    private static void harvestProbes() {
+        if (options == FLOptions.LINE_LEVEL && currentTestName != null && !currentCov.isEmpty()) {
+            currentLineCov = markLineGroups(currentLineCov, currentCov);
+            LINE_COV.put(currentTestName, currentLineCov);
+            currentCov = new SparseBitmap();
+        }
+        final ClassProbes[] classProbes;
+        synchronized (CLASS_PROBES) {
+            classProbes = CLASS_PROBES.toArray(new ClassProbes[0]);
+        }
+        for (final ClassProbes cp : classProbes) {
+            final boolean[] probes = cp.probes;
+            if (!probes[0]) {
+                continue;
+            }
+            for (int probeIndex = 0; probeIndex < probes.length; probeIndex++) {
+                if (probes[probeIndex]) {
+                    probes[probeIndex] = false;
+                    if (currentTestName == null) {
+                        continue;
+                    }
+                    for (final int elementIndex : cp.elementIndices[probeIndex]) {
+                        if (cp.sourceFileIndex >= 0) {
+                            markSourceLine(cp.sourceFileIndex, elementIndex);
+                        } else {
+                            currentCov.add(elementIndex);
                         }
-                        chunk >>>= 1;
-                        methodIndex++;
                     }
                 }
             }
         }
-        final MethodLevelFL result = new MethodLevelFL();
-        final Set<String> allPassing = new HashSet<>(METHOD_COV.keySet());
-        allPassing.removeAll(failingTests);
-        for (final Map.Entry<String, CoverageInfo> entry : coverageInfoMap.entrySet()) {
-            final String methodName = entry.getKey();
-            final int ep = entry.getValue().ep.size();
-            final int ef = entry.getValue().ef.size();
-            final int np = allPassing.size() - ep;
-            final int nf = failingTests.size() - ef;
-            result.put(new Method(methodName), flStrategy.computeSusp(ef, ep, nf, np));
-        }
-        return result;
     }
 
-    private static MethodLevelCoverage makeMethodLevelCoverageInfo(final StringDomain methodsDom) {
-        final MethodLevelCoverage res = new MethodLevelCoverage();
-        for (Map.Entry<String, Object> entry : METHOD_COV.entrySet()) {
-            final String testName = entry.getKey();
-            final Set<Method> coveredMethods = new HashSet<>();
-            res.put(testName, coveredMethods);
-            final long[] unit = (long[]) entry.getValue();
-            int methodIndex = 0;
-            for (long chunk : unit) {
-                if (chunk == 0) {
-                    methodIndex += Long.SIZE;
-                } else {
-                    while (chunk != 0L) {
-                        if ((chunk & 1L) != 0L) {
-                            final String methodsName = methodsDom.get(methodIndex);
-                            coveredMethods.add(new Method(methodsName));
-                        }
-                        chunk >>>= 1;
-                        methodIndex++;
-                    }
-                }
+    private static ThreadBuffer getThreadBuffer() {
+        final TestContext context = CURRENT_TEST.get();
+        if (context == null) {
+            return null;
+        }
+        ThreadBuffer buffer = THREAD_BUFFER.get();
+        if (buffer == null || buffer.context != context) {
+            buffer = context.newBuffer();
+            THREAD_BUFFER.set(buffer);
+        }
+        return buffer;
+    }
+
+    private static SparseBitmap mergeCov(final List<ThreadBuffer> buffers) {
+        if (buffers.size() == 1) {
+            final ThreadBuffer buffer = buffers.get(0);
+            synchronized (buffer) {
+                return buffer.cov;
+            }
+        }
+        final SparseBitmap merged = new SparseBitmap();
+        for (final ThreadBuffer buffer : buffers) {
+            synchronized (buffer) {
+                merged.or(buffer.cov);
             }
         }
-       return res;
+        return merged;
     }
 
-    private static LineLevelFL makeLineLevelFLInfo(final StringDomain filesDom,
-                                                   final Collection<String> failingTestNames,
-                                                   final FLStrategy flStrategy) {
-        final Map<SourceLine, CoverageInfo> coverageInfoMap = new HashMap<>();
-        final Set<String> failingTests = new HashSet<>(failingTestNames);
-        for (Map.Entry<String, Object> entry : LINE_COV.entrySet()) {
-            final String testName = entry.getKey();
-            final boolean isFailing = failingTests.contains(testName);
-            final byte[][] units = (byte[][]) entry.getValue();
-            for (int sourceFileIndex = 0; sourceFileIndex < units.length; sourceFileIndex++) {
-                final byte[] unit = units[sourceFileIndex];
-                if (unit == null) {
-                    continue;
+    private static SparseBitmap[] mergeLineCov(final List<ThreadBuffer> buffers) {
+        if (buffers.size() == 1) {
+            final ThreadBuffer buffer = buffers.get(0);
+            synchronized (buffer) {
+                return markLineGroups(buffer.lineCov, buffer.cov);
+            }
+        }
+        SparseBitmap[] merged = new SparseBitmap[0];
+        for (final ThreadBuffer buffer : buffers) {
+            synchronized (buffer) {
+                final SparseBitmap[] lineCov = markLineGroups(buffer.lineCov, buffer.cov);
+                if (lineCov.length > merged.length) {
+                    merged = Arrays.copyOf(merged, lineCov.length);
                 }
-                final String sourceFileName = filesDom.get(sourceFileIndex);
-                int lineNumber = 0;
-                for (int chunk : unit) {
-                    chunk = chunk & 0b11111111;
-                    if (chunk == 0) {
-                        lineNumber += Byte.SIZE;
-                    } else {
-                        while (chunk != 0) {
-                            if ((chunk & 1) != 0) {
-                                final SourceLine sourceLine = new SourceLine(sourceFileName, lineNumber);
-                                CoverageInfo info = coverageInfoMap.get(sourceLine);
-                                if (info == null) {
-                                    info = new CoverageInfo();
-                                    coverageInfoMap.put(sourceLine, info);
-                                }
-                                (isFailing ? info.ef : info.ep).add(testName);
-                            }
-                            chunk >>>= 1;
-                            lineNumber++;
-                        }
+                for (int sourceFileIndex = 0; sourceFileIndex < lineCov.length; sourceFileIndex++) {
+                    final SparseBitmap lines = lineCov[sourceFileIndex];
+                    if (lines == null) {
+                        continue;
                     }
+                    if (merged[sourceFileIndex] == null) {
+                        merged[sourceFileIndex] = new SparseBitmap();
+                    }
+                    merged[sourceFileIndex].or(lines);
                 }
             }
         }
-        final LineLevelFL result = new LineLevelFL();
-        final Set<String> allPassing = new HashSet<>(LINE_COV.keySet());
-        allPassing.removeAll(failingTests);
-        for (final Map.Entry<SourceLine, CoverageInfo> entry : coverageInfoMap.entrySet()) {
-            final SourceLine sourceLine = entry.getKey();
-            final int ep = entry.getValue().ep.size();
-            final int ef = entry.getValue().ef.size();
-            final int np = allPassing.size() - ep;
-            final int nf = failingTests.size() - ef;
-            result.put(sourceLine, flStrategy.computeSusp(ef, ep, nf, np));
-        }
-        return result;
+        return merged;
+    }
+
+    /**
+     * The test case a thread is working for, along with the buffers of all the threads
+     * that have worked for it so far.
+     */
+    private static final class TestContext {
+        final String testName;
+
+        final List<ThreadBuffer> buffers;
+
+        volatile boolean ended;
+
+        TestContext(final String testName) {
+            this.testName = testName;
+            this.buffers = new ArrayList<>(1);
+        }
+
+        synchronized ThreadBuffer newBuffer() {
+            final ThreadBuffer buffer = new ThreadBuffer(this);
+            if (!this.ended) {
+                this.buffers.add(buffer);
+            }
+            return buffer; // buffers created after the test case has ended are discarded
+        }
+
+        synchronized List<ThreadBuffer> end() {
+            this.ended = true;
+            return this.buffers;
+        }
+    }
+
+    /**
+     * Coverage recorded by a single thread for a single test case. A buffer is only
+     * written by its own thread; the lock is only ever contended if the test case ends
+     * while one of its worker threads is still running, in which case the buffer
+     * stops recording.
+     */
+    private static final class ThreadBuffer {
+        final TestContext context;
+
+        final SparseBitmap cov; // for line level coverage, the ids of the line groups hit
+
+        SparseBitmap[] lineCov;
+
+        ThreadBuffer(final TestContext context) {
+            this.context = context;
+            this.cov = new SparseBitmap();
+            this.lineCov = new SparseBitmap[0];
+        }
+
+        synchronized void mark(final int index) {
+            if (!this.context.ended) {
+                this.cov.add(index);
+            }
+        }
+
+        synchronized void markSourceLine(final int sourceFileIndex, final int lineNumber) {
+            if (!this.context.ended) {
+                this.lineCov = CoverageRecorder.markSourceLine(this.lineCov, sourceFileIndex, lineNumber);
+            }
+        }
     }
 
-    private static LineLevelCoverage makeLineLevelCoverageInfo(final StringDomain filesDom) {
-        final LineLevelCoverage res = new LineLevelCoverage();
-        for (Map.Entry<String, Object> entry : LINE_COV.entrySet()) {
-            final String testName = entry.getKey();
-            final Set<SourceLine> coveredLines = new HashSet<>();
-            res.put(testName, coveredLines);
-            final byte[][] units = (byte[][]) entry.getValue();
+    private static final class LineGroup {
+        final int sourceFileIndex;
+
+        final int[] lineNumbers;
+
+        LineGroup(final int sourceFileIndex, final int[] lineNumbers) {
+            this.sourceFileIndex = sourceFileIndex;
+            this.lineNumbers = lineNumbers;
+        }
+    }
+
+    private static final class ClassProbes {
+        final int sourceFileIndex;
+
+        final int[][] elementIndices;
+
+        final boolean[] probes;
+
+        ClassProbes(final int sourceFileIndex, final int[][] elementIndices) {
+            this.sourceFileIndex = sourceFileIndex;
+            this.elementIndices = elementIndices;
+            this.probes = new boolean[elementIndices.length];
+        }
+    }
+
+    private static CoverageMatrix<Class> makeClassLevelCoverageMatrix(final StringDomain classesDom) {
+        final CoverageMatrix<Class> res = new CoverageMatrix<>();
+        for (int classIndex = 0; classIndex < classesDom.size(); classIndex++) {
+            res.addElement(new Class(classesDom.get(classIndex)));
+        }
+        for (Map.Entry<String, SparseBitmap> entry : CLASS_COV.entrySet()) {
+            res.addTest(entry.getKey(), entry.getValue());
+        }
+        return res;
+    }
+
+    private static CoverageMatrix<Method> makeMethodLevelCoverageMatrix(final StringDomain methodsDom) {
+        final CoverageMatrix<Method> res = new CoverageMatrix<>();
+        for (int methodIndex = 0; methodIndex < methodsDom.size(); methodIndex++) {
+            res.addElement(new Method(methodsDom.get(methodIndex)));
+        }
+        for (Map.Entry<String, SparseBitmap> entry : METHOD_COV.entrySet()) {
+            res.addTest(entry.getKey(), entry.getValue());
+        }
+        return res;
+    }
+
+    private static CoverageMatrix<SourceLine> makeLineLevelCoverageMatrix(final StringDomain filesDom) {
+        final CoverageMatrix<SourceLine> res = new CoverageMatrix<>();
+        // element indices of source lines per file, indexed by line number (-1 for
+        // the lines not yet interned); a source line object is created once per line
+        final int[][] elementIndices = new int[filesDom.size()][];
+        for (Map.Entry<String, SparseBitmap[]> entry : LINE_COV.entrySet()) {
+            final int testIndex = res.addTest(entry.getKey());
+            final SparseBitmap[] units = entry.getValue();
             for (int sourceFileIndex = 0; sourceFileIndex < units.length; sourceFileIndex++) {
-                final byte[] unit = units[sourceFileIndex];
-                if (unit == null) {
+                final SparseBitmap lines = units[sourceFileIndex];
+                if (lines == null) {
                     continue;
                 }
                 final String sourceFileName = filesDom.get(sourceFileIndex);
-                int lineNumber = 0;
-                for (int chunk : unit) {
-                    chunk = chunk & 0b11111111;
-                    if (chunk == 0) {
-                        lineNumber += Byte.SIZE;
-                    } else {
-                        while (chunk != 0) {
-                            if ((chunk & 1) != 0) {
-                                final SourceLine sourceLine = new SourceLine(sourceFileName, lineNumber);
-                                coveredLines.add(sourceLine);
-                            }
-                            chunk >>>= 1;
-                            lineNumber++;
-                        }
+                int[] indices = elementIndices[sourceFileIndex];
+                for (int lineNumber = lines.nextSetBit(0); lineNumber >= 0; lineNumber = lines.nextSetBit(lineNumber + 1)) {
+                    if (indices == null || lineNumber >= indices.length) {
+                        final int oldLength = indices == null ? 0 : indices.length;
+                        indices = indices == null ? new int[lineNumber + 1] : Arrays.copyOf(indices, Math.max(lineNumber + 1, 2 * oldLength));
+                        Arrays.fill(indices, oldLength, indices.length, -1);
+                        elementIndices[sourceFileIndex] = indices;
+                    }
+                    int elementIndex = indices[lineNumber];
+                    if (elementIndex < 0) {
+                        elementIndex = res.addElement(new SourceLine(sourceFileName, lineNumber));
+                        indices[lineNumber] = elementIndex;
                     }
+                    res.cover(testIndex, elementIndex);
                 }
             }
         }
         return res;
     }
 
-    static class CoverageInfo {
-        final Set<String> ep = new HashSet<>();
-        final Set<String> ef = new HashSet<>();
+    // the same matrix serves both fault localization and coverage reporting
+    private static CoverageMatrix<Class> getClassLevelCoverageMatrix(final StringDomain classesDom) {
+        if (classLevelCov == null) {
+            harvestProbes();
+            classLevelCov = makeClassLevelCoverageMatrix(classesDom);
+        }
+        return classLevelCov;
+    }
+
+    private static CoverageMatrix<Method> getMethodLevelCoverageMatrix(final StringDomain methodsDom) {
+        if (methodLevelCov == null) {
+            harvestProbes();
+            methodLevelCov = makeMethodLevelCoverageMatrix(methodsDom);
+        }
+        return methodLevelCov;
+    }
+
+    private static CoverageMatrix<SourceLine> getLineLevelCoverageMatrix(final StringDomain filesDom) {
+        if (lineLevelCov == null) {
+            harvestProbes();
+            lineLevelCov = makeLineLevelCoverageMatrix(filesDom);
+        }
+        return lineLevelCov;
     }
 
     public static void reportCoverageInfo(final ProfilerReporter reporter,
                                           final StringDomain domain) {
         switch (CoverageRecorder.options) {
             case CLASS_LEVEL:
-                reporter.reportClassLevelCov(makeClassLevelCoverageInfo(domain));
+                reporter.reportClassLevelCov(getClassLevelCoverageMatrix(domain));
                 break;
             case METHOD_LEVEL:
-                reporter.reportMethodLevelCov(makeMethodLevelCoverageInfo(domain));
+                reporter.reportMethodLevelCov(getMethodLevelCoverageMatrix(domain));
                 break;
             case LINE_LEVEL:
-                reporter.reportLineLevelCov(makeLineLevelCoverageInfo(domain));
+                reporter.reportLineLevelCov(getLineLevelCoverageMatrix(domain));
                 break;
             default:
                 throw new UnsupportedOperationException();
@@ -373,13 +592,16 @@ public class CoverageRecorder {
                                     final FLStrategy flStrategy) {
         switch (CoverageRecorder.options) {
             case CLASS_LEVEL:
-                reporter.reportClassLevelFL(makeClassLevelFLInfo(domain, failingTestNames, flStrategy));
+                reporter.reportClassLevelFL(new SpectrumEngine<>(getClassLevelCoverageMatrix(domain), failingTestNames)
+                        .computeSusp(flStrategy, new ClassLevelFL()));
                 break;
             case METHOD_LEVEL:
-                reporter.reportMethodLevelFL(makeMethodLevelFLInfo(domain, failingTestNames, flStrategy));
+                reporter.reportMethodLevelFL(new SpectrumEngine<>(getMethodLevelCoverageMatrix(domain), failingTestNames)
+                        .computeSusp(flStrategy, new MethodLevelFL()));
                 break;
             case LINE_LEVEL:
-                reporter.reportLineLevelFL(makeLineLevelFLInfo(domain, failingTestNames, flStrategy));
+                reporter.reportLineLevelFL(new SpectrumEngine<>(getLineLevelCoverageMatrix(domain), failingTestNames)
+                        .computeSusp(flStrategy, new LineLevelFL()));
                 break;
             default:
                 throw new UnsupportedOperationException();
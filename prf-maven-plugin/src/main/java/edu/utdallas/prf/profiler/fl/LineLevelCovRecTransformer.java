@@ -21,34 +21,48 @@ package edu.utdallas.prf.profiler.fl;
  */
 
 import edu.utdallas.prf.commons.relational.StringDomain;
-import javassist.Modifier;
 import org.apache.commons.lang3.StringUtils;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.GeneratorAdapter;
 import org.objectweb.asm.commons.Method;
+import org.objectweb.asm.tree.MethodNode;
 import org.pitest.bytecode.FrameOptions;
 import org.pitest.functional.predicate.Predicate;
 
 import static org.objectweb.asm.Opcodes.ASM7;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public class LineLevelCovRecTransformer extends CovRecTransformer {
-    private static final Type COVERAGE_RECORDER = Type.getType(CoverageRecorder.class);
-
     private final StringDomain filesDom;
 
+    private final boolean minimalProbes;
+
     public LineLevelCovRecTransformer(final Predicate<String> appClassFilter) {
-        super(appClassFilter);
+        this(appClassFilter, false, false);
+    }
+
+    /**
+     * @param minimalProbes Omit the probes of the lines whose coverage is implied by the
+     *                      probes of the lines they dominate
+     */
+    public LineLevelCovRecTransformer(final Predicate<String> appClassFilter,
+                                      final boolean probeArrays,
+                                      final boolean minimalProbes) {
+        super(appClassFilter, probeArrays);
         this.filesDom = new StringDomain("F");
+        this.minimalProbes = minimalProbes;
     }
 
     @Override
@@ -68,18 +82,41 @@ public class LineLevelCovRecTransformer extends CovRecTransformer {
     class LLCovRecClassVisitor extends ClassVisitor {
         private String classInternalName;
 
-        private boolean isInterface;
+        private int classAccess;
 
         private int sourceFileIndex;
 
+        // line numbers covered by each probe; probe 0 marks the probe array as touched
+        private final List<int[]> probeLines;
+
+        private final Map<Integer, Integer> probeIndices;
+
         public LLCovRecClassVisitor(final ClassVisitor classVisitor) {
             super(ASM7, classVisitor);
+            this.probeLines = new ArrayList<>();
+            this.probeLines.add(new int[0]);
+            this.probeIndices = new HashMap<>();
+        }
+
+        // probes of single lines are shared by all the methods of the class
+        private int getProbeIndex(final int[] lineNumbers) {
+            if (lineNumbers.length > 1) {
+                this.probeLines.add(lineNumbers);
+                return this.probeLines.size() - 1;
+            }
+            Integer probeIndex = this.probeIndices.get(lineNumbers[0]);
+            if (probeIndex == null) {
+                probeIndex = this.probeLines.size();
+                this.probeLines.add(lineNumbers);
+                this.probeIndices.put(lineNumbers[0], probeIndex);
+            }
+            return probeIndex;
         }
 
         @Override
         public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
             this.classInternalName = name;
-            this.isInterface = Modifier.isInterface(access);
+            this.classAccess = access;
             super.visit(version, access, name, signature, superName, interfaces);
         }
 
@@ -110,10 +147,30 @@ public class LineLevelCovRecTransformer extends CovRecTransformer {
         @Override
         public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
             final MethodVisitor defaultMethodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
-            if (this.isInterface || java.lang.reflect.Modifier.isAbstract(access) || java.lang.reflect.Modifier.isNative(access) || name.matches("<clinit>|<init>")) {
+            if (!isProbed(FLOptions.LINE_LEVEL, this.classAccess, access, name)) {
                 return defaultMethodVisitor;
             }
-            return new LLCovRecMethodVisitor(defaultMethodVisitor, access, name, descriptor);
+            if (minimalProbes) {
+                // the method is analyzed as a whole before being instrumented
+                return new MethodNode(ASM7, access, name, descriptor, signature, exceptions) {
+                    @Override
+                    public void visitEnd() {
+                        super.visitEnd();
+                        final MinimalProbePlacement placement = MinimalProbePlacement.compute(classInternalName, this);
+                        accept(new LLCovRecMethodVisitor(defaultMethodVisitor, this.access, this.name, this.desc, placement));
+                    }
+                };
+            }
+            return new LLCovRecMethodVisitor(defaultMethodVisitor, access, name, descriptor, null);
+        }
+
+        @Override
+        public void visitEnd() {
+            if (this.probeLines.size() > 1) {
+                final int classId = CoverageRecorder.registerProbes(this.sourceFileIndex, this.probeLines.toArray(new int[0][]));
+                addProbesInit(this.cv, this.classInternalName, classId);
+            }
+            super.visitEnd();
         }
 
         class LLCovRecMethodVisitor extends GeneratorAdapter {
@@ -121,28 +178,64 @@ public class LineLevelCovRecTransformer extends CovRecTransformer {
 
             private int processedLineNo;
 
+            private int probesLocal;
+
+            // null if a probe is placed for each line
+            private final MinimalProbePlacement placement;
+
+            private int lineNumberNodeIndex;
+
             public LLCovRecMethodVisitor(final MethodVisitor mv,
                                          final int access,
                                          final String name,
-                                         final String desc) {
+                                         final String desc,
+                                         final MinimalProbePlacement placement) {
                 super(ASM7, mv, access, name, desc);
+                this.placement = placement;
             }
 
             @Override
-            public void visitLabel(Label label) {
-                super.visitLabel(label);
-                if (this.currentLineNo != this.processedLineNo) {
-                    push(sourceFileIndex);
-                    push(this.currentLineNo);
-                    invokeStatic(COVERAGE_RECORDER, Method.getMethod("void markSourceLine(int,int)"));
-                    this.processedLineNo = this.currentLineNo;
+            public void visitCode() {
+                super.visitCode();
+                if (probeArrays) {
+                    this.probesLocal = newLocal(PROBES_TYPE);
+                    pushProbes(this, classInternalName);
+                    dup();
+                    setProbe(this, 0);
+                    storeLocal(this.probesLocal);
                 }
             }
 
+            // line numbers are visited right after their starting labels, so the probe is
+            // placed at the beginning of the code for the line; marking the line upon
+            // visiting the next label misses the lines that are not followed by any label
             @Override
             public void visitLineNumber(int line, Label start) {
                 this.currentLineNo = line;
                 super.visitLineNumber(line, start);
+                if (this.placement != null) {
+                    final int[] lineNumbers = this.placement.getProbeLines(this.lineNumberNodeIndex++);
+                    if (lineNumbers.length > 0) {
+                        insertProbe(lineNumbers);
+                    }
+                } else if (this.currentLineNo != this.processedLineNo) {
+                    insertProbe(new int[] {this.currentLineNo});
+                    this.processedLineNo = this.currentLineNo;
+                }
+            }
+
+            private void insertProbe(final int[] lineNumbers) {
+                if (probeArrays) {
+                    loadLocal(this.probesLocal);
+                    setProbe(this, getProbeIndex(lineNumbers));
+                } else if (lineNumbers.length == 1) {
+                    push(sourceFileIndex);
+                    push(lineNumbers[0]);
+                    invokeStatic(COVERAGE_RECORDER, Method.getMethod("void markSourceLine(int,int)"));
+                } else {
+                    push(CoverageRecorder.registerLineGroup(sourceFileIndex, lineNumbers));
+                    invokeStatic(COVERAGE_RECORDER, Method.getMethod("void markLineGroup(int)"));
+                }
             }
         }
     }
@@ -20,32 +20,33 @@ package edu.utdallas.prf.profiler.fl;
  * #L%
  */
 
+import com.carrotsearch.hppc.IntArrayList;
 import edu.utdallas.prf.commons.misc.MemberNameUtils;
 import edu.utdallas.prf.commons.relational.StringDomain;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Type;
 import org.objectweb.asm.commons.AdviceAdapter;
 import org.objectweb.asm.commons.Method;
 import org.pitest.bytecode.FrameOptions;
 import org.pitest.functional.predicate.Predicate;
 
-import java.lang.reflect.Modifier;
-
 import static org.objectweb.asm.Opcodes.ASM7;
 
 /**
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public class MethodLevelCovRecTransformer extends CovRecTransformer {
-    private static final Type COVERAGE_RECORDER = Type.getType(CoverageRecorder.class);
-
     private final StringDomain methodsDom;
 
     public MethodLevelCovRecTransformer(Predicate<String> appClassFilter) {
-        super(appClassFilter);
+        this(appClassFilter, false);
+    }
+
+    public MethodLevelCovRecTransformer(final Predicate<String> appClassFilter,
+                                        final boolean probeArrays) {
+        super(appClassFilter, probeArrays);
         this.methodsDom = new StringDomain("M");
     }
 
@@ -66,23 +67,28 @@ public class MethodLevelCovRecTransformer extends CovRecTransformer {
     class MLCovRecClassVisitor extends ClassVisitor {
         private String className;
 
-        private boolean isInterface;
+        private int classAccess;
+
+        // method indices of probes; probe 0 marks the probe array as touched
+        private final IntArrayList probeMethodIndices;
 
         public MLCovRecClassVisitor(final ClassVisitor classVisitor) {
             super(ASM7, classVisitor);
+            this.probeMethodIndices = new IntArrayList();
+            this.probeMethodIndices.add(-1);
         }
 
         @Override
         public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
             this.className = name;
-            this.isInterface = Modifier.isInterface(access);
+            this.classAccess = access;
             super.visit(version, access, name, signature, superName, interfaces);
         }
 
         @Override
         public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
             final MethodVisitor defaultMethodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
-            if (this.isInterface || Modifier.isAbstract(access) || Modifier.isNative(access)) {
+            if (!isProbed(FLOptions.METHOD_LEVEL, this.classAccess, access, name)) {
                 return defaultMethodVisitor;
             }
             final String methodName = MemberNameUtils.composeMethodFullName(this.className, name, descriptor);
@@ -90,6 +96,14 @@ public class MethodLevelCovRecTransformer extends CovRecTransformer {
             return new MLFLMethodVisitor(defaultMethodVisitor, access, name, descriptor, methodIndex);
         }
 
+        @Override
+        public void visitEnd() {
+            if (this.probeMethodIndices.size() > 1) {
+                addProbesInit(this.cv, this.className, CoverageRecorder.registerProbes(-1, this.probeMethodIndices.toArray()));
+            }
+            super.visitEnd();
+        }
+
         class MLFLMethodVisitor extends AdviceAdapter {
             private final int methodsIndex;
 
@@ -104,6 +118,15 @@ public class MethodLevelCovRecTransformer extends CovRecTransformer {
 
             @Override
             protected void onMethodEnter() {
+                if (probeArrays) {
+                    final int probeIndex = probeMethodIndices.size();
+                    probeMethodIndices.add(this.methodsIndex);
+                    pushProbes(this, className);
+                    dup();
+                    setProbe(this, 0);
+                    setProbe(this, probeIndex);
+                    return;
+                }
                 push(this.methodsIndex);
                 invokeStatic(COVERAGE_RECORDER, Method.getMethod("void markMethod(int)"));
             }
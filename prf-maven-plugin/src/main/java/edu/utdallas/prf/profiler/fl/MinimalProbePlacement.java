@@ -0,0 +1,475 @@
+package edu.utdallas.prf.profiler.fl;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import com.carrotsearch.hppc.IntArrayList;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.analysis.Analyzer;
+import org.objectweb.asm.tree.analysis.AnalyzerException;
+import org.objectweb.asm.tree.analysis.BasicInterpreter;
+import org.objectweb.asm.tree.analysis.BasicValue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Placement of line probes in a method such that a line is covered if, and only if, a
+ * probe covering it is hit.
+ * Line coverage recorder places a probe at each point where the line number changes.
+ * If every execution path starting at such a point eventually reaches another probed
+ * point that it dominates in the control flow graph of the method, the point needs no
+ * probe: it is covered exactly when one of these points is covered, so the probes of
+ * these points cover its line as well. Instructions that might throw an exception are
+ * considered as potential exits of the method, and paths that might loop forever are
+ * never assumed to reach any point, so line coverage is reconstructed exactly.
+ * This typically removes the probes of the lines that only branch to other lines, e.g.,
+ * the conditions of loops and if statements.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+final class MinimalProbePlacement {
+    private static final int[] NO_LINES = new int[0];
+
+    // index of the probe placed at each line number node, or -1 if no probe is placed there
+    private final int[] probeIndices;
+
+    // line numbers covered by each probe
+    private final int[][] probeLines;
+
+    private MinimalProbePlacement(final int[] probeIndices, final int[][] probeLines) {
+        this.probeIndices = probeIndices;
+        this.probeLines = probeLines;
+    }
+
+    /**
+     * Returns the lines covered by the probe to be placed right after the given line number
+     * node, or an empty array if no probe is to be placed there.
+     *
+     * @param lineNumberNodeIndex Index of the line number node among the line number
+     *                            nodes of the method, in the order they are visited
+     * @return Line numbers
+     */
+    int[] getProbeLines(final int lineNumberNodeIndex) {
+        final int probeIndex = this.probeIndices[lineNumberNodeIndex];
+        return probeIndex < 0 ? NO_LINES : this.probeLines[probeIndex];
+    }
+
+    int getProbesCount() {
+        return this.probeLines.length;
+    }
+
+    /**
+     * Computes the placement of probes in the given method.
+     *
+     * @param owner Internal name of the class declaring the method
+     * @param methodNode The method
+     * @return The placement, or <code>null</code> if the method cannot be analyzed
+     */
+    static MinimalProbePlacement compute(final String owner, final MethodNode methodNode) {
+        final InsnList instructions = methodNode.instructions;
+        final int exit = instructions.size();
+        final ControlFlowGraph cfg = new ControlFlowGraph(exit + 1);
+        final Analyzer<BasicValue> analyzer = new Analyzer<BasicValue>(new BasicInterpreter()) {
+            @Override
+            protected void newControlFlowEdge(int insnIndex, int successorIndex) {
+                cfg.addEdge(insnIndex, successorIndex);
+            }
+
+            @Override
+            protected boolean newControlFlowExceptionEdge(int insnIndex, int successorIndex) {
+                cfg.addEdge(insnIndex, successorIndex);
+                return true;
+            }
+        };
+        try {
+            analyzer.analyze(owner, methodNode);
+        } catch (AnalyzerException e) {
+            return null;
+        }
+        for (int insnIndex = 0; insnIndex < exit; insnIndex++) {
+            if (isExit(instructions.get(insnIndex))) {
+                cfg.addEdge(insnIndex, exit);
+            }
+        }
+        final DominatorTree dominators = new DominatorTree(cfg.successors, cfg.predecessors, 0);
+
+        // the points at which the line coverage recorder places probes
+        final IntArrayList lineNumberNodeIndices = new IntArrayList();
+        final IntArrayList pointInsnIndices = new IntArrayList();
+        final IntArrayList pointLineNumbers = new IntArrayList();
+        final int[] insnPointIndices = new int[exit + 1];
+        Arrays.fill(insnPointIndices, -1);
+        int processedLineNo = 0;
+        for (int insnIndex = 0; insnIndex < exit; insnIndex++) {
+            final AbstractInsnNode insn = instructions.get(insnIndex);
+            if (insn instanceof LineNumberNode) {
+                final int lineNumber = ((LineNumberNode) insn).line;
+                if (lineNumber != processedLineNo) {
+                    lineNumberNodeIndices.add(pointInsnIndices.size());
+                    insnPointIndices[insnIndex] = pointInsnIndices.size();
+                    pointInsnIndices.add(insnIndex);
+                    pointLineNumbers.add(lineNumber);
+                    processedLineNo = lineNumber;
+                } else {
+                    lineNumberNodeIndices.add(-1);
+                }
+            }
+        }
+
+        // points are visited dominators first, so that probes are kept at the innermost points
+        final int pointsCount = pointInsnIndices.size();
+        final Integer[] pointsOrder = new Integer[pointsCount];
+        for (int pointIndex = 0; pointIndex < pointsCount; pointIndex++) {
+            pointsOrder[pointIndex] = pointIndex;
+        }
+        Arrays.sort(pointsOrder, new Comparator<Integer>() {
+            @Override
+            public int compare(final Integer pointIndex1, final Integer pointIndex2) {
+                return Integer.compare(dominators.getPreOrderNumber(pointInsnIndices.get(pointIndex1)),
+                        dominators.getPreOrderNumber(pointInsnIndices.get(pointIndex2)));
+            }
+        });
+        final boolean[] probed = new boolean[pointsCount];
+        Arrays.fill(probed, true);
+        final PathSearch pathSearch = new PathSearch(cfg, dominators, pointInsnIndices, insnPointIndices, probed);
+        for (final int pointIndex : pointsOrder) {
+            probed[pointIndex] = !pathSearch.alwaysReachesProbe(pointIndex);
+        }
+
+        // a probe covers its own line as well as the lines of the points dominating it that are not probed
+        final int[] pointProbeIndices = new int[pointsCount];
+        final List<int[]> probeLines = new ArrayList<>();
+        for (int pointIndex = 0; pointIndex < pointsCount; pointIndex++) {
+            if (!probed[pointIndex]) {
+                pointProbeIndices[pointIndex] = -1;
+                continue;
+            }
+            final int insnIndex = pointInsnIndices.get(pointIndex);
+            final Set<Integer> lines = new HashSet<>();
+            lines.add(pointLineNumbers.get(pointIndex));
+            for (int dominatorIndex = 0; dominatorIndex < pointsCount; dominatorIndex++) {
+                if (!probed[dominatorIndex] && dominators.dominates(pointInsnIndices.get(dominatorIndex), insnIndex)) {
+                    lines.add(pointLineNumbers.get(dominatorIndex));
+                }
+            }
+            final int[] linesArray = new int[lines.size()];
+            int i = 0;
+            for (final int lineNumber : lines) {
+                linesArray[i++] = lineNumber;
+            }
+            Arrays.sort(linesArray);
+            pointProbeIndices[pointIndex] = probeLines.size();
+            probeLines.add(linesArray);
+        }
+
+        final int[] probeIndices = new int[lineNumberNodeIndices.size()];
+        for (int i = 0; i < probeIndices.length; i++) {
+            final int pointIndex = lineNumberNodeIndices.get(i);
+            probeIndices[i] = pointIndex < 0 ? -1 : pointProbeIndices[pointIndex];
+        }
+        return new MinimalProbePlacement(probeIndices, probeLines.toArray(new int[0][]));
+    }
+
+    // whether control might leave the method right after, or in the middle of, the instruction
+    private static boolean isExit(final AbstractInsnNode insn) {
+        final int opcode = insn.getOpcode();
+        switch (insn.getType()) {
+            case AbstractInsnNode.METHOD_INSN:
+            case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+            case AbstractInsnNode.FIELD_INSN:
+            case AbstractInsnNode.TYPE_INSN:
+            case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                return true;
+            case AbstractInsnNode.INT_INSN:
+                return opcode == Opcodes.NEWARRAY;
+            case AbstractInsnNode.LDC_INSN:
+                final Object constant = ((LdcInsnNode) insn).cst;
+                return constant instanceof Type || constant instanceof Handle;
+            case AbstractInsnNode.INSN:
+                return (opcode >= Opcodes.IALOAD && opcode <= Opcodes.SALOAD)
+                        || (opcode >= Opcodes.IASTORE && opcode <= Opcodes.SASTORE)
+                        || (opcode >= Opcodes.IRETURN && opcode <= Opcodes.RETURN)
+                        || opcode == Opcodes.IDIV || opcode == Opcodes.LDIV
+                        || opcode == Opcodes.IREM || opcode == Opcodes.LREM
+                        || opcode == Opcodes.ARRAYLENGTH || opcode == Opcodes.ATHROW
+                        || opcode == Opcodes.MONITORENTER || opcode == Opcodes.MONITOREXIT;
+            default: // RET is followed by the instructions that follow JSRs
+                return false;
+        }
+    }
+
+    /**
+     * Depth-first search of the paths starting at a point that avoid the probed points it
+     * dominates. The arrays used by the search are shared among the points of a method.
+     */
+    private static final class PathSearch {
+        private final ControlFlowGraph cfg;
+
+        private final DominatorTree dominators;
+
+        private final IntArrayList pointInsnIndices;
+
+        private final int[] insnPointIndices;
+
+        private final boolean[] probed;
+
+        private final byte[] states; // 0: not visited, 1: on stack, 2: done
+
+        private final int[] stack;
+
+        private final int[] nextChild;
+
+        private final IntArrayList visited;
+
+        PathSearch(final ControlFlowGraph cfg,
+                   final DominatorTree dominators,
+                   final IntArrayList pointInsnIndices,
+                   final int[] insnPointIndices,
+                   final boolean[] probed) {
+            this.cfg = cfg;
+            this.dominators = dominators;
+            this.pointInsnIndices = pointInsnIndices;
+            this.insnPointIndices = insnPointIndices;
+            this.probed = probed;
+            this.states = new byte[insnPointIndices.length];
+            this.stack = new int[insnPointIndices.length];
+            this.nextChild = new int[insnPointIndices.length];
+            this.visited = new IntArrayList();
+        }
+
+        /**
+         * Checks if every execution path starting at the point eventually reaches a probed
+         * point dominated by it, i.e., if no such path leaves the method, or loops forever,
+         * without reaching any of these points.
+         */
+        boolean alwaysReachesProbe(final int pointIndex) {
+            final int exit = this.insnPointIndices.length - 1;
+            final int pointInsnIndex = this.pointInsnIndices.get(pointIndex);
+            boolean result = true;
+            int top = 0;
+            this.stack[0] = pointInsnIndex;
+            visit(pointInsnIndex);
+            while (top >= 0 && result) {
+                final int node = this.stack[top];
+                final IntArrayList successors = this.cfg.successors[node];
+                if (this.nextChild[node] < successors.size()) {
+                    final int successor = successors.get(this.nextChild[node]++);
+                    if (successor == exit || this.states[successor] == 1) {
+                        result = false;
+                    } else if (this.states[successor] == 0 && !isProbeOf(successor, pointInsnIndex)) {
+                        visit(successor);
+                        this.stack[++top] = successor;
+                    }
+                } else {
+                    this.states[node] = 2;
+                    top--;
+                }
+            }
+            for (int i = 0; i < this.visited.size(); i++) {
+                final int node = this.visited.get(i);
+                this.states[node] = 0;
+                this.nextChild[node] = 0;
+            }
+            this.visited.clear();
+            return result;
+        }
+
+        private void visit(final int node) {
+            this.states[node] = 1;
+            this.visited.add(node);
+        }
+
+        private boolean isProbeOf(final int insnIndex, final int pointInsnIndex) {
+            final int pointIndex = this.insnPointIndices[insnIndex];
+            return pointIndex >= 0 && this.probed[pointIndex] && this.dominators.dominates(pointInsnIndex, insnIndex);
+        }
+    }
+
+    private static final class ControlFlowGraph {
+        final IntArrayList[] successors;
+
+        final IntArrayList[] predecessors;
+
+        // the analyzer might report an edge several times
+        private final Set<Long> edges;
+
+        ControlFlowGraph(final int nodesCount) {
+            this.successors = new IntArrayList[nodesCount];
+            this.predecessors = new IntArrayList[nodesCount];
+            for (int node = 0; node < nodesCount; node++) {
+                this.successors[node] = new IntArrayList(2);
+                this.predecessors[node] = new IntArrayList(2);
+            }
+            this.edges = new HashSet<>();
+        }
+
+        void addEdge(final int source, final int target) {
+            if (this.edges.add(((long) source << 32) | target)) {
+                this.successors[source].add(target);
+                this.predecessors[target].add(source);
+            }
+        }
+    }
+
+    /**
+     * Dominator tree computed using the algorithm by Cooper, Harvey, and Kennedy, with
+     * nodes numbered in the order of a depth-first traversal of the tree, so that
+     * dominance is checked in constant time. Nodes unreachable from the root neither
+     * dominate, nor are dominated by, any node.
+     */
+    private static final class DominatorTree {
+        private final int[] preOrder;
+
+        private final int[] postOrder;
+
+        DominatorTree(final IntArrayList[] successors,
+                      final IntArrayList[] predecessors,
+                      final int root) {
+            final int nodesCount = successors.length;
+            // reverse post-order of the nodes reachable from the root
+            final int[] rpoNumbers = new int[nodesCount];
+            Arrays.fill(rpoNumbers, -1);
+            final int[] rpo = reversePostOrder(successors, root, rpoNumbers);
+            final int[] idoms = new int[nodesCount];
+            Arrays.fill(idoms, -1);
+            idoms[root] = root;
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int i = 1; i < rpo.length; i++) {
+                    final int node = rpo[i];
+                    int newIdom = -1;
+                    final IntArrayList preds = predecessors[node];
+                    for (int j = 0; j < preds.size(); j++) {
+                        final int pred = preds.get(j);
+                        if (idoms[pred] >= 0) {
+                            newIdom = newIdom < 0 ? pred : intersect(pred, newIdom, idoms, rpoNumbers);
+                        }
+                    }
+                    if (idoms[node] != newIdom) {
+                        idoms[node] = newIdom;
+                        changed = true;
+                    }
+                }
+            }
+            this.preOrder = new int[nodesCount];
+            this.postOrder = new int[nodesCount];
+            Arrays.fill(this.preOrder, -1);
+            number(idoms, root, rpo);
+        }
+
+        private static int[] reversePostOrder(final IntArrayList[] successors,
+                                              final int root,
+                                              final int[] rpoNumbers) {
+            final IntArrayList postOrder = new IntArrayList();
+            final boolean[] visited = new boolean[successors.length];
+            // iterative depth-first search, as methods might be too large for recursion
+            final int[] stack = new int[successors.length];
+            final int[] nextChild = new int[successors.length];
+            int top = 0;
+            stack[0] = root;
+            visited[root] = true;
+            while (top >= 0) {
+                final int node = stack[top];
+                if (nextChild[node] < successors[node].size()) {
+                    final int child = successors[node].get(nextChild[node]++);
+                    if (!visited[child]) {
+                        visited[child] = true;
+                        stack[++top] = child;
+                    }
+                } else {
+                    postOrder.add(node);
+                    top--;
+                }
+            }
+            final int[] rpo = new int[postOrder.size()];
+            for (int i = 0; i < rpo.length; i++) {
+                rpo[i] = postOrder.get(rpo.length - 1 - i);
+                rpoNumbers[rpo[i]] = i;
+            }
+            return rpo;
+        }
+
+        private static int intersect(int node1, int node2, final int[] idoms, final int[] rpoNumbers) {
+            while (node1 != node2) {
+                while (rpoNumbers[node1] > rpoNumbers[node2]) {
+                    node1 = idoms[node1];
+                }
+                while (rpoNumbers[node2] > rpoNumbers[node1]) {
+                    node2 = idoms[node2];
+                }
+            }
+            return node1;
+        }
+
+        private void number(final int[] idoms, final int root, final int[] rpo) {
+            final IntArrayList[] children = new IntArrayList[idoms.length];
+            for (final int node : rpo) {
+                if (node != root) {
+                    final int idom = idoms[node];
+                    if (children[idom] == null) {
+                        children[idom] = new IntArrayList(2);
+                    }
+                    children[idom].add(node);
+                }
+            }
+            final int[] stack = new int[idoms.length];
+            final int[] nextChild = new int[idoms.length];
+            int top = 0;
+            int counter = 0;
+            stack[0] = root;
+            this.preOrder[root] = counter++;
+            while (top >= 0) {
+                final int node = stack[top];
+                if (children[node] != null && nextChild[node] < children[node].size()) {
+                    final int child = children[node].get(nextChild[node]++);
+                    this.preOrder[child] = counter++;
+                    stack[++top] = child;
+                } else {
+                    this.postOrder[node] = counter++;
+                    top--;
+                }
+            }
+        }
+
+        // -1 for the nodes unreachable from the root
+        int getPreOrderNumber(final int node) {
+            return this.preOrder[node];
+        }
+
+        boolean dominates(final int node1, final int node2) {
+            return this.preOrder[node1] >= 0 && this.preOrder[node2] >= 0
+                    && this.preOrder[node1] <= this.preOrder[node2]
+                    && this.postOrder[node2] <= this.postOrder[node1];
+        }
+    }
+}
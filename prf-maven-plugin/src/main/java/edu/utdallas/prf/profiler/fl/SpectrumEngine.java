@@ -0,0 +1,152 @@
+package edu.utdallas.prf.profiler.fl;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import edu.utdallas.prf.CoverageMatrix;
+import edu.utdallas.prf.FaultLocalizationInfo;
+import edu.utdallas.prf.ProgramElement;
+import edu.utdallas.prf.commons.collections.SparseBitmap;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes program spectra, i.e., the number of failing/passing test cases that
+ * execute/do not execute each program element (ef, ep, nf, and np), and the
+ * suspiciousness values derived from them.
+ * Instead of collecting test names per element, the column of each element in the
+ * coverage matrix is intersected with the bitmap of failing test cases: ef is the
+ * cardinality of the intersection and ep is the rest of the column.
+ * Elements are processed in parallel, in ranges of consecutive indices.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class SpectrumEngine<E extends ProgramElement> {
+    private static final int RANGE_SIZE = 1024;
+
+    private final CoverageMatrix<E> coverageMatrix;
+
+    private final SparseBitmap failingTests;
+
+    private final int failingTestsCount;
+
+    private final int passingTestsCount;
+
+    public SpectrumEngine(final CoverageMatrix<E> coverageMatrix,
+                          final Collection<String> failingTestNames) {
+        this.coverageMatrix = coverageMatrix;
+        final Set<String> failingTestNamesSet = new HashSet<>(failingTestNames);
+        this.failingTests = new SparseBitmap();
+        for (final String testName : failingTestNamesSet) {
+            final int testIndex = coverageMatrix.indexOfTest(testName);
+            if (testIndex >= 0) {
+                this.failingTests.add(testIndex);
+            }
+        }
+        this.failingTestsCount = failingTestNamesSet.size();
+        this.passingTestsCount = coverageMatrix.getTestsCount() - this.failingTests.cardinality();
+    }
+
+    /**
+     * Computes suspiciousness values for all the elements covered by at least one test
+     * case and stores them in the given, presumably empty, fault localization info. object.
+     *
+     * @param flStrategy Fault localization formula
+     * @param flInfo Fault localization info. object to be populated
+     * @param <F> Type of fault localization info. object
+     * @return The populated fault localization info. object
+     */
+    public <F extends FaultLocalizationInfo<E>> F computeSusp(final FLStrategy flStrategy,
+                                                            final F flInfo) {
+        final int elementsCount = this.coverageMatrix.getElementsCount();
+        final double[] susp = new double[elementsCount];
+        final boolean[] covered = new boolean[elementsCount];
+        if (elementsCount > 0) {
+            // build the columns up front, rather than racing for them in the workers
+            this.coverageMatrix.getCoveringTests(0);
+            final ForkJoinPool pool = new ForkJoinPool();
+            try {
+                pool.invoke(new RangeTask(flStrategy, susp, covered, 0, elementsCount));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        for (int elementIndex = 0; elementIndex < elementsCount; elementIndex++) {
+            if (covered[elementIndex]) {
+                flInfo.put(this.coverageMatrix.getElement(elementIndex), susp[elementIndex]);
+            }
+        }
+        return flInfo;
+    }
+
+    private class RangeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final FLStrategy flStrategy;
+
+        private final double[] susp;
+
+        private final boolean[] covered;
+
+        private final int from;
+
+        private final int to;
+
+        RangeTask(final FLStrategy flStrategy,
+                  final double[] susp,
+                  final boolean[] covered,
+                  final int from,
+                  final int to) {
+            this.flStrategy = flStrategy;
+            this.susp = susp;
+            this.covered = covered;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > RANGE_SIZE) {
+                final int mid = (this.from + this.to) >>> 1;
+                invokeAll(new RangeTask(this.flStrategy, this.susp, this.covered, this.from, mid),
+                        new RangeTask(this.flStrategy, this.susp, this.covered, mid, this.to));
+                return;
+            }
+            for (int elementIndex = this.from; elementIndex < this.to; elementIndex++) {
+                final SparseBitmap column = coverageMatrix.getCoveringTests(elementIndex);
+                final int executed = column.cardinality();
+                if (executed == 0) {
+                    continue;
+                }
+                final int ef = column.andCardinality(failingTests);
+                final int ep = executed - ef;
+                final int nf = failingTestsCount - ef;
+                final int np = passingTestsCount - ep;
+                this.susp[elementIndex] = this.flStrategy.computeSusp(ef, ep, nf, np);
+                this.covered[elementIndex] = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Class;
+import edu.utdallas.prf.CoverageMatrix;
+import edu.utdallas.prf.Method;
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PatchLocation;
+import edu.utdallas.prf.ProgramElement;
+import edu.utdallas.prf.SourceLine;
+import edu.utdallas.prf.commons.asm.ClassDiff;
+import edu.utdallas.prf.commons.collections.SparseBitmap;
+import edu.utdallas.prf.commons.misc.MemberNameUtils;
+import edu.utdallas.prf.profiler.fl.CovRecTransformer;
+import edu.utdallas.prf.profiler.fl.FLOptions;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.pitest.classinfo.ClassByteArraySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Regression test selection for patches: this class diffs patched classes against their
+ * original versions to find the altered methods and looks them up in the per-test
+ * coverage information gathered by the profiler, so that each patch is validated only
+ * against the test cases that cover the code it alters (plus the originally failing
+ * test cases).
+ *
+ * A patch is validated against all the test cases, if it already comes with a set of
+ * covering tests, if it introduces new classes, if it changes the shape of a class, if
+ * it alters a constructor or a static initializer, or if it alters a method that gets
+ * no coverage probes, e.g., a default or static method of an interface, as no test
+ * case is ever recorded to cover such a method.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class CoveringTestsSelector {
+    private final ClassByteArraySource byteArraySource;
+
+    private final CoverageMatrix<? extends ProgramElement> coverageMatrix;
+
+    private final Collection<String> failingTests;
+
+    private final java.lang.Class<?> elementType;
+
+    public CoveringTestsSelector(final ClassByteArraySource byteArraySource,
+                                 final CoverageMatrix<? extends ProgramElement> coverageMatrix,
+                                 final Collection<String> failingTests) {
+        this.byteArraySource = byteArraySource;
+        this.coverageMatrix = coverageMatrix;
+        this.failingTests = failingTests;
+        this.elementType = inferElementType(coverageMatrix);
+    }
+
+    private static java.lang.Class<?> inferElementType(final CoverageMatrix<? extends ProgramElement> coverageMatrix) {
+        if (coverageMatrix != null && coverageMatrix.getElementsCount() > 0) {
+            return coverageMatrix.getElement(0).getClass();
+        }
+        return null;
+    }
+
+    public List<Patch> select(final Collection<Patch> patches) {
+        final List<Patch> result = new ArrayList<>(patches.size());
+        if (this.elementType == null) {
+            System.out.println("WARNING: No coverage information is available; test selection is disabled.");
+            result.addAll(patches);
+            return result;
+        }
+        final int testsCount = this.coverageMatrix.getTestsCount();
+        long selectedTestsCount = 0;
+        int restrictedPatchesCount = 0;
+        for (final Patch patch : patches) {
+            final Patch restricted = select(patch);
+            if (restricted.getCoveringTests() == null) {
+                selectedTestsCount += testsCount;
+            } else {
+                selectedTestsCount += restricted.getCoveringTests().size();
+                if (restricted != patch) {
+                    restrictedPatchesCount++;
+                }
+            }
+            result.add(restricted);
+        }
+        System.out.println(String.format("INFO: Test selection restricted %d out of %d patches; %.2f tests per patch on average (out of %d).",
+                restrictedPatchesCount,
+                patches.size(),
+                patches.isEmpty() ? 0.D : selectedTestsCount / (double) patches.size(),
+                testsCount));
+        return result;
+    }
+
+    private Patch select(final Patch patch) {
+        if (patch.getCoveringTests() != null) {
+            return patch;
+        }
+        final Set<ProgramElement> alteredElements = collectAlteredElements(patch);
+        if (alteredElements == null) {
+            return patch;
+        }
+        final SparseBitmap coveringTestIndices = new SparseBitmap();
+        for (final ProgramElement element : alteredElements) {
+            final int elementIndex = this.coverageMatrix.indexOfElement(element);
+            if (elementIndex >= 0) {
+                final SparseBitmap column = this.coverageMatrix.getCoveringTests(elementIndex);
+                for (int testIndex = column.nextSetBit(0); testIndex >= 0; testIndex = column.nextSetBit(testIndex + 1)) {
+                    coveringTestIndices.add(testIndex);
+                }
+            }
+        }
+        final ArrayList<String> coveringTests = new ArrayList<>(this.failingTests);
+        for (int testIndex = coveringTestIndices.nextSetBit(0); testIndex >= 0; testIndex = coveringTestIndices.nextSetBit(testIndex + 1)) {
+            final String testName = this.coverageMatrix.getTestName(testIndex);
+            if (!this.failingTests.contains(testName)) {
+                coveringTests.add(testName);
+            }
+        }
+        coveringTests.trimToSize();
+        return patch.withCoveringTests(coveringTests);
+    }
+
+    /**
+     * Selects, for each patch, a small subset of the passing test cases that together
+     * cover all the program elements altered by the patch, which are covered by any
+     * passing test case. Subsets are chosen via greedy set cover: the test case covering
+     * most of the yet-uncovered altered elements is picked first, breaking ties in favor
+     * of faster test cases.
+     *
+     * @param patches The patches
+     * @param testsTiming Running time of test cases in milliseconds
+     * @return A map from each patch to its minimized set of test cases; patches for which
+     * no such set could be computed, or the set is empty, are absent from the map
+     */
+    public Map<Patch, List<String>> minimize(final Collection<Patch> patches,
+                                             final Map<String, Long> testsTiming) {
+        final Map<Patch, List<String>> result = new HashMap<>();
+        if (this.elementType == null) {
+            System.out.println("WARNING: No coverage information is available; regression pre-screening is disabled.");
+            return result;
+        }
+        long selectedTestsCount = 0;
+        for (final Patch patch : patches) {
+            final Set<ProgramElement> alteredElements = collectAlteredElements(patch);
+            if (alteredElements == null) {
+                continue;
+            }
+            final List<String> minimized = minimize(alteredElements, patch.getCoveringTests(), testsTiming);
+            if (!minimized.isEmpty()) {
+                result.put(patch, minimized);
+                selectedTestsCount += minimized.size();
+            }
+        }
+        System.out.println(String.format("INFO: Regression pre-screening applies to %d out of %d patches; %.2f tests per patch on average.",
+                result.size(),
+                patches.size(),
+                result.isEmpty() ? 0.D : selectedTestsCount / (double) result.size()));
+        return result;
+    }
+
+    private List<String> minimize(final Set<ProgramElement> alteredElements,
+                                  final Collection<String> coveringTests,
+                                  final Map<String, Long> testsTiming) {
+        // the part of the coverage information relevant to the patch
+        final Map<String, Set<ProgramElement>> candidates = new HashMap<>();
+        final Map<String, Long> candidateTimes = new HashMap<>(); // looked up once per test case
+        for (final ProgramElement element : alteredElements) {
+            final int elementIndex = this.coverageMatrix.indexOfElement(element);
+            if (elementIndex < 0) {
+                continue;
+            }
+            final SparseBitmap column = this.coverageMatrix.getCoveringTests(elementIndex);
+            for (int testIndex = column.nextSetBit(0); testIndex >= 0; testIndex = column.nextSetBit(testIndex + 1)) {
+                final String testName = this.coverageMatrix.getTestName(testIndex);
+                if (this.failingTests.contains(testName)
+                        || (coveringTests != null && !coveringTests.contains(testName))) {
+                    continue;
+                }
+                Set<ProgramElement> covered = candidates.get(testName);
+                if (covered == null) {
+                    covered = new HashSet<>();
+                    candidates.put(testName, covered);
+                    candidateTimes.put(testName, timeOf(testName, testsTiming));
+                }
+                covered.add(element);
+            }
+        }
+        final List<String> minimized = new ArrayList<>();
+        while (!candidates.isEmpty()) {
+            String best = null;
+            int bestCount = -1; // the first candidate always wins, so best is never null below
+            long bestTime = Long.MAX_VALUE;
+            for (final Map.Entry<String, Set<ProgramElement>> entry : candidates.entrySet()) {
+                final int count = entry.getValue().size();
+                final long time = candidateTimes.get(entry.getKey());
+                if (count > bestCount || (count == bestCount && time < bestTime)
+                        || (count == bestCount && time == bestTime && entry.getKey().compareTo(best) < 0)) {
+                    best = entry.getKey();
+                    bestCount = count;
+                    bestTime = time;
+                }
+            }
+            minimized.add(best);
+            final Set<ProgramElement> newlyCovered = candidates.remove(best);
+            final Iterator<Set<ProgramElement>> it = candidates.values().iterator();
+            while (it.hasNext()) {
+                final Set<ProgramElement> covered = it.next();
+                covered.removeAll(newlyCovered);
+                if (covered.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+        return minimized;
+    }
+
+    private static long timeOf(final String testName, final Map<String, Long> testsTiming) {
+        final Long time = testsTiming.get(testName);
+        return time == null ? Long.MAX_VALUE : time;
+    }
+
+    // returns null iff the patch needs all the tests to be run
+    private Set<ProgramElement> collectAlteredElements(final Patch patch) {
+        final Set<ProgramElement> alteredElements = new HashSet<>();
+        for (final PatchLocation location : patch.getLocations()) {
+            if (!collectAlteredElements(location, alteredElements)) {
+                return null;
+            }
+        }
+        return alteredElements;
+    }
+
+    // returns false iff the location needs all the tests to be run
+    private boolean collectAlteredElements(final PatchLocation location,
+                                           final Set<ProgramElement> alteredElements) {
+        final String className = location.getClassName();
+        final byte[] originalBytes = this.byteArraySource.getBytes(className).getOrElse(null);
+        if (originalBytes == null) {
+            return false;
+        }
+        final byte[] patchedBytes;
+        try {
+            patchedBytes = FileUtils.readFileToByteArray(location.getClassFile());
+        } catch (IOException e) {
+            return false;
+        }
+        final ClassDiff diff = ClassDiff.diff(originalBytes, patchedBytes);
+        if (!diff.isShapePreserving()) {
+            return false;
+        }
+        final Set<String> changedMethods = diff.getChangedMethods();
+        for (final String method : changedMethods) {
+            if (method.startsWith("<")) {
+                return false; // constructors and static initializers are not fully tracked by the profiler
+            }
+        }
+        if (changedMethods.isEmpty()) {
+            return true;
+        }
+        if (!areProbed(originalBytes, changedMethods)) {
+            return false;
+        }
+        if (this.elementType == Class.class) {
+            alteredElements.add(new Class(className));
+        } else if (this.elementType == Method.class) {
+            final String internalName = className.replace('.', '/');
+            for (final String method : changedMethods) {
+                final int indexOfLP = method.indexOf('(');
+                final String methodFullName = MemberNameUtils.composeMethodFullName(internalName,
+                        method.substring(0, indexOfLP),
+                        method.substring(indexOfLP));
+                alteredElements.add(new Method(methodFullName));
+            }
+        } else if (this.elementType == SourceLine.class) {
+            final String sourceFile = diff.getOriginalSourceFile();
+            if (sourceFile == null) {
+                return false;
+            }
+            final String sourceFileName = sourceFileName(className, sourceFile);
+            for (final Set<Integer> lineNumbers : diff.getOriginalLineNumbers(changedMethods).values()) {
+                if (lineNumbers.isEmpty()) {
+                    return false; // no debug information
+                }
+                for (final int lineNumber : lineNumbers) {
+                    alteredElements.add(new SourceLine(sourceFileName, lineNumber));
+                }
+            }
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    // tells if executing each of the given methods is recorded as coverage by the profiler
+    private boolean areProbed(final byte[] classBytes, final Set<String> methods) {
+        final FLOptions coverageLevel;
+        if (this.elementType == Class.class) {
+            coverageLevel = FLOptions.CLASS_LEVEL;
+        } else if (this.elementType == Method.class) {
+            coverageLevel = FLOptions.METHOD_LEVEL;
+        } else {
+            coverageLevel = FLOptions.LINE_LEVEL;
+        }
+        final boolean[] probed = {true};
+        final ClassVisitor visitor = new ClassVisitor(Opcodes.ASM7) {
+            private int classAccess;
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                this.classAccess = access;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (methods.contains(name + descriptor)
+                        && !CovRecTransformer.isProbed(coverageLevel, this.classAccess, access, name)) {
+                    probed[0] = false;
+                }
+                return null;
+            }
+        };
+        new ClassReader(classBytes).accept(visitor, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        return probed[0];
+    }
+
+    // file names are composed the same way as in line-level coverage recorder
+    private static String sourceFileName(final String className, final String sourceFile) {
+        final int lastDot = className.lastIndexOf('.');
+        if (lastDot < 0) {
+            return sourceFile;
+        }
+        final String packageName = className.substring(0, lastDot);
+        return String.format("%s%c%s",
+                StringUtils.join(packageName.split("\\."), File.separator),
+                File.separatorChar,
+                sourceFile);
+    }
+}
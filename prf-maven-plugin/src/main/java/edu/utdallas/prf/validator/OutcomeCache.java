@@ -0,0 +1,171 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PatchFingerprint;
+import edu.utdallas.prf.validator.process.ValidationOutcome;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A persistent cache of validation outcomes. Each outcome is stored in a separate file
+ * whose name is derived from the fingerprint of the patch, the names of the test classes,
+ * and the contents of the classpath, so changing any of the application or test classes
+ * (or dependencies) makes the previously cached outcomes unreachable.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class OutcomeCache {
+    private final File cacheDirectory;
+
+    private final String contextDigest;
+
+    public OutcomeCache(final File cacheDirectory,
+                        final String classPath,
+                        final Collection<String> testClassNames) {
+        this.cacheDirectory = cacheDirectory;
+        this.contextDigest = computeContextDigest(classPath, testClassNames);
+    }
+
+    private static String computeContextDigest(final String classPath,
+                                               final Collection<String> testClassNames) {
+        final MessageDigest md = newMessageDigest();
+        for (final String element : classPath.split(File.pathSeparator)) {
+            final File file = new File(element);
+            md.update(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            if (file.isDirectory()) {
+                updateWithDirectory(md, file);
+            } else if (file.isFile()) {
+                // hashing the contents of all the jar files would take too long
+                md.update(Long.toString(file.length()).getBytes(StandardCharsets.UTF_8));
+                md.update(Long.toString(file.lastModified()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        final List<String> sortedTestClassNames = new ArrayList<>(testClassNames);
+        Collections.sort(sortedTestClassNames);
+        for (final String testClassName : sortedTestClassNames) {
+            md.update(testClassName.getBytes(StandardCharsets.UTF_8));
+        }
+        return toHexString(md.digest());
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHexString(final byte[] digest) {
+        return String.format("%040x", new BigInteger(1, digest));
+    }
+
+    private static void updateWithDirectory(final MessageDigest md, final File directory) {
+        final File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+        for (final File file : files) {
+            md.update(file.getName().getBytes(StandardCharsets.UTF_8));
+            if (file.isDirectory()) {
+                updateWithDirectory(md, file);
+            } else {
+                try {
+                    md.update(Files.readAllBytes(file.toPath()));
+                } catch (IOException e) {
+                    // an unreadable file is as good as a modified file
+                    md.update(Long.toString(file.lastModified()).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+    }
+
+    private File getCacheFile(final Patch patch) throws IOException {
+        final MessageDigest md = newMessageDigest();
+        md.update(PatchFingerprint.of(patch).getDigest().getBytes(StandardCharsets.UTF_8));
+        md.update(this.contextDigest.getBytes(StandardCharsets.UTF_8));
+        final String key = toHexString(md.digest());
+        // avoid having too many files in a single directory
+        return new File(new File(this.cacheDirectory, key.substring(0, 2)), key.substring(2));
+    }
+
+    /**
+     * Only deterministic outcomes are cached: plausible patches, and non-plausible patches
+     * that a test case failed on. Crashes, timeouts, and memory errors might not recur.
+     *
+     * @param outcome Validation outcome
+     * @param rejectedByTest <code>true</code> iff a test case failed on the patch
+     */
+    public static boolean isCacheable(final ValidationOutcome outcome, final boolean rejectedByTest) {
+        return outcome == ValidationOutcome.PLAUSIBLE
+                || outcome == ValidationOutcome.RUN_ERROR && rejectedByTest;
+    }
+
+    /**
+     * Returns the cached outcome of validating the patch, or <code>null</code> if no
+     * such outcome is cached.
+     */
+    public ValidationOutcome get(final Patch patch) {
+        try {
+            final File cacheFile = getCacheFile(patch);
+            if (!cacheFile.isFile()) {
+                return null;
+            }
+            final String content = FileUtils.readFileToString(cacheFile, StandardCharsets.UTF_8).trim();
+            return ValidationOutcome.valueOf(content);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public void put(final Patch patch, final ValidationOutcome outcome, final boolean rejectedByTest) {
+        if (!isCacheable(outcome, rejectedByTest)) {
+            return;
+        }
+        try {
+            final File cacheFile = getCacheFile(patch);
+            final File parent = cacheFile.getParentFile();
+            FileUtils.forceMkdir(parent);
+            // write-then-rename so that concurrent readers never see a partially written file
+            final File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", parent);
+            FileUtils.writeStringToFile(tempFile, outcome.name(), StandardCharsets.UTF_8);
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            System.out.println("WARNING: Unable to cache validation outcome (" + e.getMessage() + ")");
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PatchFingerprint;
+import edu.utdallas.prf.validator.process.ValidationOutcome;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups the patches having the same fingerprint, so that only one representative per
+ * group is validated. The outcome of validating the representative is then copied to
+ * the rest of the group.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class PatchDeduplicator {
+    private final List<Patch> representatives;
+
+    private final Map<Patch, List<Patch>> duplicates;
+
+    public PatchDeduplicator(final Collection<Patch> patches) {
+        this.representatives = new ArrayList<>();
+        this.duplicates = new HashMap<>();
+        final Map<PatchFingerprint, Patch> seen = new HashMap<>();
+        for (final Patch patch : patches) {
+            final PatchFingerprint fingerprint;
+            try {
+                fingerprint = PatchFingerprint.of(patch);
+            } catch (Exception e) {
+                // unreadable or malformed class files are left to the validator
+                this.representatives.add(patch);
+                continue;
+            }
+            final Patch representative = seen.get(fingerprint);
+            if (representative == null) {
+                seen.put(fingerprint, patch);
+                this.representatives.add(patch);
+            } else {
+                List<Patch> group = this.duplicates.get(representative);
+                if (group == null) {
+                    group = new LinkedList<>();
+                    this.duplicates.put(representative, group);
+                }
+                group.add(patch);
+            }
+        }
+        final int duplicatesCount = patches.size() - this.representatives.size();
+        System.out.println("INFO: " + duplicatesCount + " out of " + patches.size()
+                + " patches are duplicates and shall not be validated separately.");
+    }
+
+    public List<Patch> getRepresentatives() {
+        return this.representatives;
+    }
+
+    public void copyOutcomes(final Map<Patch, ValidationOutcome> validationStatusMap) {
+        for (final Map.Entry<Patch, List<Patch>> entry : this.duplicates.entrySet()) {
+            final ValidationOutcome outcome = validationStatusMap.get(entry.getKey());
+            if (outcome == null) {
+                continue;
+            }
+            for (final Patch duplicate : entry.getValue()) {
+                validationStatusMap.put(duplicate, outcome);
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Determines the order in which patches are handed to validator JVMs.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public enum PatchRanking {
+    SUSPICIOUSNESS, // patches touching more suspicious locations first
+    PLUGIN_ORDER,   // the order imposed by the patch prioritization plugin
+    EXPECTED_COST   // shortest expected job first, starting expensive patches early enough to avoid stragglers
+}
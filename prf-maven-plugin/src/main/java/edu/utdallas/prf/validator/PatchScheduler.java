@@ -0,0 +1,186 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PatchLocation;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A priority queue of patch batches shared among validator threads. Whenever a thread
+ * becomes free, it takes the highest-ranked batch that is not yet validated, so the
+ * most promising patches are validated first regardless of the order in which the
+ * patch generation plugin returned them.
+ * A batch is ranked as high as its highest-ranked patch.
+ *
+ * When batches are ranked by expected cost, the queue implements shortest expected job
+ * first, which maximizes the number of patches validated per unit of time, with a tail
+ * guard: as soon as the most expensive batch left is expected to take at least as long
+ * as the remaining work divided among the workers, that batch is handed out first, so
+ * that it does not end up running alone at the end while the other workers are idle.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class PatchScheduler {
+    private final TreeSet<RankedBatch> queue;
+
+    private final boolean tailGuard;
+
+    private long remainingCost;
+
+    private int parallelism;
+
+    private int busyWorkers;
+
+    /**
+     * @param batches The batches to be scheduled
+     * @param patches All the patches, in the order the patch generation/prioritization
+     *                plugin returned them
+     * @param ranking Ranking criterion
+     * @param costModel The model used to estimate the time needed to validate a batch
+     */
+    PatchScheduler(final List<List<Patch>> batches,
+                   final Collection<Patch> patches,
+                   final PatchRanking ranking,
+                   final ValidationCostModel costModel) {
+        this.queue = new TreeSet<>();
+        this.tailGuard = ranking == PatchRanking.EXPECTED_COST;
+        this.remainingCost = 0L;
+        this.parallelism = 1;
+        this.busyWorkers = 0;
+        final Map<Patch, Integer> positions = new HashMap<>();
+        for (final Patch patch : patches) {
+            positions.put(patch, positions.size());
+        }
+        int sequenceNumber = 0;
+        for (final List<Patch> batch : batches) {
+            final long cost = costModel.expectedCost(batch);
+            double rank = Double.POSITIVE_INFINITY;
+            if (ranking == PatchRanking.EXPECTED_COST) {
+                rank = cost;
+            } else {
+                for (final Patch patch : batch) {
+                    final Integer position = positions.get(patch);
+                    rank = Math.min(rank, rank(ranking, patch, position == null ? Integer.MAX_VALUE : position));
+                }
+            }
+            this.queue.add(new RankedBatch(batch, rank, cost, sequenceNumber++));
+            this.remainingCost += cost;
+        }
+    }
+
+    // lower rank means higher priority
+    private static double rank(final PatchRanking ranking,
+                               final Patch patch,
+                               final int position) {
+        if (ranking == PatchRanking.SUSPICIOUSNESS) {
+            double suspVal = 0.D;
+            for (final PatchLocation location : patch.getLocations()) {
+                suspVal = Math.max(suspVal, location.getSuspVal());
+            }
+            return -suspVal;
+        }
+        return position; // PLUGIN_ORDER
+    }
+
+    /**
+     * @param parallelism Number of worker threads taking batches from this queue
+     */
+    synchronized void setParallelism(final int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    /**
+     * @return The highest-ranked batch, or <code>null</code> if all the batches are
+     * already taken
+     */
+    synchronized List<Patch> poll() {
+        if (this.queue.isEmpty()) {
+            return null;
+        }
+        RankedBatch next = this.queue.first();
+        if (this.tailGuard) {
+            final RankedBatch longest = this.queue.last();
+            if (longest.cost * this.parallelism >= this.remainingCost) {
+                next = longest;
+            }
+        }
+        this.queue.remove(next);
+        this.remainingCost -= next.cost;
+        this.busyWorkers++;
+        return next.batch;
+    }
+
+    /**
+     * Once all the batches are handed out, workers become idle one after the other. A
+     * busy worker may recruit idle workers, e.g., for sharding the test cases of the
+     * patch it is validating.
+     *
+     * @param max Maximum number of additional workers needed
+     * @return Number of idle workers reserved; 0 if there are still batches to hand out
+     */
+    synchronized int reserveIdleWorkers(final int max) {
+        if (!this.queue.isEmpty()) {
+            return 0;
+        }
+        final int reserved = Math.max(0, Math.min(max, this.parallelism - this.busyWorkers));
+        this.busyWorkers += reserved;
+        return reserved;
+    }
+
+    /**
+     * @param workers Number of workers that are done with their batch
+     */
+    synchronized void finished(final int workers) {
+        this.busyWorkers -= workers;
+    }
+
+    private static class RankedBatch implements Comparable<RankedBatch> {
+        final List<Patch> batch;
+
+        final double rank;
+
+        final long cost;
+
+        final int sequenceNumber; // to break ties in favor of the original order
+
+        RankedBatch(final List<Patch> batch, final double rank, final long cost, final int sequenceNumber) {
+            this.batch = batch;
+            this.rank = rank;
+            this.cost = cost;
+            this.sequenceNumber = sequenceNumber;
+        }
+
+        @Override
+        public int compareTo(RankedBatch that) {
+            final int c = Double.compare(this.rank, that.rank);
+            if (c != 0) {
+                return c;
+            }
+            return Integer.compare(this.sequenceNumber, that.sequenceNumber);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PatchLocation;
+import edu.utdallas.prf.validator.process.ValidationOutcome;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps track of validation outcomes so as to determine when patch validation shall be
+ * stopped early, according to the stop policies specified in {@link ValidatorOptions}.
+ * All the methods of this class are thread-safe.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class StopCondition {
+    private final int maxPlausiblePatches;
+
+    private final boolean firstPlausiblePerLocation;
+
+    private final long timeBudget;
+
+    private final AtomicInteger plausiblePatchesCount;
+
+    private final Set<PatchLocation> fixedLocations;
+
+    private volatile long deadline;
+
+    private volatile boolean met;
+
+    public StopCondition(final ValidatorOptions options) {
+        this.maxPlausiblePatches = options.getMaxPlausiblePatches();
+        this.firstPlausiblePerLocation = options.isFirstPlausiblePerLocation();
+        this.timeBudget = options.getTimeBudget();
+        this.plausiblePatchesCount = new AtomicInteger(0);
+        this.fixedLocations = Collections.newSetFromMap(new ConcurrentHashMap<PatchLocation, Boolean>());
+        this.deadline = Long.MAX_VALUE;
+        this.met = false;
+    }
+
+    /**
+     * Starts the clock for the wall-clock time budget, if any.
+     */
+    public void start() {
+        if (this.timeBudget > 0L) {
+            this.deadline = System.currentTimeMillis() + this.timeBudget;
+        }
+    }
+
+    /**
+     * @return Number of milliseconds left until the time budget is exhausted, or
+     * <code>Long.MAX_VALUE</code> if there is no time budget
+     */
+    public long getRemainingTime() {
+        final long deadline = this.deadline;
+        if (deadline == Long.MAX_VALUE) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0L, deadline - System.currentTimeMillis());
+    }
+
+    public boolean isMet() {
+        if (!this.met && getRemainingTime() == 0L) {
+            this.met = true;
+        }
+        return this.met;
+    }
+
+    /**
+     * Forces the stop condition, e.g., when the time budget is exhausted while all the
+     * worker threads are busy.
+     */
+    public void meet() {
+        this.met = true;
+    }
+
+    /**
+     * @param patch A patch yet to be validated
+     * @return <code>true</code> iff all the locations touched by the patch already have
+     * a plausible patch and we are interested only in the first plausible patch per
+     * location
+     */
+    public boolean isRedundant(final Patch patch) {
+        if (!this.firstPlausiblePerLocation) {
+            return false;
+        }
+        return this.fixedLocations.containsAll(patch.getLocations());
+    }
+
+    /**
+     * Records the outcome of validating a patch.
+     *
+     * @return <code>true</code> iff this outcome makes the stop condition met
+     */
+    public boolean record(final Patch patch, final ValidationOutcome outcome) {
+        if (outcome != ValidationOutcome.PLAUSIBLE) {
+            return false;
+        }
+        if (this.firstPlausiblePerLocation) {
+            this.fixedLocations.addAll(patch.getLocations());
+        }
+        if (this.maxPlausiblePatches > 0
+                && this.plausiblePatchesCount.incrementAndGet() >= this.maxPlausiblePatches
+                && !this.met) {
+            this.met = true;
+            return true;
+        }
+        return false;
+    }
+}
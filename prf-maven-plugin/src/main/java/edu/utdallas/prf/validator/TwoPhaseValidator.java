@@ -0,0 +1,273 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PraPRTestComparator;
+import edu.utdallas.prf.validator.process.ValidationOutcome;
+import org.pitest.classinfo.ClassByteArraySource;
+import org.pitest.functional.predicate.Predicate;
+import org.pitest.process.ProcessArgs;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A patch validator that first screens the patches against small subsets of the test
+ * suite, and then validates only the survivors against the entire test suite.
+ * Screening is done in up to two tiers: first against the originally failing test
+ * cases, and then against a minimized set of passing test cases covering the code
+ * altered by each patch. Since the vast majority of the patches are rejected during
+ * screening, each tier validates many patches back-to-back in validator JVMs that only
+ * load the test classes containing the test cases of that tier. Passing the screening
+ * does not make a patch plausible; only the full validation does.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class TwoPhaseValidator implements PatchValidator {
+    private final ProcessArgs defaultProcessArgs;
+
+    private final Predicate<String> appClassFilter;
+
+    private final Collection<String> testClassNames;
+
+    private final PraPRTestComparator testComparator;
+
+    private final long timeoutConstant;
+
+    private final double timeoutPercent;
+
+    private final ValidatorOptions options;
+
+    private final ClassByteArraySource byteArraySource;
+
+    private final Collection<Patch> patches;
+
+    private final Map<Patch, List<String>> minimizedSuites; // empty means no regression pre-screening
+
+    private final Map<Patch, ValidationOutcome> validationStatusMap;
+
+    private final List<String> statistics;
+
+    private long timeElapsed;
+
+    private int parallelism;
+
+    public TwoPhaseValidator(final ProcessArgs defaultProcessArgs,
+                             final Predicate<String> appClassFilter,
+                             final Collection<String> testClassNames,
+                             final PraPRTestComparator testComparator,
+                             final long timeoutConstant,
+                             final double timeoutPercent,
+                             final ValidatorOptions options,
+                             final ClassByteArraySource byteArraySource,
+                             final Collection<Patch> patches,
+                             final Map<Patch, List<String>> minimizedSuites,
+                             final Map<Patch, ValidationOutcome> validationStatusMap) {
+        this.defaultProcessArgs = defaultProcessArgs;
+        this.appClassFilter = appClassFilter;
+        this.testClassNames = testClassNames;
+        this.testComparator = testComparator;
+        this.timeoutConstant = timeoutConstant;
+        this.timeoutPercent = timeoutPercent;
+        this.options = options;
+        this.byteArraySource = byteArraySource;
+        this.patches = patches;
+        this.minimizedSuites = minimizedSuites;
+        this.validationStatusMap = validationStatusMap;
+        this.statistics = new ArrayList<>();
+    }
+
+    @Override
+    public void run(final int parallelism) {
+        final long start = System.currentTimeMillis();
+        Collection<Patch> survivors = this.patches;
+        if (this.options.isTwoPhaseValidationEnabled()) {
+            final Set<String> failingTests = this.testComparator.getFailingTests();
+            if (failingTests.isEmpty()) {
+                System.out.println("INFO: No failing test cases; skipping failing-test screening.");
+            } else {
+                survivors = screen("Phase 1 (failing tests)", survivors, failingTestsScreening(survivors, failingTests), parallelism, start);
+            }
+        }
+        if (!this.minimizedSuites.isEmpty() && survivors != null) {
+            survivors = screen("Phase 1 (minimized regression suite)", survivors, minimizedSuiteScreening(survivors), parallelism, start);
+        }
+        if (survivors != null) {
+            final long remainingTime = remainingTime(start);
+            if (remainingTime < 0L) {
+                System.out.println("INFO: Validation time budget exhausted; skipping full regression validation.");
+            } else {
+                final PatchValidator validator = new WorkStealingValidator(this.defaultProcessArgs,
+                        this.appClassFilter,
+                        this.testClassNames,
+                        this.testComparator,
+                        this.timeoutConstant,
+                        this.timeoutPercent,
+                        this.options.withTimeBudget(remainingTime),
+                        this.byteArraySource,
+                        survivors,
+                        this.validationStatusMap);
+                validator.run(parallelism);
+                this.parallelism = Math.max(this.parallelism, validator.getDegreeOfParallelism());
+                int eliminated = 0;
+                for (final Patch patch : survivors) {
+                    final ValidationOutcome outcome = this.validationStatusMap.get(patch);
+                    if (outcome != null && outcome != ValidationOutcome.PLAUSIBLE) {
+                        eliminated++;
+                    }
+                }
+                addStatistics("Phase 2 (all tests)", survivors.size(), eliminated, validator.getTimeElapsed());
+            }
+        }
+        this.timeElapsed = System.currentTimeMillis() - start;
+        System.out.println("INFO: Two-phase validation statistics:");
+        for (final String line : this.statistics) {
+            System.out.println("\t" + line);
+        }
+    }
+
+    /**
+     * Validates the screening copies of some of the candidate patches; candidates having
+     * no screening copy pass through.
+     *
+     * @return The candidates that survived the screening, or <code>null</code> if the
+     * time budget is exhausted
+     */
+    private Collection<Patch> screen(final String phaseName,
+                                     final Collection<Patch> candidates,
+                                     final List<Patch> screeningPatches,
+                                     final int parallelism,
+                                     final long start) {
+        final long remainingTime = remainingTime(start);
+        if (remainingTime < 0L) {
+            System.out.println("INFO: Validation time budget exhausted; skipping " + phaseName + ".");
+            return null;
+        }
+        if (screeningPatches.isEmpty()) {
+            return candidates;
+        }
+        final Set<String> screeningTestClassNames = new HashSet<>();
+        for (final Patch patch : screeningPatches) {
+            screeningTestClassNames.addAll(testClassNamesOf(patch.getCoveringTests()));
+        }
+        final Map<Patch, ValidationOutcome> screeningStatusMap = new ConcurrentHashMap<>();
+        final PatchValidator validator = new WorkStealingValidator(this.defaultProcessArgs,
+                this.appClassFilter,
+                screeningTestClassNames,
+                this.testComparator,
+                this.timeoutConstant,
+                this.timeoutPercent,
+                this.options.forScreening().withTimeBudget(remainingTime),
+                this.byteArraySource,
+                screeningPatches,
+                screeningStatusMap);
+        validator.run(parallelism);
+        this.parallelism = Math.max(this.parallelism, validator.getDegreeOfParallelism());
+        // screening copies are equal to the original patches
+        final Set<Patch> screened = new HashSet<>(screeningPatches);
+        final List<Patch> survivors = new ArrayList<>();
+        int eliminated = 0;
+        for (final Patch patch : candidates) {
+            final ValidationOutcome outcome = screeningStatusMap.get(patch);
+            if (!screened.contains(patch) || outcome == ValidationOutcome.PLAUSIBLE || outcome == ValidationOutcome.UNKNOWN) {
+                survivors.add(patch); // inconclusive screenings are left to the next phase
+            } else if (outcome != null) {
+                this.validationStatusMap.put(patch, outcome);
+                eliminated++;
+            } // else the patch was never screened due to the time budget
+        }
+        addStatistics(phaseName, screeningPatches.size(), eliminated, validator.getTimeElapsed());
+        return survivors;
+    }
+
+    // in case of test selection, failing test cases not covering a patch are not run against it in any phase
+    private static List<Patch> failingTestsScreening(final Collection<Patch> patches, final Set<String> failingTests) {
+        final List<Patch> screeningPatches = new ArrayList<>(patches.size());
+        for (final Patch patch : patches) {
+            final Collection<String> coveringTests = patch.getCoveringTests();
+            final Set<String> screeningTests = new HashSet<>(failingTests);
+            if (coveringTests != null) {
+                screeningTests.retainAll(coveringTests);
+            }
+            screeningPatches.add(patch.withCoveringTests(screeningTests));
+        }
+        return screeningPatches;
+    }
+
+    private List<Patch> minimizedSuiteScreening(final Collection<Patch> patches) {
+        final List<Patch> screeningPatches = new ArrayList<>();
+        for (final Patch patch : patches) {
+            final List<String> minimizedSuite = this.minimizedSuites.get(patch);
+            if (minimizedSuite != null) {
+                screeningPatches.add(patch.withCoveringTests(minimizedSuite));
+            }
+        }
+        return screeningPatches;
+    }
+
+    // test names are of the form "test.class.Name.testMethod"; a name with no method
+    // part is taken to be the name of the test class itself
+    private static Set<String> testClassNamesOf(final Collection<String> testNames) {
+        final Set<String> testClassNames = new HashSet<>();
+        for (final String testName : testNames) {
+            final int lastDotIndex = testName.lastIndexOf('.');
+            testClassNames.add(lastDotIndex < 0 ? testName : testName.substring(0, lastDotIndex));
+        }
+        return testClassNames;
+    }
+
+    // 0 means no limit, while negative values mean the budget is exhausted
+    private long remainingTime(final long start) {
+        final long timeBudget = this.options.getTimeBudget();
+        if (timeBudget == 0L) {
+            return 0L;
+        }
+        final long remainingTime = timeBudget - (System.currentTimeMillis() - start);
+        return remainingTime > 0L ? remainingTime : -1L;
+    }
+
+    private void addStatistics(final String phaseName,
+                               final int validated,
+                               final int eliminated,
+                               final long timeElapsed) {
+        this.statistics.add(String.format("%s: %d patches validated, %d eliminated, %d ms",
+                phaseName,
+                validated,
+                eliminated,
+                timeElapsed));
+    }
+
+    @Override
+    public long getTimeElapsed() {
+        return this.timeElapsed;
+    }
+
+    @Override
+    public int getDegreeOfParallelism() {
+        return this.parallelism;
+    }
+}
@@ -0,0 +1,88 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.commons.misc.PropertyUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Estimates how long validating a patch takes based on the running time of the test
+ * cases measured during profiling. The expected cost of a patch is a constant overhead,
+ * accounting for transferring the patch and loading patched classes, plus the total
+ * running time of the test cases that are going to be run against the patch.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class ValidationCostModel {
+    private static final long PATCH_OVERHEAD;
+
+    static {
+        PATCH_OVERHEAD = PropertyUtils.getIntProperty("prf.def.patch.overhead", 100);
+    }
+
+    private final Map<String, Long> testsTiming;
+
+    private final long allTestsTime;
+
+    private final long meanTestTime;
+
+    public ValidationCostModel(final Map<String, Long> testsTiming) {
+        this.testsTiming = testsTiming;
+        long allTestsTime = 0L;
+        for (final Long timing : testsTiming.values()) {
+            allTestsTime += timing;
+        }
+        this.allTestsTime = allTestsTime;
+        this.meanTestTime = testsTiming.isEmpty() ? 0L : allTestsTime / testsTiming.size();
+    }
+
+    /**
+     * @return Expected time, in milliseconds, to validate the patch
+     */
+    public long expectedCost(final Patch patch) {
+        final Collection<String> coveringTests = patch.getCoveringTests();
+        if (coveringTests == null) {
+            return PATCH_OVERHEAD + this.allTestsTime;
+        }
+        long cost = PATCH_OVERHEAD;
+        for (final String testName : coveringTests) {
+            final Long timing = this.testsTiming.get(testName);
+            cost += timing == null ? this.meanTestTime : timing;
+        }
+        return cost;
+    }
+
+    /**
+     * @return Expected time, in milliseconds, to validate all the patches in the batch,
+     * one after another, in a single validator JVM
+     */
+    public long expectedCost(final List<Patch> batch) {
+        long cost = 0L;
+        for (final Patch patch : batch) {
+            cost += expectedCost(patch);
+        }
+        return cost;
+    }
+}
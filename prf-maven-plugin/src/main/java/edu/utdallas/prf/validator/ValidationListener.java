@@ -0,0 +1,54 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+
+/**
+ * Receives the events streamed by validator processes as they run test cases against
+ * patches, e.g., for monitoring the progress of long validations or for accounting the
+ * cost of test cases. Events for a patch arrive in the order they happen, but events
+ * for different patches are delivered concurrently, so implementations shall be
+ * thread-safe and shall return promptly.
+ *
+ * The patch passed to the listener is the one sent to the validator process, which, in
+ * case of test selection, sharding, or screening, might be a copy of the original patch
+ * with a different set of covering tests; copies are equal to the original patch.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public interface ValidationListener {
+    void testStarted(Patch patch, String testName);
+
+    /**
+     * @param patch The patch under validation
+     * @param testName The test case that passed
+     * @param timeElapsed Running time of the test case in milliseconds
+     */
+    void testPassed(Patch patch, String testName, long timeElapsed);
+
+    /**
+     * @param patch The patch under validation
+     * @param testName The test case that failed
+     * @param timeElapsed Running time of the test case in milliseconds
+     */
+    void testFailed(Patch patch, String testName, long timeElapsed);
+}
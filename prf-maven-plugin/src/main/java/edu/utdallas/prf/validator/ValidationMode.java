@@ -0,0 +1,30 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public enum ValidationMode {
+    CLASS_LOADER, // each patch is loaded by a fresh class loader
+    HOT_SWAP, // patched classes are redefined in-place; falls back to CLASS_LOADER if class shape changes
+    SCHEMATA // patches altering the same method are merged into a single class and validated in a batch
+}
@@ -0,0 +1,184 @@
+package edu.utdallas.prf.validator;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import org.apache.commons.lang3.Validate;
+import org.pitest.functional.predicate.Predicate;
+
+import java.io.File;
+import java.io.Serializable;
+
+/**
+ * Options fine-tuning the patch validation phase.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class ValidatorOptions {
+    private final int patchesPerValidator;
+
+    private final ValidationMode validationMode;
+
+    private final boolean testSelection;
+
+    private final File outcomeCacheDirectory; // null means no caching
+
+    private final int maxPlausiblePatches; // 0 means no limit
+
+    private final boolean firstPlausiblePerLocation;
+
+    private final long timeBudget; // in milliseconds; 0 means no limit
+
+    private final PatchRanking patchRanking;
+
+    private final int testThreads; // 1 means running test cases sequentially
+
+    private final Predicate<String> sequentialTestClassFilter;
+
+    private final int maxShards; // 1 means no sharding
+
+    private final boolean twoPhaseValidation;
+
+    private final boolean regressionPrescreen;
+
+    private final ValidationListener validationListener; // null means no listener
+
+    public ValidatorOptions(final int patchesPerValidator,
+                            final ValidationMode validationMode,
+                            final boolean testSelection,
+                            final File outcomeCacheDirectory,
+                            final int maxPlausiblePatches,
+                            final boolean firstPlausiblePerLocation,
+                            final long timeBudget,
+                            final PatchRanking patchRanking,
+                            final int testThreads,
+                            final Predicate<String> sequentialTestClassFilter,
+                            final int maxShards,
+                            final boolean twoPhaseValidation,
+                            final boolean regressionPrescreen) {
+        this(patchesPerValidator, validationMode, testSelection, outcomeCacheDirectory, maxPlausiblePatches, firstPlausiblePerLocation, timeBudget, patchRanking, testThreads, sequentialTestClassFilter, maxShards, twoPhaseValidation, regressionPrescreen, null);
+    }
+
+    private ValidatorOptions(final int patchesPerValidator,
+                             final ValidationMode validationMode,
+                             final boolean testSelection,
+                             final File outcomeCacheDirectory,
+                             final int maxPlausiblePatches,
+                             final boolean firstPlausiblePerLocation,
+                             final long timeBudget,
+                             final PatchRanking patchRanking,
+                             final int testThreads,
+                             final Predicate<String> sequentialTestClassFilter,
+                             final int maxShards,
+                             final boolean twoPhaseValidation,
+                             final boolean regressionPrescreen,
+                             final ValidationListener validationListener) {
+        Validate.notNull(validationMode);
+        Validate.notNull(patchRanking);
+        Validate.isInstanceOf(Serializable.class, sequentialTestClassFilter);
+        this.patchesPerValidator = patchesPerValidator;
+        this.validationMode = validationMode;
+        this.testSelection = testSelection;
+        this.outcomeCacheDirectory = outcomeCacheDirectory;
+        this.maxPlausiblePatches = maxPlausiblePatches;
+        this.firstPlausiblePerLocation = firstPlausiblePerLocation;
+        this.timeBudget = timeBudget;
+        this.patchRanking = patchRanking;
+        this.testThreads = testThreads;
+        this.sequentialTestClassFilter = sequentialTestClassFilter;
+        this.maxShards = maxShards;
+        this.twoPhaseValidation = twoPhaseValidation;
+        this.regressionPrescreen = regressionPrescreen;
+        this.validationListener = validationListener;
+    }
+
+    /**
+     * @return Options for screening patches against subsets of the test suite;
+     * stop policies other than the time budget, as well as sharding and outcome caching,
+     * are disabled, as surviving the screening does not make a patch plausible.
+     */
+    public ValidatorOptions forScreening() {
+        return new ValidatorOptions(this.patchesPerValidator, this.validationMode, this.testSelection, null, 0, false, this.timeBudget, this.patchRanking, this.testThreads, this.sequentialTestClassFilter, 1, false, false, this.validationListener);
+    }
+
+    public ValidatorOptions withValidationListener(final ValidationListener validationListener) {
+        return new ValidatorOptions(this.patchesPerValidator, this.validationMode, this.testSelection, this.outcomeCacheDirectory, this.maxPlausiblePatches, this.firstPlausiblePerLocation, this.timeBudget, this.patchRanking, this.testThreads, this.sequentialTestClassFilter, this.maxShards, this.twoPhaseValidation, this.regressionPrescreen, validationListener);
+    }
+
+    public ValidatorOptions withTimeBudget(final long timeBudget) {
+        return new ValidatorOptions(this.patchesPerValidator, this.validationMode, this.testSelection, this.outcomeCacheDirectory, this.maxPlausiblePatches, this.firstPlausiblePerLocation, timeBudget, this.patchRanking, this.testThreads, this.sequentialTestClassFilter, this.maxShards, this.twoPhaseValidation, this.regressionPrescreen, this.validationListener);
+    }
+
+    public int getPatchesPerValidator() {
+        return this.patchesPerValidator;
+    }
+
+    public ValidationMode getValidationMode() {
+        return this.validationMode;
+    }
+
+    public boolean isTestSelectionEnabled() {
+        return this.testSelection;
+    }
+
+    public File getOutcomeCacheDirectory() {
+        return this.outcomeCacheDirectory;
+    }
+
+    public int getMaxPlausiblePatches() {
+        return this.maxPlausiblePatches;
+    }
+
+    public boolean isFirstPlausiblePerLocation() {
+        return this.firstPlausiblePerLocation;
+    }
+
+    public long getTimeBudget() {
+        return this.timeBudget;
+    }
+
+    public PatchRanking getPatchRanking() {
+        return this.patchRanking;
+    }
+
+    public int getTestThreads() {
+        return this.testThreads;
+    }
+
+    public Predicate<String> getSequentialTestClassFilter() {
+        return this.sequentialTestClassFilter;
+    }
+
+    public int getMaxShards() {
+        return this.maxShards;
+    }
+
+    public boolean isTwoPhaseValidationEnabled() {
+        return this.twoPhaseValidation;
+    }
+
+    public boolean isRegressionPrescreenEnabled() {
+        return this.regressionPrescreen;
+    }
+
+    public ValidationListener getValidationListener() {
+        return this.validationListener;
+    }
+}
@@ -23,16 +23,24 @@ package edu.utdallas.prf.validator;
 import edu.utdallas.prf.Patch;
 import edu.utdallas.prf.PraPRTestComparator;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import edu.utdallas.prf.validator.process.ValidationOutcome;
-import edu.utdallas.prf.validator.process.Validator;
+import edu.utdallas.prf.validator.process.ValidatorPool;
+import edu.utdallas.prf.validator.schemata.PatchGrouper;
 import org.apache.commons.lang3.Validate;
+import org.pitest.classinfo.ClassByteArraySource;
 import org.pitest.functional.predicate.Predicate;
 import org.pitest.process.ProcessArgs;
 
@@ -40,19 +48,15 @@ import org.pitest.process.ProcessArgs;
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 public class WorkStealingValidator extends RecursiveAction implements PatchValidator {
-    private final ProcessArgs defaultProcessArgs;
+    private final ValidatorPool validatorPool;
 
-    private final Predicate<String> appClassFilter;
+    private final OutcomeCache outcomeCache;
 
-    private final Collection<String> testClassNames;
+    private final StopCondition stopCondition;
 
-    private final PraPRTestComparator testComparator;
+    private final int maxShards;
 
-    private final long timeoutConstant;
-
-    private final double timeoutPercent;
-
-    private final List<Patch> patches;
+    private final PatchScheduler scheduler;
 
     private final int low;
 
@@ -64,24 +68,20 @@ public class WorkStealingValidator extends RecursiveAction implements PatchValid
 
     private final Map<Patch, ValidationOutcome> validationStatusMap;
 
-    private WorkStealingValidator(final ProcessArgs defaultProcessArgs,
-                                  final Predicate<String> appClassFilter,
-                                  final Collection<String> testClassNames,
-                                  final PraPRTestComparator testComparator,
-                                  final long timeoutConstant,
-                                  final double timeoutPercent,
-                                  final List<Patch> patches,
+    private WorkStealingValidator(final ValidatorPool validatorPool,
+                                  final OutcomeCache outcomeCache,
+                                  final StopCondition stopCondition,
+                                  final int maxShards,
+                                  final PatchScheduler scheduler,
                                   final int low,
                                   final int high,
                                   final Map<Patch, ValidationOutcome> validationStatusMap) {
-        Validate.isTrue(low <= high);
-        this.defaultProcessArgs = defaultProcessArgs;
-        this.appClassFilter = appClassFilter;
-        this.testClassNames = testClassNames;
-        this.testComparator = testComparator;
-        this.timeoutConstant = timeoutConstant;
-        this.timeoutPercent = timeoutPercent;
-        this.patches = patches;
+        Validate.isTrue(low <= high + 1); // low == high + 1 iff there is nothing to validate
+        this.validatorPool = validatorPool;
+        this.outcomeCache = outcomeCache;
+        this.stopCondition = stopCondition;
+        this.maxShards = maxShards;
+        this.scheduler = scheduler;
         this.low = low;
         this.high = high;
         this.validationStatusMap = validationStatusMap;
@@ -93,28 +93,158 @@ public class WorkStealingValidator extends RecursiveAction implements PatchValid
                                  final PraPRTestComparator testComparator,
                                  final long timeoutConstant,
                                  final double timeoutPercent,
+                                 final ValidatorOptions options,
+                                 final ClassByteArraySource byteArraySource,
                                  final Collection<Patch> patches,
                                  final Map<Patch, ValidationOutcome> validationStatusMap) {
-        this(defaultProcessArgs, appClassFilter, testClassNames, testComparator, timeoutConstant, timeoutPercent, new ArrayList<>(patches), 0, patches.size() - 1, validationStatusMap);
+        this(new ValidatorPool(defaultProcessArgs, appClassFilter, testClassNames, testComparator, timeoutConstant, timeoutPercent, options),
+                createOutcomeCache(options, defaultProcessArgs, testClassNames),
+                new StopCondition(options),
+                options,
+                testComparator.getTestsTiming(),
+                byteArraySource,
+                patches,
+                validationStatusMap);
+    }
+
+    private WorkStealingValidator(final ValidatorPool validatorPool,
+                                  final OutcomeCache outcomeCache,
+                                  final StopCondition stopCondition,
+                                  final ValidatorOptions options,
+                                  final Map<String, Long> testsTiming,
+                                  final ClassByteArraySource byteArraySource,
+                                  final Collection<Patch> patches,
+                                  final Map<Patch, ValidationOutcome> validationStatusMap) {
+        this(validatorPool,
+                outcomeCache,
+                stopCondition,
+                options,
+                testsTiming,
+                createBatches(options, byteArraySource, lookUpCachedOutcomes(outcomeCache, patches, validationStatusMap)),
+                patches,
+                validationStatusMap);
+    }
+
+    private WorkStealingValidator(final ValidatorPool validatorPool,
+                                  final OutcomeCache outcomeCache,
+                                  final StopCondition stopCondition,
+                                  final ValidatorOptions options,
+                                  final Map<String, Long> testsTiming,
+                                  final List<List<Patch>> batches,
+                                  final Collection<Patch> patches,
+                                  final Map<Patch, ValidationOutcome> validationStatusMap) {
+        this(validatorPool,
+                outcomeCache,
+                stopCondition,
+                options.getMaxShards(),
+                new PatchScheduler(batches, patches, options.getPatchRanking(), new ValidationCostModel(testsTiming)),
+                0,
+                batches.size() - 1,
+                validationStatusMap);
     }
 
-    private void validate(final Patch patch) {
-        final ValidationOutcome outcome = Validator.runValidator(this.defaultProcessArgs,
-                this.appClassFilter,
-                this.testClassNames,
-                this.testComparator,
-                this.timeoutConstant,
-                this.timeoutPercent,
-                patch);
-        this.validationStatusMap.put(patch, outcome);
+    private static OutcomeCache createOutcomeCache(final ValidatorOptions options,
+                                                   final ProcessArgs defaultProcessArgs,
+                                                   final Collection<String> testClassNames) {
+        final File cacheDirectory = options.getOutcomeCacheDirectory();
+        if (cacheDirectory == null) {
+            return null;
+        }
+        return new OutcomeCache(cacheDirectory, defaultProcessArgs.getLaunchClassPath(), testClassNames);
+    }
+
+    // patches whose outcomes are found in the cache are not validated again
+    private static Collection<Patch> lookUpCachedOutcomes(final OutcomeCache outcomeCache,
+                                                          final Collection<Patch> patches,
+                                                          final Map<Patch, ValidationOutcome> validationStatusMap) {
+        if (outcomeCache == null) {
+            return patches;
+        }
+        final List<Patch> uncachedPatches = new ArrayList<>();
+        for (final Patch patch : patches) {
+            final ValidationOutcome outcome = outcomeCache.get(patch);
+            if (outcome == null) {
+                uncachedPatches.add(patch);
+            } else {
+                validationStatusMap.put(patch, outcome);
+            }
+        }
+        System.out.println("INFO: Validation outcomes of " + (patches.size() - uncachedPatches.size())
+                + " out of " + patches.size() + " patches are reused from the cache.");
+        return uncachedPatches;
+    }
+
+    private static List<List<Patch>> createBatches(final ValidatorOptions options,
+                                                   final ClassByteArraySource byteArraySource,
+                                                   final Collection<Patch> patches) {
+        if (options.getValidationMode() == ValidationMode.SCHEMATA) {
+            return PatchGrouper.group(patches, byteArraySource);
+        }
+        return PatchGrouper.singletons(patches);
+    }
+
+    private void validate(List<Patch> batch) {
+        batch = removeRedundantPatches(batch);
+        if (batch.isEmpty()) {
+            return;
+        }
+        final Map<Patch, ValidationOutcome> outcomes;
+        if (batch.size() == 1 && this.maxShards > 1) {
+            // toward the end of the run, idle workers help validating the last patches
+            final int extraShards = this.scheduler.reserveIdleWorkers(this.maxShards - 1);
+            try {
+                final Patch patch = batch.get(0);
+                outcomes = Collections.singletonMap(patch, this.validatorPool.validate(patch, 1 + extraShards));
+            } finally {
+                this.scheduler.finished(extraShards);
+            }
+        } else {
+            outcomes = this.validatorPool.validate(batch);
+        }
+        for (final Map.Entry<Patch, ValidationOutcome> entry : outcomes.entrySet()) {
+            final Patch patch = entry.getKey();
+            final ValidationOutcome outcome = entry.getValue();
+            if (outcome == ValidationOutcome.UNKNOWN && this.stopCondition.isMet()) {
+                continue; // abandoned due to early termination; reported as not validated
+            }
+            this.validationStatusMap.put(patch, outcome);
+            if (this.outcomeCache != null) {
+                this.outcomeCache.put(patch, outcome, this.validatorPool.isRejectedByTest(patch));
+            }
+            if (this.stopCondition.record(patch, outcome)) {
+                System.out.println("INFO: Enough plausible patches found; stopping patch validation.");
+                this.validatorPool.shutdownNow();
+            }
+        }
+    }
+
+    private List<Patch> removeRedundantPatches(final List<Patch> batch) {
+        final List<Patch> result = new ArrayList<>(batch.size());
+        for (final Patch patch : batch) {
+            if (!this.stopCondition.isRedundant(patch)) {
+                result.add(patch);
+            }
+        }
+        return result;
     }
 
     @Override
     protected void compute() {
+        if (this.stopCondition.isMet()) {
+            return; // queued tasks are cancelled
+        }
         final int low = this.low;
         final int high = this.high;
         if (low == high) {
-            validate(this.patches.get(low));
+            // each leaf task takes the highest-ranked batch available at the time it runs
+            final List<Patch> batch = this.scheduler.poll();
+            if (batch != null) {
+                try {
+                    validate(batch);
+                } finally {
+                    this.scheduler.finished(1);
+                }
+            }
         } else {
             final int mid = (low + high) / 2;
             invokeAll(duplicate(low, mid), duplicate(mid + 1, high));
@@ -122,7 +252,7 @@ public class WorkStealingValidator extends RecursiveAction implements PatchValid
     }
 
     private WorkStealingValidator duplicate(final int low, final int high) {
-        return new WorkStealingValidator(this.defaultProcessArgs, this.appClassFilter, this.testClassNames, this.testComparator, this.timeoutConstant, this.timeoutPercent, this.patches, low, high, this.validationStatusMap);
+        return new WorkStealingValidator(this.validatorPool, this.outcomeCache, this.stopCondition, this.maxShards, this.scheduler, low, high, this.validationStatusMap);
     }
 
     @Override
@@ -134,8 +264,29 @@ public class WorkStealingValidator extends RecursiveAction implements PatchValid
             pool = new ForkJoinPool(parallelism);
         }
         this.parallelism = pool.getParallelism();
+        this.scheduler.setParallelism(this.parallelism);
         final long start = System.currentTimeMillis();
-        pool.invoke(this);
+        this.stopCondition.start();
+        try {
+            if (this.low <= this.high) {
+                final ForkJoinTask<Void> task = pool.submit(this);
+                try {
+                    task.get(this.stopCondition.getRemainingTime(), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    System.out.println("INFO: Validation time budget exhausted; stopping patch validation.");
+                    this.stopCondition.meet();
+                    this.validatorPool.shutdownNow();
+                    task.get(); // in-flight validations return promptly
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            pool.shutdownNow();
+            this.validatorPool.close();
+        }
         this.timeElapsed = System.currentTimeMillis() - start;
     }
 
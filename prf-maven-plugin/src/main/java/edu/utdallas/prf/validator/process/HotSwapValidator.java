@@ -0,0 +1,155 @@
+package edu.utdallas.prf.validator.process;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PatchLocation;
+import edu.utdallas.prf.PraPRTestComparator;
+import edu.utdallas.prf.commons.asm.ClassDiff;
+import edu.utdallas.prf.commons.junit.runner.JUnitRunner;
+import edu.utdallas.prf.commons.junit.runner.TestExecutionStatus;
+import org.apache.commons.io.FileUtils;
+import org.pitest.boot.HotSwapAgent;
+import org.pitest.classinfo.ClassByteArraySource;
+import org.pitest.testapi.TestUnit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Validates patches in-place, PraPR-style: the original program is loaded once and,
+ * for each patch, the patched classes are redefined using {@link HotSwapAgent}, the
+ * tests are run, and then the original bytes are restored. This way, neither class
+ * loading nor JIT compilation is repeated from one patch to the next.
+ *
+ * JVM class redefinition does not allow adding/removing fields or methods, or changing
+ * the class hierarchy, and it never re-runs static initializers, so changing a static
+ * initializer, or the constant value of a field, cannot be tested in-place either.
+ * For such patches (as well as patches that introduce new classes)
+ * {@link HotSwapValidator#validate(Patch)} returns <code>null</code> so that the caller
+ * can fall back to class loader-based validation.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class HotSwapValidator {
+    private final ValidatorArguments arguments;
+
+    private final ClassByteArraySource byteArraySource;
+
+    private final ValidatorReporter eventReporter; // null if test events are not reported
+
+    private final ClassLoader loader;
+
+    private final List<TestUnit> testUnits;
+
+    HotSwapValidator(final ValidatorArguments arguments,
+                     final ClassByteArraySource byteArraySource,
+                     final ValidatorReporter eventReporter) {
+        this.arguments = arguments;
+        this.byteArraySource = byteArraySource;
+        this.eventReporter = eventReporter;
+        this.loader = new SelectiveClassLoader(byteArraySource, arguments.appClassFilter);
+        final JUnitRunner runner = new JUnitRunner(this.loader, arguments.testClassNames, arguments.testComparator, true);
+        this.testUnits = runner.getTestUnits();
+    }
+
+    /**
+     * Validates the patch by hot-swapping patched classes.
+     *
+     * @param patch The patch to be validated
+     * @param testComparator The comparator used to order test cases
+     * @return The validation report, or <code>null</code> in case the patch cannot be
+     * applied via class redefinition
+     */
+    ValidationReport validate(final Patch patch, final PraPRTestComparator testComparator) {
+        final Map<Class<?>, byte[]> originalBytes = new LinkedHashMap<>();
+        final Map<Class<?>, byte[]> patchedBytes = new LinkedHashMap<>();
+        for (final PatchLocation location : patch.getLocations()) {
+            final String className = location.getClassName();
+            final byte[] original = this.byteArraySource.getBytes(className).getOrElse(null);
+            if (original == null) {
+                System.out.println("INFO: Patch " + patch.getId() + " introduces class " + className);
+                return null;
+            }
+            final byte[] patched;
+            try {
+                patched = FileUtils.readFileToByteArray(location.getClassFile());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+            final ClassDiff diff = ClassDiff.diff(original, patched);
+            // the shape includes the constant values of fields
+            if (!diff.isShapePreserving()) {
+                System.out.println("INFO: Patch " + patch.getId() + " changes the shape of class " + className);
+                return null;
+            }
+            // redefining a class does not re-run its static initializer
+            if (diff.getChangedMethods().contains("<clinit>()V")) {
+                System.out.println("INFO: Patch " + patch.getId() + " changes the static initializer of class " + className);
+                return null;
+            }
+            final Class<?> clazz;
+            try {
+                clazz = Class.forName(className, false, this.loader);
+            } catch (ClassNotFoundException | LinkageError e) {
+                e.printStackTrace();
+                return null;
+            }
+            originalBytes.put(clazz, original);
+            patchedBytes.put(clazz, patched);
+        }
+        final Set<Class<?>> swapped = new HashSet<>();
+        try {
+            for (final Map.Entry<Class<?>, byte[]> entry : patchedBytes.entrySet()) {
+                if (!HotSwapAgent.hotSwap(entry.getKey(), entry.getValue())) {
+                    System.out.println("WARNING: Unable to hot-swap class " + entry.getKey().getName());
+                    return null;
+                }
+                swapped.add(entry.getKey());
+            }
+            // a fresh runner is needed, as result collectors are not reusable
+            final List<TestUnit> testUnits = new ArrayList<>(this.testUnits);
+            Collections.sort(testUnits, testComparator);
+            final JUnitRunner runner = new JUnitRunner(ReportingTestUnit.decorate(testUnits, this.eventReporter), true);
+            runner.setTestsCpuTiming(testComparator.getTestsCpuTiming());
+            final TestExecutionStatus status = runner.run(this.loader, patch.getCoveringTestsFilter(),
+                    testComparator.getTestsTiming(),
+                    this.arguments.timeoutConstant,
+                    this.arguments.timeoutPercent,
+                    this.arguments.testThreads,
+                    this.arguments.sequentialTestClassFilter);
+            return ValidationReport.of(status, runner);
+        } finally {
+            for (final Class<?> clazz : swapped) {
+                if (!HotSwapAgent.hotSwap(clazz, originalBytes.get(clazz))) {
+                    System.out.println("WARNING: Unable to restore class " + clazz.getName());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package edu.utdallas.prf.validator.process;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PatchId;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records which test case rejected each of the validated patches. It is shared among
+ * all the validator processes of a pool, so that the test cases that have rejected
+ * most patches so far (i.e., "killer" tests) are run right after the originally
+ * failing tests while validating the subsequent patches.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class KillMatrix {
+    private final Map<PatchId, String> killingTests;
+
+    private final HashMap<String, Integer> killCounts;
+
+    KillMatrix() {
+        this.killingTests = new HashMap<>();
+        this.killCounts = new HashMap<>();
+    }
+
+    synchronized void record(final Patch patch, final String killingTest) {
+        if (killingTest == null || this.killingTests.put(patch.getId(), killingTest) != null) {
+            return;
+        }
+        final Integer killCount = this.killCounts.get(killingTest);
+        this.killCounts.put(killingTest, killCount == null ? 1 : killCount + 1);
+    }
+
+    /**
+     * @return <code>true</code> iff a test case is recorded to have rejected the patch
+     */
+    synchronized boolean isKilled(final Patch patch) {
+        return this.killingTests.containsKey(patch.getId());
+    }
+
+    /**
+     * @return A snapshot of the number of patches rejected by each test case
+     */
+    synchronized HashMap<String, Integer> getKillCounts() {
+        return new HashMap<>(this.killCounts);
+    }
+}
@@ -0,0 +1,132 @@
+package edu.utdallas.prf.validator.process;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits the test cases to be run against a patch into shards of roughly the same
+ * running time, based on the running time of the test cases measured during profiling.
+ * The originally failing test cases are spread over the shards first, so that each
+ * shard starts with one of them. A test case with no recorded running time, e.g., an
+ * originally failing test case that crashed during profiling, weighs as much as an
+ * average test case.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+final class PatchSharder {
+    private PatchSharder() {
+
+    }
+
+    /**
+     * @param patch The patch to be sharded
+     * @param shards Number of desired shards
+     * @param testsTiming Running time of each test case, in milliseconds; the profiler
+     *                    times every test case it discovers, except the ones that crash
+     * @param failingTests Names of the originally failing test cases
+     * @return Copies of the patch, each of which covering a subset of the test cases;
+     * at most <code>shards</code> copies are returned
+     */
+    static List<Patch> shard(final Patch patch,
+                             final int shards,
+                             final Map<String, Long> testsTiming,
+                             final Set<String> failingTests) {
+        Collection<String> testNames = patch.getCoveringTests();
+        if (testNames == null) {
+            // a patch with no covering tests is run against all the discovered test cases,
+            // including the failing test cases that the profiler could not time
+            final Set<String> allTestNames = new HashSet<>(testsTiming.keySet());
+            allTestNames.addAll(failingTests);
+            testNames = allTestNames;
+        }
+        final int n = Math.min(shards, testNames.size());
+        if (n <= 1) {
+            return Collections.singletonList(patch);
+        }
+        final long defaultWeight = meanTiming(testsTiming);
+        final List<String> sortedTestNames = new ArrayList<>(testNames);
+        // failing tests first, then the longest test first (LPT rule)
+        Collections.sort(sortedTestNames, new Comparator<String>() {
+            @Override
+            public int compare(String t1, String t2) {
+                final boolean f1 = failingTests.contains(t1);
+                final boolean f2 = failingTests.contains(t2);
+                if (f1 ^ f2) {
+                    return f1 ? -1 : 1;
+                }
+                return Long.compare(timing(t2), timing(t1));
+            }
+
+            private long timing(final String testName) {
+                return weight(testName, testsTiming, defaultWeight);
+            }
+        });
+        final List<Set<String>> shardTests = new ArrayList<>(n);
+        final long[] loads = new long[n];
+        for (int i = 0; i < n; i++) {
+            shardTests.add(new HashSet<String>());
+        }
+        for (final String testName : sortedTestNames) {
+            int lightest = 0;
+            for (int i = 1; i < n; i++) {
+                if (loads[i] < loads[lightest]) {
+                    lightest = i;
+                }
+            }
+            shardTests.get(lightest).add(testName);
+            // a test case still counts, however short, so that they do not pile up on one shard
+            loads[lightest] += Math.max(1L, weight(testName, testsTiming, defaultWeight));
+        }
+        final List<Patch> result = new ArrayList<>(n);
+        for (final Set<String> tests : shardTests) {
+            result.add(patch.withCoveringTests(tests));
+        }
+        return result;
+    }
+
+    private static long weight(final String testName,
+                               final Map<String, Long> testsTiming,
+                               final long defaultWeight) {
+        final Long timing = testsTiming.get(testName);
+        return timing == null ? defaultWeight : timing;
+    }
+
+    private static long meanTiming(final Map<String, Long> testsTiming) {
+        if (testsTiming.isEmpty()) {
+            return 1L;
+        }
+        long sum = 0L;
+        for (final Long timing : testsTiming.values()) {
+            sum += timing;
+        }
+        return Math.max(1L, sum / testsTiming.size());
+    }
+}
@@ -0,0 +1,122 @@
+package edu.utdallas.prf.validator.process;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.commons.misc.MemberNameUtils;
+import org.pitest.testapi.Description;
+import org.pitest.testapi.ResultCollector;
+import org.pitest.testapi.TestUnit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A test unit that reports to the parent process when it starts, and whether it passed
+ * or failed, along with its running time, once it is done.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class ReportingTestUnit implements TestUnit {
+    private final TestUnit testUnit;
+
+    private final ValidatorReporter reporter;
+
+    private ReportingTestUnit(final TestUnit testUnit, final ValidatorReporter reporter) {
+        this.testUnit = testUnit;
+        this.reporter = reporter;
+    }
+
+    /**
+     * @param testUnits The test units to decorate
+     * @param reporter The reporter, or <code>null</code> if the parent process does not
+     *                 listen for test events
+     * @return The decorated test units
+     */
+    static List<TestUnit> decorate(final List<TestUnit> testUnits, final ValidatorReporter reporter) {
+        if (reporter == null) {
+            return testUnits;
+        }
+        final List<TestUnit> decorated = new ArrayList<>(testUnits.size());
+        for (final TestUnit testUnit : testUnits) {
+            decorated.add(new ReportingTestUnit(testUnit, reporter));
+        }
+        return decorated;
+    }
+
+    @Override
+    public void execute(final ResultCollector rc) {
+        final String testName = MemberNameUtils.sanitizeExtendedTestName(this.testUnit.getDescription().getName());
+        final FailureDetector detector = new FailureDetector(rc);
+        this.reporter.reportTestStarted(testName);
+        final long start = System.currentTimeMillis();
+        this.testUnit.execute(detector);
+        final long elapsed = System.currentTimeMillis() - start;
+        if (Thread.currentThread().isInterrupted()) {
+            return; // abandoned due to a timeout; the parent has moved on
+        }
+        if (detector.failed) {
+            this.reporter.reportTestFailed(testName, elapsed);
+        } else {
+            this.reporter.reportTestPassed(testName, elapsed);
+        }
+    }
+
+    @Override
+    public Description getDescription() {
+        return this.testUnit.getDescription();
+    }
+
+    private static class FailureDetector implements ResultCollector {
+        private final ResultCollector rc;
+
+        boolean failed;
+
+        FailureDetector(final ResultCollector rc) {
+            this.rc = rc;
+        }
+
+        @Override
+        public void notifyEnd(Description description, Throwable t) {
+            this.failed |= t != null;
+            this.rc.notifyEnd(description, t);
+        }
+
+        @Override
+        public void notifyEnd(Description description) {
+            this.rc.notifyEnd(description);
+        }
+
+        @Override
+        public void notifyStart(Description description) {
+            this.rc.notifyStart(description);
+        }
+
+        @Override
+        public void notifySkipped(Description description) {
+            this.rc.notifySkipped(description);
+        }
+
+        @Override
+        public boolean shouldExit() {
+            return this.rc.shouldExit();
+        }
+    }
+}
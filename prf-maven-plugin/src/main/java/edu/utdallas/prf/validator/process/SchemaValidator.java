@@ -0,0 +1,153 @@
+package edu.utdallas.prf.validator.process;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PatchLocation;
+import edu.utdallas.prf.PraPRTestComparator;
+import edu.utdallas.prf.commons.junit.runner.JUnitRunner;
+import edu.utdallas.prf.commons.junit.runner.TestExecutionStatus;
+import edu.utdallas.prf.validator.schemata.PatchSelector;
+import edu.utdallas.prf.validator.schemata.SchemaMerger;
+import org.apache.commons.io.FileUtils;
+import org.pitest.classinfo.ClassByteArraySource;
+import org.pitest.testapi.TestUnit;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Validates a batch of patches altering the same method using a single merged class.
+ * The merged class is loaded once, and the patches are validated one after the other by
+ * switching {@link PatchSelector} between test runs.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class SchemaValidator {
+    private final ValidatorArguments arguments;
+
+    private final ClassByteArraySource byteArraySource;
+
+    private final ValidatorReporter eventReporter; // null if test events are not reported
+
+    SchemaValidator(final ValidatorArguments arguments,
+                    final ClassByteArraySource byteArraySource,
+                    final ValidatorReporter eventReporter) {
+        this.arguments = arguments;
+        this.byteArraySource = byteArraySource;
+        this.eventReporter = eventReporter;
+    }
+
+    /**
+     * Validates the batch of patches.
+     *
+     * @param patches The patches to be validated
+     * @param testComparator The comparator used to order test cases
+     * @return Validation reports in the same order as the patches, or <code>null</code>
+     * if the patches cannot be merged. If a patch times out, validation of the batch is
+     * stopped and the remaining patches are deemed {@link ValidationOutcome#UNKNOWN}.
+     */
+    List<ValidationReport> validate(final List<Patch> patches, final PraPRTestComparator testComparator) {
+        final byte[] merged = merge(patches);
+        if (merged == null) {
+            return null;
+        }
+        final String className = patches.get(0).getLocations().iterator().next().getClassName();
+        final ClassLoader loader = new SelectiveClassLoader(this.byteArraySource,
+                this.arguments.appClassFilter,
+                Collections.singletonMap(className, merged));
+        final List<TestUnit> testUnits = ReportingTestUnit.decorate((new JUnitRunner(loader, this.arguments.testClassNames, testComparator, true)).getTestUnits(),
+                this.eventReporter);
+        final List<ValidationReport> reports = new ArrayList<>(patches.size());
+        try {
+            for (int variant = 0; variant < patches.size(); variant++) {
+                final Patch patch = patches.get(variant);
+                PatchSelector.select(variant);
+                final JUnitRunner runner = new JUnitRunner(testUnits, true);
+                runner.setTestsCpuTiming(testComparator.getTestsCpuTiming());
+                final TestExecutionStatus status = runner.run(loader, patch.getCoveringTestsFilter(),
+                        testComparator.getTestsTiming(),
+                        this.arguments.timeoutConstant,
+                        this.arguments.timeoutPercent,
+                        this.arguments.testThreads,
+                        this.arguments.sequentialTestClassFilter);
+                final ValidationReport report = ValidationReport.of(status, runner);
+                reports.add(report);
+                if (report.recycle) {
+                    break; // the thread running the timed out test is still running the merged class
+                }
+            }
+        } finally {
+            PatchSelector.select(PatchSelector.ORIGINAL);
+        }
+        while (reports.size() < patches.size()) {
+            reports.add(new ValidationReport(ValidationOutcome.UNKNOWN, null));
+        }
+        return reports;
+    }
+
+    private byte[] merge(final List<Patch> patches) {
+        String className = null;
+        String method = null;
+        byte[] original = null;
+        final List<byte[]> variants = new ArrayList<>(patches.size());
+        for (final Patch patch : patches) {
+            if (patch.getLocations().size() != 1) {
+                return null;
+            }
+            final PatchLocation location = patch.getLocations().iterator().next();
+            if (className == null) {
+                className = location.getClassName();
+                original = this.byteArraySource.getBytes(className).getOrElse(null);
+                if (original == null) {
+                    return null;
+                }
+            } else if (!className.equals(location.getClassName())) {
+                return null;
+            }
+            final byte[] patched;
+            try {
+                patched = FileUtils.readFileToByteArray(location.getClassFile());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return null;
+            }
+            final String changedMethod = SchemaMerger.getMergeableMethod(original, patched);
+            if (changedMethod == null) {
+                return null;
+            }
+            if (method == null) {
+                method = changedMethod;
+            } else if (!method.equals(changedMethod)) {
+                return null;
+            }
+            variants.add(patched);
+        }
+        try {
+            return SchemaMerger.merge(this.byteArraySource, original, method, variants);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+}
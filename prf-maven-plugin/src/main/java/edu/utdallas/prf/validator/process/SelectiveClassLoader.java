@@ -30,6 +30,7 @@ import org.pitest.functional.predicate.Predicate;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -43,6 +44,25 @@ public class SelectiveClassLoader extends ClassLoader {
 
     private final Map<String, Pair<File, byte[]>> patchedFileTable;
 
+    public SelectiveClassLoader(final ClassByteArraySource byteArraySource,
+                                final Predicate<String> appClassFilter) {
+        this.byteArraySource = byteArraySource;
+        this.appClassFilter = appClassFilter;
+        this.patchedFileTable = Collections.emptyMap();
+    }
+
+    public SelectiveClassLoader(final ClassByteArraySource byteArraySource,
+                                final Predicate<String> appClassFilter,
+                                final Map<String, byte[]> patchedClasses) {
+        this.byteArraySource = byteArraySource;
+        this.appClassFilter = appClassFilter;
+        this.patchedFileTable = new HashMap<>();
+        for (final Map.Entry<String, byte[]> entry : patchedClasses.entrySet()) {
+            final Pair<File, byte[]> pair = new MutablePair<>(null, entry.getValue());
+            this.patchedFileTable.put(entry.getKey(), pair);
+        }
+    }
+
     public SelectiveClassLoader(final ClassByteArraySource byteArraySource,
                                 final Predicate<String> appClassFilter,
                                 final Patch patch) {
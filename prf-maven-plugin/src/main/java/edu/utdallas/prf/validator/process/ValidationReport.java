@@ -0,0 +1,72 @@
+package edu.utdallas.prf.validator.process;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.commons.junit.runner.JUnitRunner;
+import edu.utdallas.prf.commons.junit.runner.TestExecutionStatus;
+
+import java.util.List;
+
+/**
+ * What a validator process reports back for a patch: the validation outcome, and, in
+ * case a test case failed, the name of the test case that rejected the patch. In case a
+ * test case timed out, the report names the test case. The report also tells whether the
+ * validator process must be recycled, as a thread running a test case could not be stopped.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+class ValidationReport {
+    final ValidationOutcome outcome;
+
+    final String killingTest; // null if no test case failed
+
+    final String timedOutTest; // null if no test case timed out
+
+    final boolean recycle;
+
+    ValidationReport(final ValidationOutcome outcome, final String killingTest) {
+        this(outcome, killingTest, null, outcome == ValidationOutcome.TIMED_OUT);
+    }
+
+    ValidationReport(final ValidationOutcome outcome,
+                     final String killingTest,
+                     final String timedOutTest,
+                     final boolean recycle) {
+        this.outcome = outcome;
+        this.killingTest = killingTest;
+        this.timedOutTest = timedOutTest;
+        this.recycle = recycle;
+    }
+
+    static ValidationReport of(final TestExecutionStatus status, final JUnitRunner runner) {
+        final ValidationOutcome outcome = Validator.toValidationOutcome(status);
+        // test threads are abandoned upon timeouts as well as upon test failures
+        final boolean recycle = JUnitRunner.hasHungThreads();
+        if (outcome == ValidationOutcome.TIMED_OUT) {
+            return new ValidationReport(outcome, null, runner.getTimedOutTestName(), recycle);
+        }
+        final List<String> failingTestNames = runner.getFailingTestNames();
+        if (outcome != ValidationOutcome.RUN_ERROR || failingTestNames.isEmpty()) {
+            return new ValidationReport(outcome, null, null, recycle);
+        }
+        return new ValidationReport(outcome, failingTestNames.get(0), null, recycle);
+    }
+}
@@ -25,12 +25,12 @@ import edu.utdallas.prf.PraPRTestComparator;
 import edu.utdallas.prf.commons.junit.runner.JUnitRunner;
 import edu.utdallas.prf.commons.junit.runner.TestExecutionStatus;
 import edu.utdallas.prf.commons.misc.PropertyUtils;
+import edu.utdallas.prf.commons.process.ControlId;
+import edu.utdallas.prf.validator.ValidationMode;
 import org.pitest.classinfo.CachingByteArraySource;
 import org.pitest.classinfo.ClassByteArraySource;
 import org.pitest.classpath.ClassloaderByteArraySource;
-import org.pitest.functional.predicate.Predicate;
 import org.pitest.mutationtest.execute.MemoryWatchdog;
-import org.pitest.process.ProcessArgs;
 import org.pitest.util.ExitCode;
 import org.pitest.util.IsolationUtils;
 import org.pitest.util.SafeDataInputStream;
@@ -39,7 +39,9 @@ import javax.management.Notification;
 import javax.management.NotificationListener;
 import java.lang.management.MemoryNotificationInfo;
 import java.net.Socket;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
@@ -63,36 +65,102 @@ public class Validator {
 
             addMemoryWatchDog(reporter);
 
+            // the byte array source is shared among all the patches validated by this process, so that
+            // bytes of the application classes are read once and JDK, JUnit, and PIT classes stay warm
             ClassByteArraySource byteArraySource = new ClassloaderByteArraySource(IsolationUtils.getContextClassLoader());
             byteArraySource = new CachingByteArraySource(byteArraySource, CACHE_SIZE);
 
-            final ClassLoader loader = new SelectiveClassLoader(byteArraySource, arguments.appClassFilter, arguments.patch);
-
-            final JUnitRunner runner = new JUnitRunner(loader, arguments.testClassNames, arguments.testComparator, true);
-            final TestExecutionStatus status = runner.run(loader, arguments.patch.getCoveringTestsFilter(),
-                    arguments.testComparator.getTestsTiming(),
-                    arguments.timeoutConstant,
-                    arguments.timeoutPercent);
-
-            ValidationOutcome outcome = null;
-            switch (status) {
-                case OK:
-                    outcome = ValidationOutcome.PLAUSIBLE;
-                    break;
-                case EARLY_EXIT:
-                    outcome = ValidationOutcome.RUN_ERROR;
-                    break;
-                case TIMED_OUT:
-                    outcome = ValidationOutcome.TIMED_OUT;
+            // per-test events are streamed only if the parent process listens for them
+            final ValidatorReporter eventReporter = arguments.reportTestEvents ? reporter : null;
+
+            HotSwapValidator hotSwapValidator = null;
+            if (arguments.validationMode == ValidationMode.HOT_SWAP) {
+                hotSwapValidator = new HotSwapValidator(arguments, byteArraySource, eventReporter);
             }
 
-            reporter.reportValidationOutcome(outcome);
+            final SchemaValidator schemaValidator = new SchemaValidator(arguments, byteArraySource, eventReporter);
+
+            byte control = dis.readByte();
+            while (control == ControlId.VALIDATE_PATCH || control == ControlId.VALIDATE_SCHEMA) {
+                @SuppressWarnings("unchecked")
+                final HashMap<String, Integer> killCounts = dis.read(HashMap.class);
+                final PraPRTestComparator testComparator = arguments.testComparator.withKillCounts(killCounts);
+                if (control == ControlId.VALIDATE_PATCH) {
+                    final Patch patch = dis.read(Patch.class);
+                    ValidationReport report = null;
+                    if (hotSwapValidator != null) {
+                        report = hotSwapValidator.validate(patch, testComparator);
+                    }
+                    if (report == null) {
+                        report = validate(arguments, testComparator, byteArraySource, eventReporter, patch);
+                    }
+                    reporter.reportValidation(report);
+                } else {
+                    @SuppressWarnings("unchecked")
+                    final List<Patch> patches = dis.read(ArrayList.class);
+                    final List<ValidationReport> reports = schemaValidator.validate(patches, testComparator);
+                    if (reports == null) {
+                        System.out.println("WARNING: Unable to merge patches; validating them one by one.");
+                        boolean recycle = false;
+                        for (final Patch patch : patches) {
+                            // after a test runner thread gets stuck, the rest are left to the parent
+                            if (recycle) {
+                                reporter.reportValidationOutcome(ValidationOutcome.UNKNOWN);
+                            } else {
+                                final ValidationReport report = validate(arguments, testComparator, byteArraySource, eventReporter, patch);
+                                recycle = report.recycle;
+                                reporter.reportValidation(report);
+                            }
+                        }
+                    } else {
+                        for (final ValidationReport report : reports) {
+                            reporter.reportValidation(report);
+                        }
+                    }
+                }
+                control = dis.readByte();
+            }
 
             System.out.println("Validator is DONE!");
             reporter.done(ExitCode.OK);
         }
     }
 
+    private static ValidationReport validate(final ValidatorArguments arguments,
+                                             final PraPRTestComparator testComparator,
+                                             final ClassByteArraySource byteArraySource,
+                                             final ValidatorReporter eventReporter,
+                                             final Patch patch) {
+        // each patch gets a fresh class loader for application classes
+        final ClassLoader loader = new SelectiveClassLoader(byteArraySource, arguments.appClassFilter, patch);
+
+        final JUnitRunner runner = new JUnitRunner(loader, arguments.testClassNames, testComparator, true);
+        runner.setTestUnits(ReportingTestUnit.decorate(runner.getTestUnits(), eventReporter));
+        runner.setTestsCpuTiming(testComparator.getTestsCpuTiming());
+        final TestExecutionStatus status = runner.run(loader, patch.getCoveringTestsFilter(),
+                testComparator.getTestsTiming(),
+                arguments.timeoutConstant,
+                arguments.timeoutPercent,
+                arguments.testThreads,
+                arguments.sequentialTestClassFilter);
+        return ValidationReport.of(status, runner);
+    }
+
+    static ValidationOutcome toValidationOutcome(final TestExecutionStatus status) {
+        ValidationOutcome outcome = null;
+        switch (status) {
+            case OK:
+                outcome = ValidationOutcome.PLAUSIBLE;
+                break;
+            case EARLY_EXIT:
+                outcome = ValidationOutcome.RUN_ERROR;
+                break;
+            case TIMED_OUT:
+                outcome = ValidationOutcome.TIMED_OUT;
+        }
+        return outcome;
+    }
+
     // credit: adopted from PIT source code
     private static void addMemoryWatchDog(final ValidatorReporter reporter) {
         final NotificationListener listener = new NotificationListener() {
@@ -103,27 +171,11 @@ public class Validator {
                 if (type.equals(MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED)) {
                     reporter.reportValidationOutcome(ValidationOutcome.MEMORY_ERROR);
                     reporter.done(ExitCode.OUT_OF_MEMORY);
+                    // the parent stops listening after done, so the process must not wait for further patches
+                    System.exit(ExitCode.OUT_OF_MEMORY.getCode());
                 }
             }
         };
         MemoryWatchdog.addWatchDogToAllPools(90, listener);
     }
-
-    public static ValidationOutcome runValidator(final ProcessArgs defaultProcessArgs,
-                                                 final Predicate<String> appClassFilter,
-                                                 final Collection<String> testClassNames,
-                                                 final PraPRTestComparator testComparator,
-                                                 final long timeoutConstant,
-                                                 final double timeoutPercent,
-                                                 final Patch patch) {
-        final ValidatorArguments arguments = new ValidatorArguments(appClassFilter, testClassNames, testComparator, timeoutConstant, timeoutPercent, patch);
-        final ValidatorProcess process = new ValidatorProcess(defaultProcessArgs, arguments);
-        try {
-            process.start();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-        process.waitToDie();
-        return process.getValidatorOutcome();
-    }
-}
+}
\ No newline at end of file
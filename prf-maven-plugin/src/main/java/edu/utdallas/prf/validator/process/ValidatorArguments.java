@@ -20,8 +20,8 @@ package edu.utdallas.prf.validator.process;
  * #L%
  */
 
-import edu.utdallas.prf.Patch;
 import edu.utdallas.prf.PraPRTestComparator;
+import edu.utdallas.prf.validator.ValidationMode;
 import org.apache.commons.lang3.Validate;
 import org.pitest.functional.predicate.Predicate;
 
@@ -44,20 +44,32 @@ class ValidatorArguments implements Serializable {
 
     final double timeoutPercent;
 
-    final Patch patch;
+    final ValidationMode validationMode;
+
+    final int testThreads;
+
+    final Predicate<String> sequentialTestClassFilter;
+
+    final boolean reportTestEvents;
 
     public ValidatorArguments(final Predicate<String> appClassFilter,
                               final Collection<String> testClassNames,
                               final PraPRTestComparator testComparator,
                               final long timeoutConstant,
                               final double timeoutPercent,
-                              final Patch patch) {
+                              final ValidationMode validationMode,
+                              final int testThreads,
+                              final Predicate<String> sequentialTestClassFilter,
+                              final boolean reportTestEvents) {
         Validate.isInstanceOf(Serializable.class, testClassNames);
         this.appClassFilter = appClassFilter;
         this.testClassNames = testClassNames;
         this.testComparator = testComparator;
         this.timeoutConstant = timeoutConstant;
         this.timeoutPercent = timeoutPercent;
-        this.patch = patch;
+        this.validationMode = validationMode;
+        this.testThreads = testThreads;
+        this.sequentialTestClassFilter = sequentialTestClassFilter;
+        this.reportTestEvents = reportTestEvents;
     }
 }
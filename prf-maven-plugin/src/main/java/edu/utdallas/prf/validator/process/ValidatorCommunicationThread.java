@@ -20,7 +20,9 @@ package edu.utdallas.prf.validator.process;
  * #L%
  */
 
+import edu.utdallas.prf.Patch;
 import edu.utdallas.prf.commons.process.ControlId;
+import edu.utdallas.prf.validator.ValidationListener;
 import org.pitest.functional.SideEffect1;
 import org.pitest.util.CommunicationThread;
 import org.pitest.util.ReceiveStrategy;
@@ -28,50 +30,176 @@ import org.pitest.util.SafeDataInputStream;
 import org.pitest.util.SafeDataOutputStream;
 
 import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Unlike the communication thread used for the profiler, this thread keeps the
+ * output stream to the child process open, so that a validator process can be fed
+ * patch after patch.
+ *
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 class ValidatorCommunicationThread extends CommunicationThread {
+    private final DataSender sender;
+
     private final DataReceiver receiver;
 
     public ValidatorCommunicationThread(final ServerSocket socket,
-                                        final ValidatorArguments arguments) {
-        this(socket, new DataSender(arguments), new DataReceiver());
+                                        final ValidatorArguments arguments,
+                                        final ValidationListener validationListener) {
+        this(socket, new DataSender(arguments), new DataReceiver(validationListener));
     }
 
     public ValidatorCommunicationThread(final ServerSocket socket,
                                         final DataSender sender,
                                         final DataReceiver receiver) {
         super(socket,sender, receiver);
+        this.sender = sender;
         this.receiver = receiver;
     }
 
-    public ValidationOutcome getValidationOutcome() {
-        return this.receiver.outcome;
+    public boolean awaitConnection(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.sender.connected.await(timeout, unit);
+    }
+
+    public void sendPatch(final Patch patch, final HashMap<String, Integer> killCounts) {
+        this.receiver.expect(Collections.singletonList(patch));
+        this.sender.sendPatch(patch, killCounts);
+    }
+
+    public void sendSchema(final List<Patch> patches, final HashMap<String, Integer> killCounts) {
+        this.receiver.expect(patches);
+        this.sender.sendSchema(patches, killCounts);
+    }
+
+    public void sendTermination() {
+        this.sender.sendTermination();
+    }
+
+    public ValidationReport pollValidationReport(final long timeout, final TimeUnit unit) throws InterruptedException {
+        return this.receiver.reports.poll(timeout, unit);
+    }
+
+    public boolean hasPendingValidationOutcome() {
+        return !this.receiver.reports.isEmpty();
     }
 
     private static class DataSender implements SideEffect1<SafeDataOutputStream> {
         final ValidatorArguments arguments;
 
+        final CountDownLatch connected;
+
+        SafeDataOutputStream dos;
+
         public DataSender(final ValidatorArguments arguments) {
             this.arguments = arguments;
+            this.connected = new CountDownLatch(1);
         }
 
         @Override
-        public void apply(final SafeDataOutputStream dos) {
+        public synchronized void apply(final SafeDataOutputStream dos) {
             dos.write(this.arguments);
+            dos.flush();
+            this.dos = dos;
+            this.connected.countDown();
+        }
+
+        // kill counts are sent along with each patch, so that the child process orders the
+        // test cases based on the patches rejected by all the validator processes so far
+        synchronized void sendPatch(final Patch patch, final HashMap<String, Integer> killCounts) {
+            this.dos.writeByte(ControlId.VALIDATE_PATCH);
+            this.dos.write(killCounts);
+            this.dos.write(patch);
+            this.dos.flush();
+        }
+
+        synchronized void sendSchema(final List<Patch> patches, final HashMap<String, Integer> killCounts) {
+            this.dos.writeByte(ControlId.VALIDATE_SCHEMA);
+            this.dos.write(killCounts);
+            this.dos.write(new ArrayList<>(patches));
+            this.dos.flush();
+        }
+
+        synchronized void sendTermination() {
+            this.dos.writeByte(ControlId.TERMINATE);
+            this.dos.flush();
         }
     }
 
     private static class DataReceiver implements ReceiveStrategy {
-        ValidationOutcome outcome;
+        final BlockingQueue<ValidationReport> reports;
+
+        final ValidationListener validationListener; // null if there is no listener
+
+        // patches under validation, in the order their reports are expected; test events
+        // received before the i-th report belong to the i-th patch
+        volatile List<Patch> patches;
+
+        volatile int index;
+
+        public DataReceiver(final ValidationListener validationListener) {
+            this.reports = new LinkedBlockingQueue<>();
+            this.validationListener = validationListener;
+            this.patches = Collections.emptyList();
+        }
+
+        void expect(final List<Patch> patches) {
+            this.index = 0;
+            this.patches = patches;
+        }
 
         @Override
         public void apply(final byte control, final SafeDataInputStream dis) {
-            if (control == ControlId.REPORT) {
-                this.outcome = dis.read(ValidationOutcome.class);
+            switch (control) {
+                case ControlId.REPORT:
+                    final ValidationOutcome outcome = dis.read(ValidationOutcome.class);
+                    final String killingTest = dis.readString();
+                    final String timedOutTest = dis.readString();
+                    final boolean recycle = dis.readBoolean();
+                    this.index++;
+                    this.reports.offer(new ValidationReport(outcome,
+                            killingTest.isEmpty() ? null : killingTest,
+                            timedOutTest.isEmpty() ? null : timedOutTest,
+                            recycle));
+                    break;
+                case ControlId.REPORT_TEST_STARTED:
+                    final String startedTest = dis.readString();
+                    final Patch patch = currentPatch();
+                    if (patch != null) {
+                        this.validationListener.testStarted(patch, startedTest);
+                    }
+                    break;
+                case ControlId.REPORT_TEST_PASSED:
+                case ControlId.REPORT_TEST_FAILED:
+                    final String finishedTest = dis.readString();
+                    final long timeElapsed = dis.readLong();
+                    final Patch current = currentPatch();
+                    if (current == null) {
+                        break;
+                    }
+                    if (control == ControlId.REPORT_TEST_PASSED) {
+                        this.validationListener.testPassed(current, finishedTest, timeElapsed);
+                    } else {
+                        this.validationListener.testFailed(current, finishedTest, timeElapsed);
+                    }
+            }
+        }
+
+        // returns null if there is no listener or the event cannot be attributed to a patch
+        private Patch currentPatch() {
+            final List<Patch> patches = this.patches;
+            final int index = this.index;
+            if (this.validationListener == null || index >= patches.size()) {
+                return null;
             }
+            return patches.get(index);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,385 @@
+package edu.utdallas.prf.validator.process;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PraPRTestComparator;
+import edu.utdallas.prf.validator.ValidationListener;
+import edu.utdallas.prf.validator.ValidatorOptions;
+import org.pitest.functional.predicate.Predicate;
+import org.pitest.process.ProcessArgs;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A pool of long-lived validator JVMs. Each JVM takes patch after patch and gives each
+ * patch a fresh class loader for application classes, while JDK, JUnit, and PIT classes
+ * stay warm. A JVM is recycled after it validates a given number of patches, after a
+ * patch times out (the thread running the timed out test is stuck), after it runs out of
+ * memory, or if it dies unexpectedly.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public class ValidatorPool implements Closeable {
+    private final ProcessArgs defaultProcessArgs;
+
+    private final ValidatorArguments arguments;
+
+    private final int maxPatchesPerProcess;
+
+    private final Queue<ValidatorProcess> idleProcesses;
+
+    private final Set<ValidatorProcess> busyProcesses;
+
+    private final KillMatrix killMatrix;
+
+    private final ValidationListener validationListener;
+
+    private final ExecutorService shardExecutor;
+
+    private volatile boolean shutDown;
+
+    public ValidatorPool(final ProcessArgs defaultProcessArgs,
+                         final Predicate<String> appClassFilter,
+                         final Collection<String> testClassNames,
+                         final PraPRTestComparator testComparator,
+                         final long timeoutConstant,
+                         final double timeoutPercent,
+                         final ValidatorOptions options) {
+        this.defaultProcessArgs = defaultProcessArgs;
+        this.arguments = new ValidatorArguments(appClassFilter, testClassNames, testComparator, timeoutConstant, timeoutPercent, options.getValidationMode(),
+                options.getTestThreads(), options.getSequentialTestClassFilter(), options.getValidationListener() != null);
+        this.validationListener = options.getValidationListener();
+        this.maxPatchesPerProcess = options.getPatchesPerValidator();
+        this.idleProcesses = new ConcurrentLinkedQueue<>();
+        this.busyProcesses = Collections.newSetFromMap(new ConcurrentHashMap<ValidatorProcess, Boolean>());
+        this.shutDown = false;
+        this.killMatrix = new KillMatrix();
+        this.shardExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread thread = new Thread(r);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public ValidationOutcome validate(final Patch patch) {
+        final ValidatorProcess process = acquire();
+        if (process == null) {
+            return ValidationOutcome.UNKNOWN; // the pool is shut down
+        }
+        final ValidationReport report;
+        try {
+            report = process.validate(patch, this.killMatrix.getKillCounts());
+        } catch (InterruptedException e) {
+            this.busyProcesses.remove(process);
+            process.destroy();
+            Thread.currentThread().interrupt();
+            return ValidationOutcome.UNKNOWN;
+        }
+        ValidationOutcome outcome = ValidationOutcome.UNKNOWN; // the process died without reporting anything
+        if (report != null) {
+            outcome = report.outcome;
+            record(patch, report);
+        }
+        release(process, isHazardous(report));
+        return outcome;
+    }
+
+    /**
+     * Validates a single patch by splitting its test cases among several validator JVMs
+     * that run in parallel. The first shard that rejects the patch cancels the others.
+     *
+     * @param patch The patch to be validated
+     * @param shards Maximum number of shards
+     * @return The validation outcome merged from all the shards
+     */
+    public ValidationOutcome validate(final Patch patch, final int shards) {
+        final List<Patch> shardPatches = PatchSharder.shard(patch, shards,
+                this.arguments.testComparator.getTestsTiming(),
+                this.arguments.testComparator.getFailingTests());
+        if (shardPatches.size() == 1) {
+            return validate(patch);
+        }
+        final HashMap<String, Integer> killCounts = this.killMatrix.getKillCounts();
+        final CompletionService<ValidationReport> completionService = new ExecutorCompletionService<>(this.shardExecutor);
+        final List<ShardTask> tasks = new ArrayList<>(shardPatches.size());
+        for (final Patch shardPatch : shardPatches) {
+            final ShardTask task = new ShardTask(shardPatch, killCounts);
+            tasks.add(task);
+            completionService.submit(task);
+        }
+        ValidationOutcome outcome = ValidationOutcome.PLAUSIBLE;
+        boolean cancelled = false;
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                final ValidationReport report = completionService.take().get();
+                if (cancelled) {
+                    continue; // the remaining shards were destroyed
+                }
+                if (report == null) {
+                    outcome = ValidationOutcome.UNKNOWN;
+                } else if (report.outcome != ValidationOutcome.PLAUSIBLE
+                        && report.outcome != ValidationOutcome.UNKNOWN) {
+                    outcome = report.outcome;
+                    record(patch, report);
+                    cancelled = true;
+                    for (final ShardTask task : tasks) {
+                        task.cancel();
+                    }
+                } else if (report.outcome == ValidationOutcome.UNKNOWN) {
+                    outcome = ValidationOutcome.UNKNOWN;
+                }
+            }
+        } catch (InterruptedException e) {
+            for (final ShardTask task : tasks) {
+                task.cancel();
+            }
+            Thread.currentThread().interrupt();
+            return ValidationOutcome.UNKNOWN;
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+            for (final ShardTask task : tasks) {
+                task.cancel();
+            }
+            return ValidationOutcome.UNKNOWN;
+        }
+        return outcome;
+    }
+
+    /**
+     * Runs a shard of a patch in a validator JVM of its own.
+     */
+    private class ShardTask implements Callable<ValidationReport> {
+        final Patch shardPatch;
+
+        final HashMap<String, Integer> killCounts;
+
+        volatile ValidatorProcess process;
+
+        volatile boolean cancelled;
+
+        ShardTask(final Patch shardPatch, final HashMap<String, Integer> killCounts) {
+            this.shardPatch = shardPatch;
+            this.killCounts = killCounts;
+        }
+
+        @Override
+        public ValidationReport call() throws InterruptedException {
+            final ValidatorProcess process = acquire();
+            if (process == null) {
+                return null;
+            }
+            this.process = process;
+            if (this.cancelled) {
+                process.destroy();
+            }
+            final ValidationReport report = process.validate(this.shardPatch, this.killCounts);
+            release(process, isHazardous(report));
+            return report;
+        }
+
+        void cancel() {
+            this.cancelled = true;
+            final ValidatorProcess process = this.process;
+            if (process != null) {
+                process.destroy();
+            }
+        }
+    }
+
+    /**
+     * Validates a batch of patches, all altering the same method, in a single validator
+     * JVM. The patches for which the batch did not produce a conclusive outcome, e.g.,
+     * because the JVM died or a previous patch in the batch timed out, are validated
+     * one by one.
+     *
+     * @param patches The batch of patches
+     * @return Validation outcome for each of the patches
+     */
+    public Map<Patch, ValidationOutcome> validate(final List<Patch> patches) {
+        final Map<Patch, ValidationOutcome> outcomes = new LinkedHashMap<>();
+        if (patches.size() == 1) {
+            final Patch patch = patches.get(0);
+            outcomes.put(patch, validate(patch));
+            return outcomes;
+        }
+        final ValidatorProcess process = acquire();
+        if (process == null) {
+            for (final Patch patch : patches) {
+                outcomes.put(patch, ValidationOutcome.UNKNOWN);
+            }
+            return outcomes;
+        }
+        final ValidationReport[] batchReports;
+        try {
+            batchReports = process.validate(patches, this.killMatrix.getKillCounts());
+        } catch (InterruptedException e) {
+            this.busyProcesses.remove(process);
+            process.destroy();
+            Thread.currentThread().interrupt();
+            for (final Patch patch : patches) {
+                outcomes.put(patch, ValidationOutcome.UNKNOWN);
+            }
+            return outcomes;
+        }
+        // the process is recycled if any of the patches in the batch leaves it in a bad state
+        boolean hazardous = false;
+        for (final ValidationReport report : batchReports) {
+            hazardous |= isHazardous(report);
+        }
+        release(process, hazardous);
+        for (int i = 0; i < batchReports.length; i++) {
+            final Patch patch = patches.get(i);
+            final ValidationReport report = batchReports[i];
+            if (report == null || report.outcome == ValidationOutcome.UNKNOWN) {
+                outcomes.put(patch, validate(patch));
+            } else {
+                record(patch, report);
+                outcomes.put(patch, report.outcome);
+            }
+        }
+        return outcomes;
+    }
+
+    // returns null if the pool is shut down
+    private ValidatorProcess acquire() {
+        if (this.shutDown) {
+            return null;
+        }
+        ValidatorProcess process;
+        while ((process = this.idleProcesses.poll()) != null) {
+            if (process.isReusable()) {
+                return markBusy(process);
+            }
+            process.destroy();
+        }
+        process = new ValidatorProcess(this.defaultProcessArgs, this.arguments, this.validationListener);
+        try {
+            process.start();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return markBusy(process);
+    }
+
+    private ValidatorProcess markBusy(final ValidatorProcess process) {
+        this.busyProcesses.add(process);
+        if (this.shutDown) { // shutdownNow might have missed this process
+            this.busyProcesses.remove(process);
+            process.destroy();
+            return null;
+        }
+        return process;
+    }
+
+    private void record(final Patch patch, final ValidationReport report) {
+        this.killMatrix.record(patch, report.killingTest);
+        if (report.timedOutTest != null) {
+            System.out.println("INFO: Patch " + patch.getId() + " timed out while running " + report.timedOutTest
+                    + (report.recycle ? "; its validator JVM is recycled." : "."));
+        }
+    }
+
+    private void release(final ValidatorProcess process, final boolean hazardous) {
+        this.busyProcesses.remove(process);
+        if (this.shutDown) {
+            process.destroy();
+        } else if (shouldRecycle(process, hazardous)) {
+            process.terminate();
+        } else {
+            this.idleProcesses.offer(process);
+        }
+    }
+
+    private boolean shouldRecycle(final ValidatorProcess process, final boolean hazardous) {
+        return hazardous
+                || this.maxPatchesPerProcess > 0 && process.getPatchesValidated() >= this.maxPatchesPerProcess;
+    }
+
+    // a timed out test case leaves the process in a bad state only if its thread could not be stopped
+    private static boolean isHazardous(final ValidationReport report) {
+        if (report == null) {
+            return true;
+        }
+        switch (report.outcome) {
+            case TIMED_OUT:
+                return report.recycle;
+            case MEMORY_ERROR:
+            case UNKNOWN:
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Tells if the patch was rejected by a failing test case, as opposed to, e.g., its
+     * validator JVM crashing, in which case validating the patch again might end differently.
+     *
+     * @param patch A validated patch
+     * @return <code>true</code> iff a test case failed while validating the patch
+     */
+    public boolean isRejectedByTest(final Patch patch) {
+        return this.killMatrix.isKilled(patch);
+    }
+
+    /**
+     * Stops handing out validator JVMs, and destroys all the JVMs, including those that
+     * are in the middle of validating a patch. The validations in flight return promptly
+     * with an UNKNOWN outcome.
+     */
+    public void shutdownNow() {
+        this.shutDown = true;
+        for (final ValidatorProcess process : this.busyProcesses) {
+            process.destroy();
+        }
+        close();
+    }
+
+    @Override
+    public void close() {
+        ValidatorProcess process;
+        while ((process = this.idleProcesses.poll()) != null) {
+            process.terminate();
+        }
+        this.shardExecutor.shutdown();
+    }
+}
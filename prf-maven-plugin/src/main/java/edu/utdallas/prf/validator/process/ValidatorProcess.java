@@ -20,6 +20,9 @@ package edu.utdallas.prf.validator.process;
  * #L%
  */
 
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.validator.ValidationListener;
+import org.pitest.process.JavaProcess;
 import org.pitest.process.ProcessArgs;
 import org.pitest.process.WrappingProcess;
 import org.pitest.util.ExitCode;
@@ -27,25 +30,37 @@ import org.pitest.util.SocketFinder;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * A long-lived validator JVM that validates patch after patch.
+ *
  * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
  */
 class ValidatorProcess {
+    private static final long POLL_INTERVAL = 100L; // in milliseconds
+
     private final WrappingProcess process;
 
     private final ValidatorCommunicationThread communicationThread;
 
+    private int patchesValidated;
+
     public ValidatorProcess(final ProcessArgs processArgs,
-                            final ValidatorArguments arguments) {
-        this((new SocketFinder()).getNextAvailableServerSocket(), processArgs, arguments);
+                            final ValidatorArguments arguments,
+                            final ValidationListener validationListener) {
+        this((new SocketFinder()).getNextAvailableServerSocket(), processArgs, arguments, validationListener);
     }
 
     private ValidatorProcess(final ServerSocket socket,
                              final ProcessArgs processArgs,
-                             final ValidatorArguments arguments) {
+                             final ValidatorArguments arguments,
+                             final ValidationListener validationListener) {
         this.process = new WrappingProcess(socket.getLocalPort(), processArgs, Validator.class);
-        this.communicationThread = new ValidatorCommunicationThread(socket, arguments);
+        this.communicationThread = new ValidatorCommunicationThread(socket, arguments, validationListener);
+        this.patchesValidated = 0;
     }
 
     public void start() throws IOException, InterruptedException {
@@ -53,15 +68,113 @@ class ValidatorProcess {
         this.process.start();
     }
 
-    public ExitCode waitToDie() {
+    public boolean isAlive() {
+        final JavaProcess javaProcess = this.process.getProcess();
+        return javaProcess != null && javaProcess.isAlive();
+    }
+
+    /**
+     * Sends the patch to the child process and blocks until the outcome is reported back.
+     *
+     * @param patch The patch to be validated
+     * @param killCounts Number of patches rejected by each test case so far
+     * @return The validation report, or <code>null</code> in case the child process
+     * died before reporting any outcome
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public ValidationReport validate(final Patch patch,
+                                     final HashMap<String, Integer> killCounts) throws InterruptedException {
+        while (!this.communicationThread.awaitConnection(POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+            if (!isAlive()) {
+                return null;
+            }
+        }
+        this.patchesValidated++;
+        this.communicationThread.sendPatch(patch, killCounts);
+        ValidationReport report;
+        do {
+            report = this.communicationThread.pollValidationReport(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            if (report == null && !isAlive()) {
+                // the process might have reported right before dying
+                return this.communicationThread.pollValidationReport(0L, TimeUnit.MILLISECONDS);
+            }
+        } while (report == null);
+        return report;
+    }
+
+    /**
+     * Sends the patches, all altering the same method, to the child process and blocks
+     * until the outcomes for all of them are reported back.
+     *
+     * @param patches The patches to be validated as a batch
+     * @param killCounts Number of patches rejected by each test case so far
+     * @return The validation reports, in the same order as the patches; reports for
+     * the patches that the child process did not get to validate, e.g., because it ran
+     * out of memory, are <code>null</code>
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public ValidationReport[] validate(final List<Patch> patches,
+                                       final HashMap<String, Integer> killCounts) throws InterruptedException {
+        final ValidationReport[] reports = new ValidationReport[patches.size()];
+        while (!this.communicationThread.awaitConnection(POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+            if (!isAlive()) {
+                return reports;
+            }
+        }
+        this.patchesValidated += patches.size();
+        this.communicationThread.sendSchema(patches, killCounts);
+        int index = 0;
+        while (index < reports.length) {
+            ValidationReport report = this.communicationThread.pollValidationReport(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+            if (report == null && !isAlive()) {
+                // the process might have reported right before dying
+                report = this.communicationThread.pollValidationReport(0L, TimeUnit.MILLISECONDS);
+                if (report == null) {
+                    break;
+                }
+            }
+            if (report != null) {
+                if (report.outcome == ValidationOutcome.MEMORY_ERROR) {
+                    // the memory error cannot be attributed to any single patch of the batch, and the
+                    // process stops validating; the remaining patches are to be validated one by one
+                    destroy();
+                    break;
+                }
+                reports[index++] = report;
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * A process is reusable if it is alive and it has not reported anything out of the
+     * blue, e.g., a memory error while being idle.
+     *
+     * @return <code>true</code> iff the process can take another patch
+     */
+    public boolean isReusable() {
+        return isAlive() && !this.communicationThread.hasPendingValidationOutcome();
+    }
+
+    public int getPatchesValidated() {
+        return this.patchesValidated;
+    }
+
+    public ExitCode terminate() {
         try {
-            return this.communicationThread.waitToFinish();
+            if (isAlive()) {
+                this.communicationThread.sendTermination();
+                return this.communicationThread.waitToFinish();
+            }
+            return ExitCode.UNKNOWN_ERROR;
+        } catch (Exception e) {
+            return ExitCode.UNKNOWN_ERROR;
         } finally {
             this.process.destroy();
         }
     }
 
-    public ValidationOutcome getValidatorOutcome() {
-        return this.communicationThread.getValidationOutcome();
+    public void destroy() {
+        this.process.destroy();
     }
 }
\ No newline at end of file
@@ -33,9 +33,36 @@ class ValidatorReporter extends AbstractReporter {
         super(os);
     }
 
-    public synchronized void reportValidationOutcome(final ValidationOutcome outcome) {
+    public void reportValidationOutcome(final ValidationOutcome outcome) {
+        reportValidation(new ValidationReport(outcome, null));
+    }
+
+    public synchronized void reportTestStarted(final String testName) {
+        this.dos.writeByte(ControlId.REPORT_TEST_STARTED);
+        this.dos.writeString(testName);
+        this.dos.flush();
+    }
+
+    public synchronized void reportTestPassed(final String testName, final long timeElapsed) {
+        this.dos.writeByte(ControlId.REPORT_TEST_PASSED);
+        this.dos.writeString(testName);
+        this.dos.writeLong(timeElapsed);
+        this.dos.flush();
+    }
+
+    public synchronized void reportTestFailed(final String testName, final long timeElapsed) {
+        this.dos.writeByte(ControlId.REPORT_TEST_FAILED);
+        this.dos.writeString(testName);
+        this.dos.writeLong(timeElapsed);
+        this.dos.flush();
+    }
+
+    public synchronized void reportValidation(final ValidationReport report) {
         this.dos.writeByte(ControlId.REPORT);
-        this.dos.write(outcome);
+        this.dos.write(report.outcome);
+        this.dos.writeString(report.killingTest == null ? "" : report.killingTest);
+        this.dos.writeString(report.timedOutTest == null ? "" : report.timedOutTest);
+        this.dos.writeBoolean(report.recycle);
         this.dos.flush();
     }
 }
\ No newline at end of file
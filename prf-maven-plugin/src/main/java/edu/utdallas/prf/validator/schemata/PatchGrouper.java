@@ -0,0 +1,115 @@
+package edu.utdallas.prf.validator.schemata;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.Patch;
+import edu.utdallas.prf.PatchLocation;
+import edu.utdallas.prf.commons.misc.PropertyUtils;
+import org.apache.commons.io.FileUtils;
+import org.pitest.classinfo.ClassByteArraySource;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Groups patches that alter the body of the same method (and nothing else) into
+ * batches that can be merged into a mutant schema. Every other patch is put in a
+ * singleton batch.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class PatchGrouper {
+    private static final int MAX_SCHEMA_SIZE;
+
+    static {
+        MAX_SCHEMA_SIZE = PropertyUtils.getIntProperty("prf.def.schema.size", 32);
+    }
+
+    private PatchGrouper() {
+
+    }
+
+    public static List<List<Patch>> singletons(final Collection<Patch> patches) {
+        final List<List<Patch>> batches = new ArrayList<>(patches.size());
+        for (final Patch patch : patches) {
+            batches.add(Collections.singletonList(patch));
+        }
+        return batches;
+    }
+
+    public static List<List<Patch>> group(final Collection<Patch> patches,
+                                          final ClassByteArraySource byteArraySource) {
+        final List<List<Patch>> batches = new ArrayList<>();
+        final Map<String, List<Patch>> groups = new LinkedHashMap<>();
+        for (final Patch patch : patches) {
+            final String key = schemaKey(patch, byteArraySource);
+            if (key == null) {
+                batches.add(Collections.singletonList(patch));
+            } else {
+                List<Patch> group = groups.get(key);
+                if (group == null) {
+                    group = new ArrayList<>();
+                    groups.put(key, group);
+                }
+                group.add(patch);
+            }
+        }
+        int merged = 0;
+        for (final List<Patch> group : groups.values()) {
+            for (int from = 0; from < group.size(); from += MAX_SCHEMA_SIZE) {
+                final int to = Math.min(group.size(), from + MAX_SCHEMA_SIZE);
+                final List<Patch> batch = new ArrayList<>(group.subList(from, to));
+                if (batch.size() > 1) {
+                    merged += batch.size();
+                }
+                batches.add(batch);
+            }
+        }
+        System.out.println("INFO: " + merged + " out of " + patches.size() + " patches shall be validated in mutant schemata.");
+        return batches;
+    }
+
+    // returns the fully-qualified name of the altered method, or null if the patch cannot be merged
+    private static String schemaKey(final Patch patch, final ClassByteArraySource byteArraySource) {
+        if (patch.getLocations().size() != 1) {
+            return null;
+        }
+        final PatchLocation location = patch.getLocations().iterator().next();
+        final String className = location.getClassName();
+        final byte[] original = byteArraySource.getBytes(className).getOrElse(null);
+        if (original == null) {
+            return null;
+        }
+        final byte[] patched;
+        try {
+            patched = FileUtils.readFileToByteArray(location.getClassFile());
+        } catch (IOException e) {
+            return null;
+        }
+        final String method = SchemaMerger.getMergeableMethod(original, patched);
+        return method == null ? null : className + "." + method;
+    }
+}
@@ -0,0 +1,47 @@
+package edu.utdallas.prf.validator.schemata;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Runtime selector consulted by merged (a.k.a. meta-mutant) methods to decide which
+ * patch variant to execute. This class must be loaded by the parent of the class
+ * loader loading merged classes, so that the validator and the merged classes see
+ * the same selector.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class PatchSelector {
+    public static final int ORIGINAL = -1;
+
+    private static volatile int selected = ORIGINAL;
+
+    private PatchSelector() {
+
+    }
+
+    public static int selected() {
+        return selected;
+    }
+
+    public static void select(final int variant) {
+        selected = variant;
+    }
+}
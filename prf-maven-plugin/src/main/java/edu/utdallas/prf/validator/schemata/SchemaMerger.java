@@ -0,0 +1,228 @@
+package edu.utdallas.prf.validator.schemata;
+
+/*
+ * #%L
+ * prf-plugin
+ * %%
+ * Copyright (C) 2020 The University of Texas at Dallas
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import edu.utdallas.prf.commons.asm.ClassDiff;
+import edu.utdallas.prf.commons.asm.ComputeClassWriter;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+import org.objectweb.asm.commons.Method;
+import org.pitest.classinfo.ClassByteArraySource;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Merges several patched versions of a method into a single class, a.k.a. a mutant
+ * schema. The original method is renamed to <code>name$prf$orig</code>, the version of
+ * the method in i-th patched class is copied as <code>name$prf$i</code>, and a
+ * dispatcher method, having the name and descriptor of the original method, calls
+ * one of these methods depending on the value of {@link PatchSelector#selected()}.
+ *
+ * @author Ali Ghanbari (ali.ghanbari@utdallas.edu)
+ */
+public final class SchemaMerger {
+    private static final String INFIX = "$prf$";
+
+    private static final Type SELECTOR_TYPE = Type.getType(PatchSelector.class);
+
+    private static final Method SELECTED_METHOD = Method.getMethod("int selected()");
+
+    private SchemaMerger() {
+
+    }
+
+    /**
+     * Checks if the patched class can be merged into a schema of the original class, i.e.,
+     * the patch alters the body of exactly one method, and nothing else, and that method
+     * can be turned into a dispatcher. Patched classes that alter the same method of the
+     * same original class can be merged together.
+     *
+     * @param originalBytes Bytes of the original class
+     * @param patchedBytes Bytes of the patched class
+     * @return The altered method, i.e., its name followed by its descriptor, or
+     * <code>null</code> if the patched class cannot be merged
+     */
+    public static String getMergeableMethod(final byte[] originalBytes, final byte[] patchedBytes) {
+        final ClassDiff diff = ClassDiff.diff(originalBytes, patchedBytes);
+        final Set<String> changedMethods = diff.getChangedMethods();
+        if (!diff.isShapePreserving() || changedMethods.size() != 1) {
+            return null;
+        }
+        final String method = changedMethods.iterator().next();
+        return isMergeable(originalBytes, method) ? method : null;
+    }
+
+    // a method can be turned into a dispatcher iff it is a concrete, non-constructor method of a class
+    private static boolean isMergeable(final byte[] originalBytes, final String method) {
+        if (method.startsWith("<")) {
+            return false;
+        }
+        final boolean[] mergeable = {false};
+        final ClassVisitor visitor = new ClassVisitor(Opcodes.ASM7) {
+            private boolean isInterface;
+
+            @Override
+            public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+                this.isInterface = (access & Opcodes.ACC_INTERFACE) != 0;
+            }
+
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                if (method.equals(name + descriptor)) {
+                    mergeable[0] = !this.isInterface && (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) == 0;
+                }
+                return null;
+            }
+        };
+        (new ClassReader(originalBytes)).accept(visitor, ClassReader.SKIP_CODE);
+        return mergeable[0];
+    }
+
+    /**
+     * Merges the versions of the method in patched classes into the original class.
+     *
+     * @param byteArraySource Used for computing stack map frames
+     * @param originalBytes Bytes of the original class
+     * @param method Method name followed by its descriptor
+     * @param patchedBytes Bytes of the patched classes; selector value i shall select
+     *                     the i-th patched version
+     * @return Bytes of the merged class
+     */
+    public static byte[] merge(final ClassByteArraySource byteArraySource,
+                               final byte[] originalBytes,
+                               final String method,
+                               final List<byte[]> patchedBytes) {
+        final ClassWriter writer = new ComputeClassWriter(byteArraySource,
+                new HashMap<String, String>(),
+                ClassWriter.COMPUTE_FRAMES);
+        final ClassVisitor merger = new MergingClassVisitor(writer, method, patchedBytes);
+        (new ClassReader(originalBytes)).accept(merger, ClassReader.SKIP_FRAMES);
+        return writer.toByteArray();
+    }
+
+    private static int variantAccess(final int access) {
+        return (access & ~(Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_BRIDGE))
+                | Opcodes.ACC_PRIVATE
+                | Opcodes.ACC_SYNTHETIC;
+    }
+
+    private static class MergingClassVisitor extends ClassVisitor {
+        private final String method;
+
+        private final List<byte[]> patchedBytes;
+
+        private String owner;
+
+        private int access;
+
+        private String name;
+
+        private String descriptor;
+
+        private String[] exceptions;
+
+        MergingClassVisitor(final ClassVisitor cv,
+                            final String method,
+                            final List<byte[]> patchedBytes) {
+            super(Opcodes.ASM7, cv);
+            this.method = method;
+            this.patchedBytes = patchedBytes;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+            super.visit(version, access, name, signature, superName, interfaces);
+            this.owner = name;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            if (this.method.equals(name + descriptor)) {
+                this.access = access;
+                this.name = name;
+                this.descriptor = descriptor;
+                this.exceptions = exceptions;
+                return super.visitMethod(variantAccess(access), name + INFIX + "orig", descriptor, signature, exceptions);
+            }
+            return super.visitMethod(access, name, descriptor, signature, exceptions);
+        }
+
+        @Override
+        public void visitEnd() {
+            for (int variant = 0; variant < this.patchedBytes.size(); variant++) {
+                final String variantName = this.name + INFIX + variant;
+                final ClassVisitor copier = new ClassVisitor(Opcodes.ASM7) {
+                    @Override
+                    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+                        if (MergingClassVisitor.this.method.equals(name + descriptor)) {
+                            return MergingClassVisitor.this.cv.visitMethod(variantAccess(access), variantName, descriptor, signature, exceptions);
+                        }
+                        return null;
+                    }
+                };
+                (new ClassReader(this.patchedBytes.get(variant))).accept(copier, ClassReader.SKIP_FRAMES);
+            }
+            generateDispatcher();
+            super.visitEnd();
+        }
+
+        private void generateDispatcher() {
+            final MethodVisitor mv = this.cv.visitMethod(this.access, this.name, this.descriptor, null, this.exceptions);
+            final GeneratorAdapter mg = new GeneratorAdapter(mv, this.access, this.name, this.descriptor);
+            mg.visitCode();
+            final int selected = mg.newLocal(Type.INT_TYPE);
+            mg.invokeStatic(SELECTOR_TYPE, SELECTED_METHOD);
+            mg.storeLocal(selected);
+            for (int variant = 0; variant < this.patchedBytes.size(); variant++) {
+                final Label next = mg.newLabel();
+                mg.loadLocal(selected);
+                mg.push(variant);
+                mg.ifICmp(GeneratorAdapter.NE, next);
+                invokeVariant(mg, this.name + INFIX + variant);
+                mg.mark(next);
+            }
+            invokeVariant(mg, this.name + INFIX + "orig");
+            mg.endMethod();
+        }
+
+        private void invokeVariant(final GeneratorAdapter mg, final String variantName) {
+            final boolean isStatic = (this.access & Opcodes.ACC_STATIC) != 0;
+            if (!isStatic) {
+                mg.loadThis();
+            }
+            mg.loadArgs();
+            mg.visitMethodInsn(isStatic ? Opcodes.INVOKESTATIC : Opcodes.INVOKESPECIAL,
+                    this.owner,
+                    variantName,
+                    this.descriptor,
+                    false);
+            mg.returnValue();
+        }
+    }
+}